@@ -0,0 +1,23 @@
+package org.univr.telemedicina;
+
+import org.univr.telemedicina.dao.DatabaseManager;
+import org.univr.telemedicina.dao.RilevazioneGlicemiaDAO;
+import org.univr.telemedicina.exception.DataAccessException;
+
+// comando di manutenzione per ricostruire il riepilogo giornaliero della glicemia da terminale
+// da eseguire dopo importazioni o correzioni fatte direttamente sulla tabella rilevazioniglicemia
+public class RiepilogoGlicemiaRunner {
+
+    public static void main(String[] args) {
+        System.out.println("--- ricostruzione del riepilogo giornaliero della glicemia ---");
+        try {
+            int giorni = new RilevazioneGlicemiaDAO().ricostruisciRiepilogoGiornaliero();
+            System.out.println("riepilogo ricostruito " + giorni + " giorni");
+        } catch (DataAccessException e) {
+            System.err.println("errore durante la ricostruzione del riepilogo " + e.getMessage());
+        } finally {
+            DatabaseManager.shutdown();
+        }
+        System.out.println("--- procedura terminata ---");
+    }
+}
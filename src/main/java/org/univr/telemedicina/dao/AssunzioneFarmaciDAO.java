@@ -1,7 +1,9 @@
 package org.univr.telemedicina.dao;
 
 import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.AderenzaPaziente;
 import org.univr.telemedicina.model.AssunzioneFarmaci;
+import org.univr.telemedicina.model.AssunzioniRecentiPaziente;
 
 import java.sql.*;
 import java.util.*;
@@ -11,8 +13,13 @@ import java.time.LocalDate;
 // classe dao per gestire le operazioni di accesso ai dati relativi alle assunzioni di farmaci
 // deve aggiungere una assunzione da parte di una paziente e legge tutte assunzioni di farmaci per paziente
 // e assunzioni di un determinato giorno
+// ogni assunzione aggiorna anche il contatore giornaliero per paziente e terapia usato dai controlli di aderenza
 public class AssunzioneFarmaciDAO {
 
+    // incrementa il contatore del giorno dell'assunzione creando la riga se non esiste
+    private static final String SQL_INCREMENTA_CONTEGGIO = "INSERT INTO ConteggioAssunzioniGiornaliero (IDPaziente, Giorno, IDTerapia, Conteggio) " +
+            "VALUES (?, ?, ?, 1) ON CONFLICT (IDPaziente, Giorno, IDTerapia) DO UPDATE SET Conteggio = Conteggio + 1";
+
     // legge tute le assunzioni di farmaci per un paziente specifico
     // @param idPaziente l'id del paziente
     // @return una list contenente le assunzionifarmaci per il paziente specificato
@@ -23,7 +30,7 @@ public class AssunzioneFarmaciDAO {
 
         String sql = "SELECT * FROM AssunzioniFarmaci WHERE IDPaziente = ?";
 
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)){
 
             // imposto il parametro per evitare sql injection
@@ -66,7 +73,7 @@ public class AssunzioneFarmaciDAO {
          LocalDateTime inizioGiorno = data.atStartOfDay(); // es 2025-06-11t00:00:00
          LocalDateTime inizioGiornoSuccessivo = data.plusDays(1).atStartOfDay(); // es 2025-06-12t00:00:00
 
-         try (Connection conn = DatabaseManager.getConnection();
+         try (Connection conn = DatabaseManager.getReadConnection();
               PreparedStatement pstmt = conn.prepareStatement(sql)){
 
              // imposto il parametro per evitare sql injection
@@ -97,6 +104,7 @@ public class AssunzioneFarmaciDAO {
 
 
     // conta le assunzioni di farmaci effettuate in un dato giorno per una lista di pazienti con una singola query
+    // legge i contatori giornalieri (una riga per paziente e terapia) invece di contare le assunzioni
     // usato per checkfarmacidaily
     // @param patientids la lista degli id dei pazienti
     // @param data il giorno da controllare
@@ -109,63 +117,192 @@ public class AssunzioneFarmaciDAO {
 
         // inizializza la mappa per memorizzare il conteggio delle assunzioni
         Map<Integer, Integer> mapConteggio = new HashMap<>();
-        // crea un placeholder per ogni id paziente nella query
-        String placeholders = String.join(",", Collections.nCopies(patientIds.size(), "?"));
 
-        // la query usa count e group by
-        String sql = "SELECT IDPaziente, COUNT(*) as ConteggioAssunzioni " +
-                "FROM AssunzioniFarmaci WHERE IDPaziente IN (" + placeholders + ") " +
-                "AND TimestampAssunzione >= ? AND TimestampAssunzione < ? " +
+        // somma i contatori delle terapie di ogni paziente per il giorno richiesto
+        // gli id sono passati come un unico array json (vedi insiemeid)
+        String sql = "SELECT IDPaziente, SUM(Conteggio) as ConteggioAssunzioni " +
+                "FROM ConteggioAssunzioniGiornaliero WHERE IDPaziente IN (" + InsiemeId.SOTTOQUERY + ") " +
+                "AND Giorno = ? " +
                 "GROUP BY IDPaziente";
 
-        // definisce l'intervallo di tempo per l'intera giornata
-        LocalDateTime inizioGiorno = data.atStartOfDay();
-        LocalDateTime inizioGiornoSuccessivo = data.plusDays(1).atStartOfDay();
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            // il giorno è salvato come prefisso iso del timestamp (es 2025-06-11)
+            pstmt.setString(2, data.toString());
+
+            for (String blocco : InsiemeId.blocchi(patientIds)) {
+                pstmt.setString(1, blocco);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        mapConteggio.put(rs.getInt("IDPaziente"), rs.getInt("ConteggioAssunzioni"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("errore nel recupero del conteggio assunzioni", e);
+        }
+        return mapConteggio;
+    }
+
+
+    // calcola dosi prescritte e assunte per una lista di pazienti con una singola query aggregata
+    // le dosi prescritte di una terapia sono frequenza giornaliera per giorni trascorsi tra datainizio e oggi (o datafine se già passata)
+    // le dosi assunte sono la somma dei contatori giornalieri, senza leggere le singole assunzioni
+    // @param patientids la lista degli id dei pazienti
+    // @param oggi il giorno fino al quale contare le dosi prescritte
+    // @return una mappa con l'aderenza per id paziente, i pazienti senza terapie non compaiono
+    // @throws dataaccessexception se si verifica un errore di accesso ai dati
+    public Map<Integer, AderenzaPaziente> getAderenzaPerPazienti(Collection<Integer> patientIds, LocalDate oggi) throws DataAccessException {
+        if (patientIds == null || patientIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Integer, AderenzaPaziente> aderenze = new HashMap<>();
+
+        // julianday restituisce la differenza in giorni tra le date salvate come testo iso
+        // gli id sono passati come un unico array json (vedi insiemeid) usato sia per le terapie sia per i contatori
+        String sql = "WITH Ids AS (" + InsiemeId.SOTTOQUERY + "), " +
+                "Prescritte AS (" +
+                "SELECT IDPaziente, SUM(FrequenzaGiornaliera * CAST(julianday(CASE WHEN DataFine IS NOT NULL AND DataFine < ? THEN DataFine ELSE ? END) - julianday(DataInizio) + 1 AS INTEGER)) AS Dosi " +
+                "FROM Terapie WHERE IDPaziente IN Ids GROUP BY IDPaziente), " +
+                "Assunte AS (" +
+                "SELECT IDPaziente, SUM(Conteggio) AS Dosi " +
+                "FROM ConteggioAssunzioniGiornaliero WHERE IDPaziente IN Ids GROUP BY IDPaziente) " +
+                "SELECT p.IDPaziente, p.Dosi AS DosiPrescritte, COALESCE(a.Dosi, 0) AS DosiAssunte " +
+                "FROM Prescritte p LEFT JOIN Assunte a ON a.IDPaziente = p.IDPaziente";
 
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            // imposta i parametri per la query
-            int index = 1;
-            for (Integer id : patientIds) {
-                pstmt.setInt(index++, id);
+            pstmt.setObject(2, oggi);
+            pstmt.setObject(3, oggi);
+
+            for (String blocco : InsiemeId.blocchi(patientIds)) {
+                pstmt.setString(1, blocco);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int idPaziente = rs.getInt("IDPaziente");
+                        aderenze.put(idPaziente, new AderenzaPaziente(idPaziente, rs.getLong("DosiPrescritte"), rs.getLong("DosiAssunte")));
+                    }
+                }
             }
-            // imposta i parametri per l'intervallo di tempo
-            pstmt.setObject(index++, inizioGiorno);
-            pstmt.setObject(index, inizioGiornoSuccessivo);
+        } catch (SQLException e) {
+            System.err.println("errore durante il calcolo dell'aderenza " + e.getMessage());
+            throw new DataAccessException("errore nel calcolo dell'aderenza di " + patientIds.size() + " pazienti", e);
+        }
+        return aderenze;
+    }
+
+    // legge in una sola query i dati per il controllo di aderenza degli ultimi giorni di tutti i pazienti
+    // considera solo le terapie iniziate prima del periodo controllato e non ancora terminate
+    // le assunzioni sono la somma dei contatori giornalieri da oggi - (giorni - 1) a oggi compreso
+    // usato per checkfarmaci3daily
+    // @param oggi l'ultimo giorno del periodo controllato
+    // @param giorni la durata del periodo in giorni
+    // @return un elemento per ogni paziente con almeno una terapia valida
+    // @throws dataaccessexception se si verifica un errore di accesso ai dati
+    public List<AssunzioniRecentiPaziente> getAssunzioniRecentiPerPazienti(LocalDate oggi, int giorni) throws DataAccessException {
+        return getAssunzioniRecentiPerPazienti(oggi, giorni, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    // come getassunzionirecentiperpazienti ma solo per i pazienti con id tra idDa e idA compresi
+    // usato dal controllo a shard dove ogni shard è un intervallo di id
+    public List<AssunzioniRecentiPaziente> getAssunzioniRecentiPerPazienti(LocalDate oggi, int giorni, int idDa, int idA) throws DataAccessException {
+        List<AssunzioniRecentiPaziente> risultato = new ArrayList<>();
+
+        // la somma dei contatori usa la chiave primaria (idpaziente, giorno) di ogni paziente
+        String sql = "SELECT r.IDPaziente, r.Frequenza, p.IDMedicoRiferimento, u.Nome, u.Cognome, " +
+                "(SELECT COALESCE(SUM(c.Conteggio), 0) FROM ConteggioAssunzioniGiornaliero c " +
+                "WHERE c.IDPaziente = r.IDPaziente AND c.Giorno >= ? AND c.Giorno <= ?) AS Assunzioni " +
+                "FROM (SELECT IDPaziente, SUM(FrequenzaGiornaliera) AS Frequenza FROM Terapie " +
+                "WHERE IDPaziente BETWEEN ? AND ? AND DataInizio < ? AND (DataFine IS NULL OR DataFine > ?) GROUP BY IDPaziente) r " +
+                "LEFT JOIN Pazienti p ON p.IDPaziente = r.IDPaziente " +
+                "LEFT JOIN Utenti u ON u.IDUtente = r.IDPaziente";
+
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, oggi.minusDays(giorni - 1).toString());
+            pstmt.setString(2, oggi.toString());
+            pstmt.setInt(3, idDa);
+            pstmt.setInt(4, idA);
+            pstmt.setObject(5, oggi.minusDays(giorni));
+            pstmt.setObject(6, oggi);
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    mapConteggio.put(rs.getInt("IDPaziente"), rs.getInt("ConteggioAssunzioni"));
+                    int idMedico = rs.getInt("IDMedicoRiferimento");
+                    Integer medico = rs.wasNull() ? null : idMedico;
+                    String nome = rs.getString("Nome") != null ? rs.getString("Nome") + " " + rs.getString("Cognome") : null;
+                    risultato.add(new AssunzioniRecentiPaziente(rs.getInt("IDPaziente"), medico, nome, rs.getInt("Frequenza"), rs.getInt("Assunzioni")));
                 }
             }
         } catch (SQLException e) {
-            throw new DataAccessException("errore nel recupero del conteggio assunzioni", e);
+            System.err.println("errore durante la lettura delle assunzioni recenti " + e.getMessage());
+            throw new DataAccessException("errore nel recupero delle assunzioni degli ultimi " + giorni + " giorni", e);
         }
-        return mapConteggio;
+        return risultato;
     }
 
-
     // aggiunge una nuova assunzione di farmaci per un paziente
+    // il contatore giornaliero viene incrementato nella stessa transazione dell'inserimento
     // @param assunzione l'oggetto assunzionefarmaci da aggiungere
     public void aggiungiAssunzione(AssunzioneFarmaci assunzione) throws DataAccessException {
         String sql = "INSERT INTO AssunzioniFarmaci(IDTerapia, IDPaziente, TimestampAssunzione, QuantitaAssunta) VALUES (?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            // imposta i parametri della query
-            pstmt.setInt(1, assunzione.getIDTerapia());
-            pstmt.setInt(2, assunzione.getIDPaziente());
-            pstmt.setObject(3, assunzione.getTimestampAssunzione());
-            pstmt.setString(4, assunzione.getQuantitaAssunta());
-
-            // esegue l'inserimento
-            pstmt.executeUpdate();
+        try {
+            DatabaseManager.eseguiInserimento(conn -> {
+                long chiave;
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    // imposta i parametri della query
+                    pstmt.setInt(1, assunzione.getIDTerapia());
+                    pstmt.setInt(2, assunzione.getIDPaziente());
+                    pstmt.setObject(3, assunzione.getTimestampAssunzione());
+                    pstmt.setString(4, assunzione.getQuantitaAssunta());
 
+                    // esegue l'inserimento
+                    pstmt.executeUpdate();
+                    chiave = DatabaseManager.chiaveGenerata(pstmt);
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_INCREMENTA_CONTEGGIO)) {
+                    pstmt.setInt(1, assunzione.getIDPaziente());
+                    pstmt.setString(2, assunzione.getTimestampAssunzione().toLocalDate().toString());
+                    pstmt.setInt(3, assunzione.getIDTerapia());
+                    pstmt.executeUpdate();
+                }
+                return chiave;
+            });
         } catch (SQLException e){
             System.err.println("errore durante l'aggiunta di assunzione di farmaci " + e.getMessage());
             throw new DataAccessException("errore durante l'aggiunta dell'assunzione di farmaci per il paziente con id " + assunzione.getIDPaziente(), e);
         }
     }
+
+    // ricostruisce da zero i contatori giornalieri a partire dalle assunzioni registrate
+    // @return il numero di righe (paziente giorno terapia) dei contatori
+    public int ricostruisciConteggiGiornalieri() throws DataAccessException {
+        String sql = "INSERT INTO ConteggioAssunzioniGiornaliero " +
+                "SELECT IDPaziente, substr(TimestampAssunzione, 1, 10), IDTerapia, COUNT(*) " +
+                "FROM AssunzioniFarmaci GROUP BY IDPaziente, substr(TimestampAssunzione, 1, 10), IDTerapia";
+
+        try {
+            return DatabaseManager.eseguiScrittura(conn -> {
+                conn.setAutoCommit(false);
+                int righe;
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("DELETE FROM ConteggioAssunzioniGiornaliero");
+                    righe = stmt.executeUpdate(sql);
+                }
+                conn.commit();
+                conn.setAutoCommit(true);
+                return righe;
+            });
+        } catch (SQLException e) {
+            System.err.println("errore durante la ricostruzione dei conteggi delle assunzioni " + e.getMessage());
+            throw new DataAccessException("errore durante la ricostruzione dei conteggi giornalieri delle assunzioni", e);
+        }
+    }
 }
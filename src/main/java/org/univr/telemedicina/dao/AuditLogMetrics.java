@@ -0,0 +1,75 @@
+package org.univr.telemedicina.dao;
+
+// fotografia delle metriche della coda del log delle operazioni (vedi logoperazionidao.getauditmetrics)
+public class AuditLogMetrics {
+    // log in attesa di essere scritti e capacità massima della coda
+    private final int inCoda;
+    private final int capacita;
+    // log accodati scritti e persi
+    private final long accodati;
+    private final long scritti;
+    private final long persi;
+    // log scritti direttamente dal chiamante perché la coda era piena
+    private final long scrittureDirette;
+    // gruppi scritti e latenza di scrittura di un gruppo
+    private final long flush;
+    private final long latenzaFlushTotaleNanos;
+    private final long latenzaFlushMassimaNanos;
+
+    public AuditLogMetrics(int inCoda, int capacita, long accodati, long scritti, long persi, long scrittureDirette, long flush, long latenzaFlushTotaleNanos, long latenzaFlushMassimaNanos) {
+        this.inCoda = inCoda;
+        this.capacita = capacita;
+        this.accodati = accodati;
+        this.scritti = scritti;
+        this.persi = persi;
+        this.scrittureDirette = scrittureDirette;
+        this.flush = flush;
+        this.latenzaFlushTotaleNanos = latenzaFlushTotaleNanos;
+        this.latenzaFlushMassimaNanos = latenzaFlushMassimaNanos;
+    }
+
+    // metodi getter per i campi della classe
+    public int getInCoda() {
+        return inCoda;
+    }
+
+    public int getCapacita() {
+        return capacita;
+    }
+
+    public long getAccodati() {
+        return accodati;
+    }
+
+    public long getScritti() {
+        return scritti;
+    }
+
+    public long getPersi() {
+        return persi;
+    }
+
+    public long getScrittureDirette() {
+        return scrittureDirette;
+    }
+
+    public long getFlush() {
+        return flush;
+    }
+
+    // latenza media di scrittura di un gruppo in millisecondi
+    public double getLatenzaFlushMediaMillis() {
+        return flush == 0 ? 0.0 : (latenzaFlushTotaleNanos / 1_000_000.0) / flush;
+    }
+
+    public double getLatenzaFlushMassimaMillis() {
+        return latenzaFlushMassimaNanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "audit log " + inCoda + "/" + capacita + " in coda, " + scritti + " scritti in " + flush + " flush, " + persi + " persi, "
+                + scrittureDirette + " scritture dirette, latenza flush media " + String.format("%.3f", getLatenzaFlushMediaMillis())
+                + " ms massima " + String.format("%.3f", getLatenzaFlushMassimaMillis()) + " ms";
+    }
+}
@@ -0,0 +1,175 @@
+package org.univr.telemedicina.dao;
+
+import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.LogOperazione;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// coda circolare limitata per il log delle operazioni con un thread che la svuota in background
+// il medico non attende più il commit del log dopo ogni operazione clinica:
+// i log vengono accodati e scritti a gruppi in un'unica transazione (logoperazionidao.inserisciloginblocco)
+// se la coda è piena il log viene scritto direttamente dal chiamante così nessun log viene perso per mancanza di spazio
+class AuditLogWriter {
+
+    private final LogOperazioniDAO logOperazioniDAO;
+    private final ModalitaAudit modalita;
+    private final int capacita;
+    private final int dimensioneGruppo;
+    private final ArrayBlockingQueue<LogOperazione> coda;
+    private final Thread flusher;
+    private volatile boolean chiuso = false;
+    // azione registrata in databasemanager per la chiusura dell'applicazione
+    private final Runnable chiusura = this::close;
+
+    // metriche
+    private final LongAdder accodati = new LongAdder();
+    private final AtomicLong completati = new AtomicLong();
+    private final LongAdder scritti = new LongAdder();
+    private final LongAdder persi = new LongAdder();
+    private final LongAdder scrittureDirette = new LongAdder();
+    private final LongAdder flush = new LongAdder();
+    private final LongAdder latenzaFlushTotaleNanos = new LongAdder();
+    private final AtomicLong latenzaFlushMassimaNanos = new AtomicLong();
+
+    // usato da flush() per attendere che il flusher completi i log accodati
+    private final Object monitor = new Object();
+
+    AuditLogWriter(LogOperazioniDAO logOperazioniDAO, ModalitaAudit modalita, int capacita, int dimensioneGruppo) {
+        if (modalita == ModalitaAudit.SINCRONO) {
+            throw new IllegalArgumentException("la coda del log serve solo nelle modalità asincrone");
+        }
+        this.logOperazioniDAO = logOperazioniDAO;
+        this.modalita = modalita;
+        this.capacita = capacita;
+        this.dimensioneGruppo = dimensioneGruppo;
+        this.coda = new ArrayBlockingQueue<>(capacita);
+        this.flusher = new Thread(this::ciclo, "telemedicina-audit-log");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        DatabaseManager.registraChiusura(chiusura);
+    }
+
+    // accoda un log senza attendere la scrittura
+    // @throws dataaccessexception se la coda è piena e anche la scrittura diretta fallisce
+    void accoda(LogOperazione log) throws DataAccessException {
+        if (!chiuso && coda.offer(log)) {
+            accodati.increment();
+            return;
+        }
+        // coda piena o già chiusa: il log viene scritto subito dal chiamante
+        scrittureDirette.increment();
+        logOperazioniDAO.inserisciLog(log);
+    }
+
+    private void ciclo() {
+        List<LogOperazione> gruppo = new ArrayList<>(dimensioneGruppo);
+        while (!chiuso) {
+            try {
+                LogOperazione primo = coda.poll(100, TimeUnit.MILLISECONDS);
+                if (primo == null) {
+                    continue;
+                }
+                gruppo.add(primo);
+                coda.drainTo(gruppo, dimensioneGruppo - 1);
+                scrivi(gruppo);
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                gruppo.clear();
+            }
+        }
+    }
+
+    // scrive un gruppo di log in una transazione
+    // se il gruppo fallisce riprova un log alla volta per non perdere anche quelli validi
+    private void scrivi(List<LogOperazione> gruppo) {
+        long inizio = System.nanoTime();
+        try {
+            logOperazioniDAO.inserisciLogInBlocco(gruppo);
+            scritti.add(gruppo.size());
+        } catch (DataAccessException e) {
+            System.err.println("errore durante la scrittura di un gruppo di " + gruppo.size() + " log " + e.getMessage());
+            for (LogOperazione log : gruppo) {
+                try {
+                    logOperazioniDAO.inserisciLog(log);
+                    scritti.increment();
+                } catch (DataAccessException errore) {
+                    System.err.println("log dell'operazione " + log.getTipoOperazione() + " perso " + errore.getMessage());
+                    persi.increment();
+                }
+            }
+        }
+        long latenza = System.nanoTime() - inizio;
+        flush.increment();
+        latenzaFlushTotaleNanos.add(latenza);
+        latenzaFlushMassimaNanos.accumulateAndGet(latenza, Math::max);
+
+        completati.addAndGet(gruppo.size());
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+    }
+
+    // attende che tutti i log accodati fino a questo momento siano stati scritti
+    // @return true se i log sono stati scritti entro il timeout
+    boolean flush(long timeoutMillis) {
+        long obiettivo = accodati.sum();
+        long scadenza = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (monitor) {
+            while (completati.get() < obiettivo) {
+                long rimanente = scadenza - System.nanoTime();
+                if (rimanente <= 0 || !flusher.isAlive()) {
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(monitor, rimanente);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // ferma il flusher
+    // in modalità asincrono_flush_chiusura i log rimasti in coda vengono scritti prima di chiudere
+    // in modalità asincrono vengono scartati
+    void close() {
+        if (chiuso) {
+            return;
+        }
+        if (modalita == ModalitaAudit.ASINCRONO_FLUSH_CHIUSURA) {
+            flush(TimeUnit.SECONDS.toMillis(5));
+        }
+        chiuso = true;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<LogOperazione> rimasti = new ArrayList<>();
+        coda.drainTo(rimasti);
+        if (!rimasti.isEmpty()) {
+            if (modalita == ModalitaAudit.ASINCRONO_FLUSH_CHIUSURA) {
+                scrivi(rimasti);
+            } else {
+                System.err.println(rimasti.size() + " log delle operazioni scartati alla chiusura");
+                persi.add(rimasti.size());
+                completati.addAndGet(rimasti.size());
+            }
+        }
+        DatabaseManager.rimuoviChiusura(chiusura);
+    }
+
+    AuditLogMetrics metrics() {
+        return new AuditLogMetrics(coda.size(), capacita, accodati.sum(), scritti.sum(), persi.sum(), scrittureDirette.sum(),
+                flush.sum(), latenzaFlushTotaleNanos.sum(), latenzaFlushMassimaNanos.get());
+    }
+}
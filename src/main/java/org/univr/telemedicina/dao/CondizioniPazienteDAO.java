@@ -21,7 +21,7 @@ public class CondizioniPazienteDAO {
         String sql = "SELECT * FROM CondizioniPaziente WHERE IDPaziente = ?";
 
         // try-with-resources per garantire la chiusura automatica delle risorse (connection preparedstatement resultset)
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             // imposta il parametro della query (?) per evitare sql injection
@@ -58,16 +58,18 @@ public class CondizioniPazienteDAO {
     public void create(CondizioniPaziente condizione) throws DataAccessException {
         String sql = "INSERT INTO CondizioniPaziente(IDPaziente, Tipo, Descrizione, Periodo, DataRegistrazione) VALUES (?, ?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, condizione.getIDPaziente());
-            pstmt.setString(2, condizione.getTipo());
-            pstmt.setString(3, condizione.getDescrizione());
-            pstmt.setString(4, condizione.getPeriodo());
-            pstmt.setObject(5, condizione.getDataRegistrazione());
+        try {
+            DatabaseManager.eseguiScrittura(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, condizione.getIDPaziente());
+                    pstmt.setString(2, condizione.getTipo());
+                    pstmt.setString(3, condizione.getDescrizione());
+                    pstmt.setString(4, condizione.getPeriodo());
+                    pstmt.setObject(5, condizione.getDataRegistrazione());
 
-            pstmt.executeUpdate();
+                    return pstmt.executeUpdate();
+                }
+            });
 
         } catch (SQLException e) {
             System.err.println("errore durante la creazione della condizione " + e.getMessage());
@@ -80,16 +82,18 @@ public class CondizioniPazienteDAO {
     public void update(CondizioniPaziente condizione) throws DataAccessException {
         String sql = "UPDATE CondizioniPaziente SET Tipo = ?, Descrizione = ?, Periodo = ?, DataRegistrazione = ? WHERE IDCondizione = ?";
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, condizione.getTipo());
-            pstmt.setString(2, condizione.getDescrizione());
-            pstmt.setString(3, condizione.getPeriodo());
-            pstmt.setObject(4, condizione.getDataRegistrazione());
-            pstmt.setInt(5, condizione.getIDCondizione()); // <-- la chiave per la clausola where
+        try {
+            int affectedRows = DatabaseManager.eseguiScrittura(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, condizione.getTipo());
+                    pstmt.setString(2, condizione.getDescrizione());
+                    pstmt.setString(3, condizione.getPeriodo());
+                    pstmt.setObject(4, condizione.getDataRegistrazione());
+                    pstmt.setInt(5, condizione.getIDCondizione()); // <-- la chiave per la clausola where
 
-            int affectedRows = pstmt.executeUpdate();
+                    return pstmt.executeUpdate();
+                }
+            });
 
             if (affectedRows == 0) {
                 // è buona norma gestire il caso in cui l'id non esista
@@ -104,12 +108,13 @@ public class CondizioniPazienteDAO {
     public void delete(int idCondizione) throws DataAccessException {
         String sql = "DELETE FROM CondizioniPaziente WHERE IDCondizione = ?";
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, idCondizione);
-
-            int affectedRows = pstmt.executeUpdate();
+        try {
+            int affectedRows = DatabaseManager.eseguiScrittura(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, idCondizione);
+                    return pstmt.executeUpdate();
+                }
+            });
 
             if (affectedRows == 0) {
                 throw new DataAccessException("eliminazione condizione fallita non è stata trovata nessuna condizione con id " + idCondizione, null);
@@ -0,0 +1,261 @@
+package org.univr.telemedicina.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// pool di connessioni jdbc con un numero massimo di connessioni aperte
+// le connessioni fisiche vengono create solo quando servono e poi riutilizzate
+// il chiamante riceve un proxy: quando chiama close() la connessione torna nel pool invece di essere chiusa
+// in questo modo i dao possono continuare a usare try-with-resources senza modifiche
+// ogni connessione fisica ha anche una cache dei preparedstatement (vedi statementcache)
+class ConnectionPool {
+
+    // numero di statement tenuti in cache per ogni connessione se non specificato
+    static final int CAPACITA_CACHE_STATEMENT_DEFAULT = 64;
+
+    private final String url;
+    private final int dimensioneMassima;
+    private final long timeoutMillis;
+    // istruzioni eseguite una sola volta su ogni nuova connessione fisica (pragma)
+    private final List<String> setupConnessione;
+    // statement tenuti in cache per ogni connessione fisica (0 disattiva la cache)
+    private final int capacitaCacheStatement;
+
+    // connessioni fisiche libere pronte per essere prestate (lifo per riusare quelle "calde" con la cache piena)
+    private final BlockingDeque<ConnessioneFisica> libere = new LinkedBlockingDeque<>();
+    // un permesso per ogni connessione che può essere prestata contemporaneamente
+    private final Semaphore permessi;
+
+    // metriche del pool
+    private final AtomicInteger attive = new AtomicInteger();
+    private final AtomicInteger aperte = new AtomicInteger();
+    private final LongAdder prestiti = new LongAdder();
+    private final LongAdder timeout = new LongAdder();
+    private final LongAdder validazioniFallite = new LongAdder();
+    private final LongAdder attesaTotaleNanos = new LongAdder();
+    private final AtomicLong attesaMassimaNanos = new AtomicLong();
+    private final LongAdder cacheHit = new LongAdder();
+    private final LongAdder cacheMiss = new LongAdder();
+    private final LongAdder cacheEspulsioni = new LongAdder();
+
+    private volatile boolean chiuso = false;
+
+    ConnectionPool(String url, int dimensioneMassima, long timeoutMillis, List<String> setupConnessione) {
+        this(url, dimensioneMassima, timeoutMillis, setupConnessione, CAPACITA_CACHE_STATEMENT_DEFAULT);
+    }
+
+    ConnectionPool(String url, int dimensioneMassima, long timeoutMillis, List<String> setupConnessione, int capacitaCacheStatement) {
+        if (dimensioneMassima <= 0) {
+            throw new IllegalArgumentException("la dimensione del pool deve essere maggiore di zero");
+        }
+        this.url = url;
+        this.dimensioneMassima = dimensioneMassima;
+        this.timeoutMillis = timeoutMillis;
+        this.setupConnessione = List.copyOf(setupConnessione);
+        this.capacitaCacheStatement = capacitaCacheStatement;
+        this.permessi = new Semaphore(dimensioneMassima, true);
+    }
+
+    // presta una connessione dal pool
+    // se tutte le connessioni sono in uso attende al massimo timeoutMillis
+    // @return un proxy della connessione che alla chiusura torna nel pool
+    // @throws sqltimeoutexception se nessuna connessione si libera entro il timeout
+    Connection borrow() throws SQLException {
+        if (chiuso) {
+            throw new SQLException("il pool di connessioni è stato chiuso");
+        }
+
+        long inizio = System.nanoTime();
+        try {
+            if (!permessi.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeout.increment();
+                throw new SQLTimeoutException("nessuna connessione disponibile nel pool dopo " + timeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("attesa di una connessione interrotta", e);
+        }
+        long attesa = System.nanoTime() - inizio;
+        attesaTotaleNanos.add(attesa);
+        attesaMassimaNanos.accumulateAndGet(attesa, Math::max);
+
+        try {
+            ConnessioneFisica fisica = libere.pollFirst();
+            // validazione al prestito: le connessioni non più valide vengono scartate
+            while (fisica != null && !isValida(fisica)) {
+                validazioniFallite.increment();
+                chiudiFisica(fisica);
+                fisica = libere.pollFirst();
+            }
+            if (fisica == null) {
+                fisica = apri();
+            }
+
+            attive.incrementAndGet();
+            prestiti.increment();
+            return avvolgi(fisica);
+        } catch (SQLException | RuntimeException e) {
+            permessi.release();
+            throw e;
+        }
+    }
+
+    // apre una nuova connessione fisica e applica le pragma configurate
+    private ConnessioneFisica apri() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            for (String istruzione : setupConnessione) {
+                stmt.execute(istruzione);
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        aperte.incrementAndGet();
+        return new ConnessioneFisica(conn, new StatementCache(conn, capacitaCacheStatement, cacheHit, cacheMiss, cacheEspulsioni));
+    }
+
+    // crea il proxy restituito al chiamante
+    private Connection avvolgi(ConnessioneFisica fisica) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnessionePrestata(fisica));
+    }
+
+    // riporta la connessione fisica nel pool
+    // se era rimasta una transazione aperta viene annullata per non "sporcare" il prossimo utilizzatore
+    private void release(ConnessioneFisica fisica) {
+        attive.decrementAndGet();
+        try {
+            if (chiuso || fisica.conn.isClosed()) {
+                chiudiFisica(fisica);
+                return;
+            }
+            // statement dimenticati aperti dal chiamante tornano comunque in cache
+            fisica.cache.ripristinaInUso();
+            if (!fisica.conn.getAutoCommit()) {
+                fisica.conn.rollback();
+                fisica.conn.setAutoCommit(true);
+            }
+            libere.offerFirst(fisica);
+        } catch (SQLException e) {
+            System.err.println("connessione scartata durante la restituzione al pool " + e.getMessage());
+            chiudiFisica(fisica);
+        } finally {
+            permessi.release();
+        }
+    }
+
+    private boolean isValida(ConnessioneFisica fisica) {
+        try {
+            return fisica.conn.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void chiudiFisica(ConnessioneFisica fisica) {
+        try {
+            fisica.cache.chiudiTutti();
+            fisica.conn.close();
+        } catch (SQLException e) {
+            System.err.println("errore durante la chiusura di una connessione " + e.getMessage());
+        } finally {
+            aperte.decrementAndGet();
+        }
+    }
+
+    // chiude tutte le connessioni libere
+    // quelle ancora in prestito vengono chiuse quando il chiamante le restituisce
+    void close() {
+        chiuso = true;
+        ConnessioneFisica fisica;
+        while ((fisica = libere.pollFirst()) != null) {
+            chiudiFisica(fisica);
+        }
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    // fotografia delle metriche attuali del pool
+    PoolMetrics metrics() {
+        return new PoolMetrics(dimensioneMassima, attive.get(), libere.size(), aperte.get(), prestiti.sum(),
+                timeout.sum(), validazioniFallite.sum(), attesaTotaleNanos.sum(), attesaMassimaNanos.get(),
+                cacheHit.sum(), cacheMiss.sum(), cacheEspulsioni.sum());
+    }
+
+    // connessione fisica insieme alla sua cache di statement
+    private static final class ConnessioneFisica {
+        private final Connection conn;
+        private final StatementCache cache;
+
+        ConnessioneFisica(Connection conn, StatementCache cache) {
+            this.conn = conn;
+            this.cache = cache;
+        }
+    }
+
+    // invocation handler del proxy: intercetta close() isClosed() e prepareStatement(sql) e delega tutto il resto
+    private class ConnessionePrestata implements InvocationHandler {
+        private final ConnessioneFisica fisica;
+        private boolean restituita = false;
+
+        ConnessionePrestata(ConnessioneFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    // close() può essere chiamato più volte, solo la prima restituisce la connessione
+                    if (!restituita) {
+                        restituita = true;
+                        release(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return restituita || fisica.conn.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "connessione dal pool " + fisica.conn;
+                default:
+                    break;
+            }
+
+            if (restituita) {
+                throw new SQLException("la connessione è già stata restituita al pool");
+            }
+            // solo prepareStatement(String) passa dalla cache le varianti con altri parametri restano dirette
+            if (method.getName().equals("prepareStatement") && args != null && args.length == 1) {
+                return fisica.cache.prepara((String) args[0], (Connection) proxy);
+            }
+            try {
+                return method.invoke(fisica.conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
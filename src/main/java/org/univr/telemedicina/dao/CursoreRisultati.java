@@ -0,0 +1,140 @@
+package org.univr.telemedicina.dao;
+
+import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.exception.UncheckedDataAccessException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// legge un resultset una riga alla volta invece di caricarlo tutto in una lista
+// la connessione di lettura resta occupata finché lo stream non viene chiuso o consumato fino in fondo
+// errori durante lo scorrimento arrivano come uncheckeddataaccessexception
+class CursoreRisultati<T> implements AutoCloseable {
+
+    // imposta i parametri della query sullo statement
+    @FunctionalInterface
+    interface Parametri {
+        void imposta(PreparedStatement pstmt) throws SQLException;
+    }
+
+    private final Connection conn;
+    private final PreparedStatement pstmt;
+    private final ResultSet rs;
+    private final MappaturaRiga<T> mappatura;
+    private final String descrizione;
+    private boolean chiuso = false;
+
+    private CursoreRisultati(Connection conn, PreparedStatement pstmt, ResultSet rs, MappaturaRiga<T> mappatura, String descrizione) {
+        this.conn = conn;
+        this.pstmt = pstmt;
+        this.rs = rs;
+        this.mappatura = mappatura;
+        this.descrizione = descrizione;
+    }
+
+    // esegue la query e restituisce uno stream che legge le righe man mano
+    // lo stream va chiuso (try-with-resources) se non viene consumato fino in fondo
+    // @param dimensioneFetch righe richieste al driver per volta (0 lascia il default del driver)
+    // @param descrizione usata nei messaggi di errore (es. "rilevazioni del paziente con id 3")
+    // @throws dataaccessexception se la query non può essere eseguita
+    static <T> Stream<T> stream(String sql, Parametri parametri, MappaturaRiga<T> mappatura, int dimensioneFetch, String descrizione) throws DataAccessException {
+        CursoreRisultati<T> cursore = apri(sql, parametri, mappatura, dimensioneFetch, descrizione);
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> azione) {
+                T riga = cursore.prossima();
+                if (riga == null) {
+                    return false;
+                }
+                azione.accept(riga);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(cursore::close);
+    }
+
+    // esegue la query e passa ogni riga alla callback senza tenerle in memoria
+    // la connessione viene restituita al pool alla fine anche se la callback lancia un'eccezione
+    // @return il numero di righe lette
+    static <T> int perOgniRiga(String sql, Parametri parametri, MappaturaRiga<T> mappatura, int dimensioneFetch, String descrizione, Consumer<? super T> callback) throws DataAccessException {
+        int righe = 0;
+        try (CursoreRisultati<T> cursore = apri(sql, parametri, mappatura, dimensioneFetch, descrizione)) {
+            T riga;
+            while ((riga = cursore.prossima()) != null) {
+                callback.accept(riga);
+                righe++;
+            }
+        } catch (UncheckedDataAccessException e) {
+            throw e.getCause();
+        }
+        return righe;
+    }
+
+    private static <T> CursoreRisultati<T> apri(String sql, Parametri parametri, MappaturaRiga<T> mappatura, int dimensioneFetch, String descrizione) throws DataAccessException {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+            conn = DatabaseManager.getReadConnection();
+            pstmt = conn.prepareStatement(sql);
+            if (dimensioneFetch > 0) {
+                pstmt.setFetchSize(dimensioneFetch);
+            }
+            parametri.imposta(pstmt);
+            ResultSet rs = pstmt.executeQuery();
+            return new CursoreRisultati<>(conn, pstmt, rs, mappatura, descrizione);
+        } catch (SQLException e) {
+            chiudiSilenziosamente(pstmt);
+            chiudiSilenziosamente(conn);
+            System.err.println("errore durante l'apertura del cursore " + e.getMessage());
+            throw new DataAccessException("errore durante la lettura delle " + descrizione, e);
+        }
+    }
+
+    // legge la riga successiva oppure null alla fine
+    // arrivato in fondo il cursore si chiude da solo così la connessione torna subito nel pool
+    private T prossima() {
+        if (chiuso) {
+            return null;
+        }
+        try {
+            if (!rs.next()) {
+                close();
+                return null;
+            }
+            return mappatura.mappa(rs);
+        } catch (SQLException e) {
+            close();
+            System.err.println("errore durante lo scorrimento del cursore " + e.getMessage());
+            throw new UncheckedDataAccessException(new DataAccessException("errore durante la lettura delle " + descrizione, e));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (chiuso) {
+            return;
+        }
+        chiuso = true;
+        chiudiSilenziosamente(rs);
+        chiudiSilenziosamente(pstmt);
+        chiudiSilenziosamente(conn);
+    }
+
+    private static void chiudiSilenziosamente(AutoCloseable risorsa) {
+        if (risorsa == null) {
+            return;
+        }
+        try {
+            risorsa.close();
+        } catch (Exception e) {
+            System.err.println("errore durante la chiusura del cursore " + e.getMessage());
+        }
+    }
+}
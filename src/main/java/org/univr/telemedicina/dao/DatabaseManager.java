@@ -1,25 +1,293 @@
 package org.univr.telemedicina.dao;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 
+// punto di accesso unico al database sqlite
+// - le letture usano un pool di connessioni in sola lettura (query_only) che in modalità wal non vengono mai bloccate
+// - le scritture passano tutte da un unico thread scrittore con una sola connessione (sqlite ammette un solo scrittore)
+// - gli inserimenti frequenti possono essere raggruppati in un'unica transazione (vedi eseguiinserimento)
+// - getconnection() resta disponibile come connessione generica in lettura e scrittura (test e manutenzione)
+// - al primo accesso vengono applicate le migrazioni dello schema mancanti (vedi migrazionidatabase)
 public class DatabaseManager {
 
     // url di connessione al database sqlite
-    // "main.sqlite" deve trovarsi nella cartella radice del progetto jdbc:sqlite:main.sqlite_journal_mode=wal
+    // "main.sqlite" deve trovarsi nella cartella radice del progetto
     private static String URL = "jdbc:sqlite:main.sqlite";
 
-    // restituisce una nuova connessione al database
+    // configurazione del pool di connessioni
+    // i valori di default possono essere sovrascritti all'avvio con -Dtelemedicina.db.poolSize=... ecc
+    private static int poolSize = Integer.getInteger("telemedicina.db.poolSize", 8);
+    private static long poolTimeoutMillis = Long.getLong("telemedicina.db.poolTimeoutMs", 5000L);
+    private static int busyTimeoutMillis = Integer.getInteger("telemedicina.db.busyTimeoutMs", 5000);
+    // preparedstatement tenuti in cache per ogni connessione (0 disattiva la cache)
+    private static int statementCacheSize = Integer.getInteger("telemedicina.db.statementCacheSize", ConnectionPool.CAPACITA_CACHE_STATEMENT_DEFAULT);
+    // group commit: per quanti millisecondi raccogliere inserimenti e quanti al massimo per transazione
+    private static long groupCommitFinestraMillis = Long.getLong("telemedicina.db.groupCommitFinestraMs", 2L);
+    private static int groupCommitMaxComandi = Integer.getInteger("telemedicina.db.groupCommitMaxComandi", 256);
+
+    // pool e thread scrittore vengono creati al primo utilizzo
+    private static volatile ConnectionPool pool;
+    private static volatile ConnectionPool poolLettura;
+    private static volatile ScrittoreDatabase scrittore;
+    private static volatile GroupCommitWriter groupCommit;
+    // true quando le migrazioni sono state applicate al database dell'url attuale
+    private static volatile boolean schemaAggiornato = false;
+    // azioni da eseguire in shutdown() prima di chiudere lo scrittore (es. svuotare la coda del log delle operazioni)
+    private static final List<Runnable> azioniChiusura = new CopyOnWriteArrayList<>();
+
+    // restituisce una connessione generica in lettura e scrittura presa dal pool
+    // i dao usano getreadconnection() ed eseguiscrittura() questa resta per i test e le operazioni di manutenzione
+    // la connessione va chiusa come prima (try-with-resources) e alla chiusura torna nel pool
     // @return un oggetto connection
-    // @throws sqlexception se la connessione fallisce
+    // @throws sqlexception se la connessione fallisce o il pool è esaurito oltre il timeout
     public static Connection getConnection() throws SQLException {
-        // non è più necessario class.forname() con i driver jdbc moderni
-        return DriverManager.getConnection(URL);
+        assicuraSchema();
+        ConnectionPool attuale = pool;
+        if (attuale == null) {
+            synchronized (DatabaseManager.class) {
+                attuale = pool;
+                if (attuale == null) {
+                    attuale = new ConnectionPool(URL, poolSize, poolTimeoutMillis, pragmaConnessione(false), statementCacheSize);
+                    pool = attuale;
+                }
+            }
+        }
+        return attuale.borrow();
+    }
+
+    // restituisce una connessione in sola lettura dal pool dei lettori
+    // qualsiasi tentativo di scrittura su questa connessione fallisce (pragma query_only)
+    public static Connection getReadConnection() throws SQLException {
+        assicuraSchema();
+        return getPoolLettura().borrow();
+    }
+
+    // esegue un'operazione di scrittura sul thread scrittore e ne restituisce il risultato
+    // il chiamante resta in attesa finché la scrittura non è terminata quindi una lettura successiva vede già i dati
+    // se l'operazione fallisce con una transazione aperta questa viene annullata
+    // @param operazione le istruzioni da eseguire sulla connessione dello scrittore (che non va chiusa)
+    // @throws sqlexception se l'operazione fallisce
+    public static <T> T eseguiScrittura(OperazioneSql<T> operazione) throws SQLException {
+        assicuraSchema();
+        return getScrittore().esegui(operazione);
+    }
+
+    // accoda un inserimento alla coda di group commit e restituisce subito un future con la chiave generata
+    // l'inserimento viene confermato insieme agli altri arrivati negli stessi millisecondi con un solo commit
+    // l'operazione non deve gestire la transazione (niente commit o setautocommit) e deve restituire la chiave generata
+    // (vedi chiavegenerata) oppure 0 se la tabella non ne ha
+    public static CompletableFuture<Long> inserisciRaggruppato(OperazioneSql<Long> inserimento) {
+        try {
+            assicuraSchema();
+        } catch (SQLException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return getGroupCommit().inserisci(inserimento);
+    }
+
+    // come inserisciraggruppato ma attende il commit e restituisce la chiave generata
+    // @throws sqlexception se l'inserimento o il commit del gruppo falliscono
+    public static long eseguiInserimento(OperazioneSql<Long> inserimento) throws SQLException {
+        try {
+            return inserisciRaggruppato(inserimento).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("attesa dell'inserimento interrotta", e);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (causa instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new SQLException("errore durante l'inserimento", causa);
+        }
+    }
+
+    // legge la chiave generata dall'ultimo inserimento eseguito con lo statement
+    // @return la chiave generata o 0 se non disponibile
+    public static long chiaveGenerata(Statement stmt) throws SQLException {
+        try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+            return generatedKeys.next() ? generatedKeys.getLong(1) : 0L;
+        }
+    }
+
+    // applica le migrazioni mancanti una sola volta per ogni url
+    // le migrazioni girano sul thread scrittore così non si sovrappongono ad altre scritture
+    private static void assicuraSchema() throws SQLException {
+        if (schemaAggiornato) {
+            return;
+        }
+        synchronized (DatabaseManager.class) {
+            if (!schemaAggiornato) {
+                getScrittore().esegui(MigrazioniDatabase::applica);
+                schemaAggiornato = true;
+            }
+        }
+    }
+
+    // versione dello schema attualmente applicata al database
+    public static int getVersioneSchema() throws SQLException {
+        try (Connection conn = getReadConnection()) {
+            return MigrazioniDatabase.versioneAttuale(conn);
+        }
+    }
+
+    private static ConnectionPool getPoolLettura() {
+        ConnectionPool attuale = poolLettura;
+        if (attuale == null) {
+            synchronized (DatabaseManager.class) {
+                attuale = poolLettura;
+                if (attuale == null) {
+                    attuale = new ConnectionPool(URL, poolSize, poolTimeoutMillis, pragmaConnessione(true), statementCacheSize);
+                    poolLettura = attuale;
+                }
+            }
+        }
+        return attuale;
+    }
+
+    private static ScrittoreDatabase getScrittore() {
+        ScrittoreDatabase attuale = scrittore;
+        if (attuale == null) {
+            synchronized (DatabaseManager.class) {
+                attuale = scrittore;
+                if (attuale == null) {
+                    attuale = new ScrittoreDatabase(URL, pragmaConnessione(false), poolTimeoutMillis, statementCacheSize);
+                    scrittore = attuale;
+                }
+            }
+        }
+        return attuale;
+    }
+
+    private static GroupCommitWriter getGroupCommit() {
+        GroupCommitWriter attuale = groupCommit;
+        if (attuale == null) {
+            synchronized (DatabaseManager.class) {
+                attuale = groupCommit;
+                if (attuale == null) {
+                    attuale = new GroupCommitWriter(getScrittore(), groupCommitFinestraMillis, groupCommitMaxComandi);
+                    groupCommit = attuale;
+                }
+            }
+        }
+        return attuale;
+    }
+
+    // pragma applicate a ogni nuova connessione fisica
+    // wal permette letture concorrenti durante una scrittura
+    // busy_timeout fa attendere sqlite invece di fallire subito con sqlite_busy
+    // query_only impedisce qualsiasi scrittura dalle connessioni dei lettori
+    private static List<String> pragmaConnessione(boolean soloLettura) {
+        List<String> pragma = new ArrayList<>();
+        pragma.add("PRAGMA journal_mode=WAL");
+        pragma.add("PRAGMA busy_timeout=" + busyTimeoutMillis);
+        if (soloLettura) {
+            pragma.add("PRAGMA query_only=1");
+        }
+        return pragma;
+    }
+
+    // metriche del pool dei lettori (tempo di attesa connessioni attive e libere timeout hit della cache degli statement)
+    public static PoolMetrics getPoolMetrics() {
+        return getPoolLettura().metrics();
+    }
+
+    // metriche della connessione dello scrittore
+    public static PoolMetrics getScrittoreMetrics() {
+        return getScrittore().metrics();
+    }
+
+    // metriche della coda di group commit (inserimenti per transazione comandi in coda)
+    public static GroupCommitMetrics getGroupCommitMetrics() {
+        return getGroupCommit().metrics();
+    }
+
+    // numero di scritture in attesa del thread scrittore
+    public static int getScrittureInCoda() {
+        return getScrittore().scrittureInCoda();
     }
 
     //viene chiamato solo nei test per impostare test.sqlite
-    public static void setURL(String url) {
+    public static synchronized void setURL(String url) {
+        if (!url.equals(URL)) {
+            chiudiPool();
+        }
         URL = url;
     }
-}
\ No newline at end of file
+
+    // dimensione massima configurata del pool dei lettori (non crea il pool e non apre il database)
+    public static synchronized int getPoolSize() {
+        return poolSize;
+    }
+
+    // imposta la dimensione massima del pool dei lettori il pool attuale viene ricreato
+    public static synchronized void setPoolSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("la dimensione del pool deve essere maggiore di zero");
+        }
+        poolSize = size;
+        chiudiPool();
+    }
+
+    // imposta per quanto tempo attendere una connessione libera prima di fallire
+    public static synchronized void setPoolTimeoutMillis(long timeoutMillis) {
+        poolTimeoutMillis = timeoutMillis;
+        chiudiPool();
+    }
+
+    // registra un'azione da eseguire alla chiusura prima che lo scrittore venga fermato
+    static void registraChiusura(Runnable azione) {
+        azioniChiusura.add(azione);
+    }
+
+    static void rimuoviChiusura(Runnable azione) {
+        azioniChiusura.remove(azione);
+    }
+
+    // chiude tutte le connessioni del pool e il thread scrittore dopo aver completato le scritture in coda
+    // da chiamare alla chiusura dell'applicazione
+    // le azioni registrate girano fuori dal lock perché possono ancora usare eseguiscrittura
+    public static void shutdown() {
+        for (Runnable azione : azioniChiusura) {
+            try {
+                azione.run();
+            } catch (RuntimeException e) {
+                System.err.println("errore durante un'azione di chiusura " + e.getMessage());
+            }
+        }
+        chiudiPool();
+    }
+
+    private static synchronized void chiudiPool() {
+        schemaAggiornato = false;
+        // prima la coda degli inserimenti e poi lo scrittore così le scritture in coda vengono completate prima di chiudere
+        if (groupCommit != null) {
+            groupCommit.close();
+            groupCommit = null;
+        }
+        if (scrittore != null) {
+            scrittore.close();
+            scrittore = null;
+        }
+        if (poolLettura != null) {
+            poolLettura.close();
+            poolLettura = null;
+        }
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+}
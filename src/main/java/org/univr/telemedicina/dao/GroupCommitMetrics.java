@@ -0,0 +1,47 @@
+package org.univr.telemedicina.dao;
+
+// fotografia delle metriche della coda di inserimenti raggruppati (vedi databasemanager.getgroupcommitmetrics)
+public class GroupCommitMetrics {
+    // comandi in attesa di essere eseguiti
+    private final int inCoda;
+    // inserimenti confermati e falliti
+    private final long comandiEseguiti;
+    private final long comandiFalliti;
+    // transazioni (commit) eseguite
+    private final long transazioni;
+
+    public GroupCommitMetrics(int inCoda, long comandiEseguiti, long comandiFalliti, long transazioni) {
+        this.inCoda = inCoda;
+        this.comandiEseguiti = comandiEseguiti;
+        this.comandiFalliti = comandiFalliti;
+        this.transazioni = transazioni;
+    }
+
+    // metodi getter per i campi della classe
+    public int getInCoda() {
+        return inCoda;
+    }
+
+    public long getComandiEseguiti() {
+        return comandiEseguiti;
+    }
+
+    public long getComandiFalliti() {
+        return comandiFalliti;
+    }
+
+    public long getTransazioni() {
+        return transazioni;
+    }
+
+    // numero medio di inserimenti per ogni commit
+    public double getComandiPerTransazione() {
+        return transazioni == 0 ? 0.0 : (double) (comandiEseguiti + comandiFalliti) / transazioni;
+    }
+
+    @Override
+    public String toString() {
+        return "group commit " + comandiEseguiti + " inserimenti in " + transazioni + " transazioni ("
+                + String.format("%.1f", getComandiPerTransazione()) + " per commit), " + comandiFalliti + " falliti, " + inCoda + " in coda";
+    }
+}
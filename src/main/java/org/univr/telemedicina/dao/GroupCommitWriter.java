@@ -0,0 +1,181 @@
+package org.univr.telemedicina.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// raggruppa gli inserimenti frequenti (rilevazioni assunzioni log notifiche) in un'unica transazione
+// in autocommit ogni riga paga un commit (e un fsync) mentre qui i comandi arrivati entro pochi millisecondi
+// o fino a un massimo di comandi vengono eseguiti insieme dal thread scrittore e confermati con un solo commit
+// ogni chiamante riceve un future completato con la chiave generata dal proprio inserimento
+class GroupCommitWriter {
+
+    // comando in attesa insieme al future del chiamante
+    private static class Comando {
+        private final OperazioneSql<Long> operazione;
+        private final CompletableFuture<Long> risultato = new CompletableFuture<>();
+
+        Comando(OperazioneSql<Long> operazione) {
+            this.operazione = operazione;
+        }
+    }
+
+    private final ScrittoreDatabase scrittore;
+    private final long finestraNanos;
+    private final int maxComandi;
+    private final LinkedBlockingQueue<Comando> coda = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean chiuso = false;
+    // protegge il controllo di chiuso e l'accodamento: dopo la chiusura nessun comando può finire in coda senza essere eseguito
+    private final Object lock = new Object();
+
+    // metriche
+    private final LongAdder comandiEseguiti = new LongAdder();
+    private final LongAdder comandiFalliti = new LongAdder();
+    private final LongAdder transazioni = new LongAdder();
+
+    GroupCommitWriter(ScrittoreDatabase scrittore, long finestraMillis, int maxComandi) {
+        if (maxComandi <= 0) {
+            throw new IllegalArgumentException("il numero massimo di comandi per transazione deve essere maggiore di zero");
+        }
+        this.scrittore = scrittore;
+        this.finestraNanos = TimeUnit.MILLISECONDS.toNanos(finestraMillis);
+        this.maxComandi = maxComandi;
+        this.thread = new Thread(this::ciclo, "telemedicina-db-group-commit");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // accoda un inserimento e restituisce subito il future con la chiave generata
+    // se viene chiamato dal thread scrittore (ad esempio dentro eseguiscrittura) il comando viene eseguito subito
+    // nella transazione corrente altrimenti il thread scrittore resterebbe in attesa di se stesso
+    CompletableFuture<Long> inserisci(OperazioneSql<Long> operazione) {
+        if (scrittore.isThreadScrittore()) {
+            try {
+                return CompletableFuture.completedFuture(scrittore.esegui(operazione));
+            } catch (SQLException | RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        Comando comando = new Comando(operazione);
+        synchronized (lock) {
+            if (chiuso) {
+                comando.risultato.completeExceptionally(new SQLException("la coda degli inserimenti è stata chiusa"));
+                return comando.risultato;
+            }
+            coda.add(comando);
+        }
+        return comando.risultato;
+    }
+
+    private void ciclo() {
+        List<Comando> gruppo = new ArrayList<>(maxComandi);
+        while (true) {
+            try {
+                Comando primo = coda.poll(100, TimeUnit.MILLISECONDS);
+                if (primo == null) {
+                    if (chiuso) {
+                        return;
+                    }
+                    continue;
+                }
+                gruppo.add(primo);
+
+                // raccoglie gli altri comandi che arrivano entro la finestra a partire dal primo
+                long scadenza = System.nanoTime() + finestraNanos;
+                while (gruppo.size() < maxComandi) {
+                    long rimanente = scadenza - System.nanoTime();
+                    Comando altro = rimanente > 0 ? coda.poll(rimanente, TimeUnit.NANOSECONDS) : coda.poll();
+                    if (altro == null) {
+                        break;
+                    }
+                    gruppo.add(altro);
+                }
+
+                eseguiGruppo(gruppo);
+            } catch (InterruptedException e) {
+                // alla chiusura si completa comunque quello che è già in coda
+                synchronized (lock) {
+                    chiuso = true;
+                }
+            } finally {
+                gruppo.clear();
+            }
+        }
+    }
+
+    // esegue il gruppo in una transazione
+    // ogni comando ha un proprio savepoint così un inserimento che fallisce non annulla quelli degli altri chiamanti
+    // i future vengono completati solo dopo il commit
+    private void eseguiGruppo(List<Comando> gruppo) {
+        Long[] chiavi = new Long[gruppo.size()];
+        SQLException[] errori = new SQLException[gruppo.size()];
+
+        try {
+            scrittore.esegui(conn -> {
+                conn.setAutoCommit(false);
+                for (int i = 0; i < gruppo.size(); i++) {
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        chiavi[i] = gruppo.get(i).operazione.esegui(conn);
+                        conn.releaseSavepoint(savepoint);
+                    } catch (SQLException e) {
+                        conn.rollback(savepoint);
+                        conn.releaseSavepoint(savepoint);
+                        errori[i] = e;
+                    }
+                }
+                conn.commit();
+                conn.setAutoCommit(true);
+                return null;
+            });
+        } catch (SQLException | RuntimeException e) {
+            // il commit è fallito: nessun comando del gruppo è stato salvato
+            System.err.println("errore durante il commit di un gruppo di " + gruppo.size() + " inserimenti " + e.getMessage());
+            for (Comando comando : gruppo) {
+                comando.risultato.completeExceptionally(e);
+            }
+            comandiFalliti.add(gruppo.size());
+            transazioni.increment();
+            return;
+        }
+
+        transazioni.increment();
+        for (int i = 0; i < gruppo.size(); i++) {
+            if (errori[i] != null) {
+                comandiFalliti.increment();
+                gruppo.get(i).risultato.completeExceptionally(errori[i]);
+            } else {
+                comandiEseguiti.increment();
+                gruppo.get(i).risultato.complete(chiavi[i]);
+            }
+        }
+    }
+
+    GroupCommitMetrics metrics() {
+        return new GroupCommitMetrics(coda.size(), comandiEseguiti.sum(), comandiFalliti.sum(), transazioni.sum());
+    }
+
+    // smette di accettare comandi ed esegue quelli già in coda
+    void close() {
+        synchronized (lock) {
+            chiuso = true;
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Comando rimasto;
+        while ((rimasto = coda.poll()) != null) {
+            rimasto.risultato.completeExceptionally(new SQLException("la coda degli inserimenti è stata chiusa"));
+        }
+    }
+}
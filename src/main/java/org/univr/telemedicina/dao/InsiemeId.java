@@ -0,0 +1,51 @@
+package org.univr.telemedicina.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.StringJoiner;
+
+// insieme di id passato a una query come un unico parametro json invece di un segnaposto per ogni id
+// la query usa "IDPaziente IN (" + InsiemeId.SOTTOQUERY + ")" e imposta il blocco con setString
+// così il testo sql è sempre lo stesso (riusato dalla cache degli statement del pool)
+// e non si supera il limite di parametri di sqlite con elenchi molto grandi
+// gli elenchi più lunghi di DIMENSIONE_BLOCCO vengono divisi in blocchi eseguiti sullo stesso statement
+final class InsiemeId {
+
+    // tabella con una riga per ogni elemento dell'array json
+    static final String SOTTOQUERY = "SELECT value FROM json_each(?)";
+
+    // id per blocco configurabili da riga di comando
+    static final int DIMENSIONE_BLOCCO = Integer.getInteger("telemedicina.db.dimensioneBloccoId", 5000);
+
+    private InsiemeId() {
+    }
+
+    // divide gli id senza duplicati in blocchi di DIMENSIONE_BLOCCO id
+    // @return gli array json da impostare come parametro, uno per esecuzione della query
+    static List<String> blocchi(Collection<Integer> ids) {
+        return blocchi(ids, DIMENSIONE_BLOCCO);
+    }
+
+    static List<String> blocchi(Collection<Integer> ids, int dimensioneBlocco) {
+        List<String> blocchi = new ArrayList<>();
+        StringJoiner blocco = null;
+        int inBlocco = 0;
+        for (Integer id : new LinkedHashSet<>(ids)) {
+            if (blocco == null) {
+                blocco = new StringJoiner(",", "[", "]");
+            }
+            blocco.add(Integer.toString(id));
+            if (++inBlocco == dimensioneBlocco) {
+                blocchi.add(blocco.toString());
+                blocco = null;
+                inBlocco = 0;
+            }
+        }
+        if (blocco != null) {
+            blocchi.add(blocco.toString());
+        }
+        return blocchi;
+    }
+}
@@ -1,36 +1,108 @@
 package org.univr.telemedicina.dao;
 
 import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.CursoreLog;
+import org.univr.telemedicina.model.FiltroLog;
 import org.univr.telemedicina.model.LogOperazione;
+import org.univr.telemedicina.model.PaginaLog;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 // classe dao per gestire le operazioni di accesso ai dati relativi ai log delle operazioni
 // - crea un log di operazione nel database
 // - legge tutti i log di operazioni dal database ordinati dal più recente al più vecchio
 // - recupera la cronologia di tutte le operazioni effettuate su un paziente specifico ordinata dal più recente al più vecchio
 // - recupera la cronologia di tutte le operazioni effettuate su un medico specifico ordinata dal più recente al più vecchio
+// - legge la cronologia una pagina alla volta con un cursore (timestamp, idlog) e filtri opzionali
+// - scorre tutti i log come stream o con una callback senza caricarli in memoria (esportazioni)
 // metodo helper per evitare la duplicazione del codice nella lettura dei log
+// la scrittura dei log può essere sincrona (default) o asincrona tramite una coda limitata (vedi modalitaaudit)
 public class LogOperazioniDAO {
 
+    private static final String SQL_INSERT = "INSERT INTO LogOperazioni (IDMedicoOperante, IDPazienteInteressato, TipoOperazione, DescrizioneOperazione, Timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    // capacità della coda e numero massimo di log scritti in una transazione nelle modalità asincrone
+    // sovrascrivibili all'avvio con -Dtelemedicina.audit.capacita=... ecc
+    private static final int CAPACITA_CODA = Integer.getInteger("telemedicina.audit.capacita", 1024);
+    private static final int DIMENSIONE_GRUPPO = Integer.getInteger("telemedicina.audit.dimensioneGruppo", 128);
+    // tempo massimo di attesa della scrittura dei log in coda prima di una lettura
+    private static final long TIMEOUT_FLUSH_MILLIS = 5000;
+
+    private final ModalitaAudit modalita;
+    // null in modalità sincrona
+    private final AuditLogWriter writer;
+
+    public LogOperazioniDAO() {
+        this(ModalitaAudit.SINCRONO);
+    }
+
+    public LogOperazioniDAO(ModalitaAudit modalita) {
+        this(modalita, CAPACITA_CODA, DIMENSIONE_GRUPPO);
+    }
+
+    LogOperazioniDAO(ModalitaAudit modalita, int capacita, int dimensioneGruppo) {
+        this.modalita = modalita;
+        this.writer = modalita == ModalitaAudit.SINCRONO ? null : new AuditLogWriter(this, modalita, capacita, dimensioneGruppo);
+    }
+
+    public ModalitaAudit getModalita() {
+        return modalita;
+    }
+
     // scrive un log di operazione nel database
+    // nelle modalità asincrone il log viene solo accodato e scritto poco dopo dal thread del log
     // @param log l'oggetto logoperazioni da inserire nel database
     public void createLog(LogOperazione log) throws DataAccessException {
-        String sql = "INSERT INTO LogOperazioni (IDMedicoOperante, IDPazienteInteressato, TipoOperazione, DescrizioneOperazione, Timestamp) VALUES (?, ?, ?, ?, ?)";
+        if (writer != null) {
+            writer.accoda(log);
+            return;
+        }
+        inserisciLog(log);
+    }
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // attende che i log accodati fino a ora siano scritti nel database (nessun effetto in modalità sincrona)
+    // @return true se tutti i log sono stati scritti entro il timeout
+    public boolean flush() {
+        return writer == null || writer.flush(TIMEOUT_FLUSH_MILLIS);
+    }
 
-            pstmt.setInt(1, log.getIDMedicoOperante());
-            pstmt.setInt(2, log.getIDPazienteInteressato());
-            pstmt.setString(3, log.getTipoOperazione());
-            pstmt.setString(4, log.getDescrizioneOperazione());
-            pstmt.setObject(5, log.getTimestamp());
+    // ferma il thread del log applicando la politica di chiusura della modalità
+    // viene chiamato anche da databasemanager.shutdown()
+    public void close() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    // metriche della coda del log (profondità della coda latenza di scrittura log persi)
+    // in modalità sincrona restituisce metriche vuote
+    public AuditLogMetrics getAuditMetrics() {
+        if (writer == null) {
+            return new AuditLogMetrics(0, 0, 0, 0, 0, 0, 0, 0, 0);
+        }
+        return writer.metrics();
+    }
+
+    // scrive subito un log nel database
+    void inserisciLog(LogOperazione log) throws DataAccessException {
+        try {
+            DatabaseManager.eseguiInserimento(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT)) {
+                    pstmt.setInt(1, log.getIDMedicoOperante());
+                    pstmt.setInt(2, log.getIDPazienteInteressato());
+                    pstmt.setString(3, log.getTipoOperazione());
+                    pstmt.setString(4, log.getDescrizioneOperazione());
+                    pstmt.setObject(5, log.getTimestamp());
 
-            pstmt.executeUpdate();
+                    pstmt.executeUpdate();
+                    return DatabaseManager.chiaveGenerata(pstmt);
+                }
+            });
 
         } catch (SQLException e) {
             System.err.println("errore durante l'inserimento del log " + e.getMessage());
@@ -38,15 +110,55 @@ public class LogOperazioniDAO {
         }
     }
 
+    // scrive un gruppo di log in un'unica transazione
+    // se un inserimento fallisce nessun log del gruppo viene scritto
+    void inserisciLogInBlocco(List<LogOperazione> logs) throws DataAccessException {
+        if (logs.isEmpty()) {
+            return;
+        }
+
+        try {
+            DatabaseManager.eseguiScrittura(conn -> {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT)) {
+                    for (LogOperazione log : logs) {
+                        pstmt.setInt(1, log.getIDMedicoOperante());
+                        pstmt.setInt(2, log.getIDPazienteInteressato());
+                        pstmt.setString(3, log.getTipoOperazione());
+                        pstmt.setString(4, log.getDescrizioneOperazione());
+                        pstmt.setObject(5, log.getTimestamp());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                conn.commit();
+                conn.setAutoCommit(true);
+                return logs.size();
+            });
+        } catch (SQLException e) {
+            System.err.println("errore durante l'inserimento di un gruppo di log " + e.getMessage());
+            throw new DataAccessException("errore durante l'inserimento di " + logs.size() + " log di operazione", e);
+        }
+    }
+
+    // nelle modalità asincrone prima di leggere attende che i log accodati siano scritti
+    // così chi ha appena registrato un'operazione la ritrova nella cronologia
+    private void attendiLogInCoda() {
+        if (writer != null && !writer.flush(TIMEOUT_FLUSH_MILLIS)) {
+            System.err.println("timeout durante l'attesa della scrittura dei log in coda");
+        }
+    }
+
 
     // legge tutti i log di operazioni dal database
     // dal più recente al più vecchio
     // @return una lista di logoperazioni contenente i log di operazioni
     public List<LogOperazione> getAllLog() throws DataAccessException {
+        attendiLogInCoda();
         List<LogOperazione> logs = new ArrayList<>();
         String sql = "SELECT * FROM LogOperazioni ORDER BY Timestamp DESC";
 
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              Statement stmt = conn.createStatement()) {
 
             ResultSet rs = stmt.executeQuery(sql);
@@ -73,10 +185,11 @@ public class LogOperazioniDAO {
     // @param idpaziente l'id del paziente di cui si vuole la cronologia
     // @return una lista di oggetti logoperazione
     public List<LogOperazione> findLogsByPazienteId(int IDPaziente) throws DataAccessException {
+        attendiLogInCoda();
         List<LogOperazione> logs = new ArrayList<>();
         String sql = "SELECT * FROM LogOperazioni WHERE IDPazienteInteressato = ? ORDER BY Timestamp DESC";
 
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, IDPaziente);
@@ -99,10 +212,11 @@ public class LogOperazioniDAO {
     // @param idmedico l'id del paziente di cui si vuole la cronologia
     // @return una lista di oggetti logoperazione
     public List<LogOperazione> findLogsByMedicoId(int IDMedico) throws DataAccessException {
+        attendiLogInCoda();
         List<LogOperazione> logs = new ArrayList<>();
         String sql = "SELECT * FROM LogOperazioni WHERE IDMedicoOperante = ? ORDER BY Timestamp DESC";
 
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, IDMedico);
@@ -120,6 +234,96 @@ public class LogOperazioniDAO {
         return logs;
     }
 
+    // legge una pagina della cronologia dei log dal più recente al più vecchio
+    // la paginazione usa il cursore (timestamp, idlog) dell'ultimo log letto invece di offset
+    // così ogni pagina è una ricerca nell'indice che costa uguale anche in fondo alla cronologia
+    // @param filtro criteri opzionali (paziente medico intervallo di date tipo di operazione) null per nessun filtro
+    // @param cursore il cursore restituito dalla pagina precedente null per la prima pagina
+    // @param dimensionePagina numero massimo di log nella pagina
+    // @return la pagina con il cursore per la pagina successiva
+    public PaginaLog getPaginaLog(FiltroLog filtro, CursoreLog cursore, int dimensionePagina) throws DataAccessException {
+        if (dimensionePagina <= 0) {
+            throw new IllegalArgumentException("la dimensione della pagina deve essere maggiore di zero");
+        }
+        attendiLogInCoda();
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM LogOperazioni WHERE 1 = 1");
+        List<Object> parametri = new ArrayList<>();
+        if (filtro != null) {
+            if (filtro.getIDPaziente() != null) {
+                sql.append(" AND IDPazienteInteressato = ?");
+                parametri.add(filtro.getIDPaziente());
+            }
+            if (filtro.getIDMedico() != null) {
+                sql.append(" AND IDMedicoOperante = ?");
+                parametri.add(filtro.getIDMedico());
+            }
+            if (filtro.getTipoOperazione() != null) {
+                sql.append(" AND TipoOperazione = ?");
+                parametri.add(filtro.getTipoOperazione());
+            }
+            if (filtro.getDa() != null) {
+                sql.append(" AND Timestamp >= ?");
+                parametri.add(filtro.getDa());
+            }
+            if (filtro.getA() != null) {
+                sql.append(" AND Timestamp < ?");
+                parametri.add(filtro.getA());
+            }
+        }
+        if (cursore != null) {
+            sql.append(" AND (Timestamp, IDLog) < (?, ?)");
+            parametri.add(cursore.getTimestamp());
+            parametri.add(cursore.getIDLog());
+        }
+        // un log in più per sapere se esiste una pagina successiva
+        sql.append(" ORDER BY Timestamp DESC, IDLog DESC LIMIT ?");
+        parametri.add(dimensionePagina + 1);
+
+        List<LogOperazione> logs = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < parametri.size(); i++) {
+                pstmt.setObject(i + 1, parametri.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    logs.add(mapResultSetToLog(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("errore durante la lettura di una pagina di log " + e.getMessage());
+            throw new DataAccessException("errore durante la lettura di una pagina di log di operazioni", e);
+        }
+
+        CursoreLog prossimo = null;
+        if (logs.size() > dimensionePagina) {
+            logs.remove(logs.size() - 1);
+            LogOperazione ultimo = logs.get(logs.size() - 1);
+            prossimo = new CursoreLog(ultimo.getTimestamp(), ultimo.getIDLog());
+        }
+        return new PaginaLog(logs, prossimo);
+    }
+
+    // come getalllog ma legge i log uno alla volta invece di caricarli tutti in memoria
+    // lo stream tiene occupata una connessione di lettura e va chiuso con try-with-resources
+    // @param dimensioneFetch righe richieste al driver per volta (0 per il default)
+    // @throws dataaccessexception se la query non può essere eseguita
+    // gli errori durante lo scorrimento arrivano come uncheckeddataaccessexception
+    public Stream<LogOperazione> streamAllLog(int dimensioneFetch) throws DataAccessException {
+        attendiLogInCoda();
+        return CursoreRisultati.stream("SELECT * FROM LogOperazioni ORDER BY Timestamp DESC", pstmt -> {}, this::mapResultSetToLog,
+                dimensioneFetch, "log di operazioni");
+    }
+
+    // passa alla callback ogni log dal più recente senza tenerli in memoria
+    // @return il numero di log letti
+    public int forEachLog(int dimensioneFetch, Consumer<LogOperazione> callback) throws DataAccessException {
+        attendiLogInCoda();
+        return CursoreRisultati.perOgniRiga("SELECT * FROM LogOperazioni ORDER BY Timestamp DESC", pstmt -> {}, this::mapResultSetToLog,
+                dimensioneFetch, "log di operazioni", callback);
+    }
 
     // metodo helper per mappare una riga di resultset a un oggetto logoperazione
     // @param rs il resultset posizionato sulla riga corretta
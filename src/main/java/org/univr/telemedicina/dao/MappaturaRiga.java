@@ -0,0 +1,10 @@
+package org.univr.telemedicina.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// converte la riga attuale di un resultset in un oggetto del modello (vedi cursorerisultati)
+@FunctionalInterface
+interface MappaturaRiga<T> {
+    T mappa(ResultSet rs) throws SQLException;
+}
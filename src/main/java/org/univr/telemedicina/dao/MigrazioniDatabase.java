@@ -0,0 +1,270 @@
+package org.univr.telemedicina.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// crea e aggiorna lo schema del database con migrazioni numerate
+// ogni migrazione viene applicata una sola volta in una transazione e registrata nella tabella schemaversioni
+// per modificare lo schema si aggiunge una nuova migrazione in fondo alla lista senza toccare quelle già rilasciate
+// viene eseguita da databasemanager prima di restituire la prima connessione
+class MigrazioniDatabase {
+
+    // una versione dello schema con le istruzioni sql che la producono
+    static class Migrazione {
+        private final int versione;
+        private final String descrizione;
+        private final List<String> istruzioni;
+
+        Migrazione(int versione, String descrizione, List<String> istruzioni) {
+            this.versione = versione;
+            this.descrizione = descrizione;
+            this.istruzioni = istruzioni;
+        }
+
+        int getVersione() {
+            return versione;
+        }
+
+        String getDescrizione() {
+            return descrizione;
+        }
+
+        List<String> getIstruzioni() {
+            return istruzioni;
+        }
+    }
+
+    // elenco ordinato delle migrazioni
+    // create if not exists permette di adottare anche un database creato a mano prima delle migrazioni
+    static final List<Migrazione> MIGRAZIONI = List.of(
+            new Migrazione(1, "schema iniziale", List.of(
+                    "CREATE TABLE IF NOT EXISTS Utenti (" +
+                            "IDUtente INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "Email TEXT NOT NULL, " +
+                            "HashedPassword TEXT NOT NULL, " +
+                            "Nome TEXT, " +
+                            "Cognome TEXT, " +
+                            "Ruolo TEXT NOT NULL, " +
+                            "DataNascita TEXT)",
+                    // nessuna foreign key: i dati vengono cancellati anche in ordine diverso da quello delle dipendenze
+                    "CREATE TABLE IF NOT EXISTS Pazienti (" +
+                            "IDPaziente INTEGER PRIMARY KEY, " +
+                            "IDMedicoRiferimento INTEGER NOT NULL)",
+                    "CREATE TABLE IF NOT EXISTS RilevazioniGlicemia (" +
+                            "IDRilevazione INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "IDPaziente INTEGER NOT NULL, " +
+                            "Valore INTEGER NOT NULL, " +
+                            "Timestamp TEXT NOT NULL, " +
+                            "Note TEXT)",
+                    "CREATE TABLE IF NOT EXISTS Terapie (" +
+                            "IDTerapia INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "IDPaziente INTEGER NOT NULL, " +
+                            "IDMedico INTEGER NOT NULL, " +
+                            "NomeFarmaco TEXT, " +
+                            "Quantita TEXT, " +
+                            "FrequenzaGiornaliera INTEGER NOT NULL, " +
+                            "Indicazioni TEXT, " +
+                            "DataInizio TEXT, " +
+                            "DataFine TEXT)",
+                    "CREATE TABLE IF NOT EXISTS AssunzioniFarmaci (" +
+                            "IDAssunzione INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "IDTerapia INTEGER NOT NULL, " +
+                            "IDPaziente INTEGER NOT NULL, " +
+                            "TimestampAssunzione TEXT NOT NULL, " +
+                            "QuantitaAssunta TEXT)",
+                    "CREATE TABLE IF NOT EXISTS CondizioniPaziente (" +
+                            "IDCondizione INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "IDPaziente INTEGER NOT NULL, " +
+                            "Tipo TEXT, " +
+                            "Descrizione TEXT, " +
+                            "Periodo TEXT, " +
+                            "DataRegistrazione TEXT)",
+                    "CREATE TABLE IF NOT EXISTS LogOperazioni (" +
+                            "IDLog INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "IDMedicoOperante INTEGER NOT NULL, " +
+                            "IDPazienteInteressato INTEGER NOT NULL, " +
+                            "TipoOperazione TEXT, " +
+                            "DescrizioneOperazione TEXT, " +
+                            "Timestamp TEXT NOT NULL)",
+                    "CREATE TABLE IF NOT EXISTS Notifiche (" +
+                            "IDNotifica INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "IDDestinatario INTEGER NOT NULL, " +
+                            "Priorita INTEGER NOT NULL, " +
+                            "Titolo TEXT, " +
+                            "Messaggio TEXT, " +
+                            "Tipo TEXT, " +
+                            "Letta INTEGER NOT NULL DEFAULT 0, " +
+                            "Timestamp TEXT NOT NULL)"
+            )),
+            // un indice per ogni where / order by dei dao così le letture sono range scan senza ordinamenti temporanei
+            // le colonne in più in fondo rendono gli indici coprenti per le query di conteggio e aggregazione
+            new Migrazione(2, "indici per le query dei dao", List.of(
+                    // utentedao.findbyemail
+                    "CREATE INDEX IF NOT EXISTS idx_utenti_email ON Utenti (Email)",
+                    // pazientidao.findpazientibymedid
+                    "CREATE INDEX IF NOT EXISTS idx_pazienti_medico ON Pazienti (IDMedicoRiferimento, IDPaziente)",
+                    // rilevazioneglicemiadao.getrilevazionibypaziente (where idpaziente order by timestamp desc)
+                    "CREATE INDEX IF NOT EXISTS idx_rilevazioni_paziente_timestamp ON RilevazioniGlicemia (IDPaziente, Timestamp, Valore)",
+                    // assunzionefarmacidao: assunzioni del giorno e conteggi per paziente
+                    "CREATE INDEX IF NOT EXISTS idx_assunzioni_paziente_timestamp ON AssunzioniFarmaci (IDPaziente, TimestampAssunzione, IDTerapia)",
+                    // notifichedao.legginotificheperid (where iddestinatario order by letta asc timestamp desc)
+                    "CREATE INDEX IF NOT EXISTS idx_notifiche_destinatario ON Notifiche (IDDestinatario, Letta ASC, Timestamp DESC)",
+                    // logoperazionidao: cronologia per paziente per medico e completa
+                    "CREATE INDEX IF NOT EXISTS idx_log_paziente_timestamp ON LogOperazioni (IDPazienteInteressato, Timestamp)",
+                    "CREATE INDEX IF NOT EXISTS idx_log_medico_timestamp ON LogOperazioni (IDMedicoOperante, Timestamp)",
+                    "CREATE INDEX IF NOT EXISTS idx_log_timestamp ON LogOperazioni (Timestamp)",
+                    // terapiadao: terapie del paziente somma delle frequenze e pazienti con terapie in corso
+                    "CREATE INDEX IF NOT EXISTS idx_terapie_paziente ON Terapie (IDPaziente, DataInizio, DataFine, FrequenzaGiornaliera)",
+                    "CREATE INDEX IF NOT EXISTS idx_terapie_periodo ON Terapie (DataInizio, DataFine, IDPaziente)",
+                    // condizionipazientedao.listbyidpatid
+                    "CREATE INDEX IF NOT EXISTS idx_condizioni_paziente ON CondizioniPaziente (IDPaziente)"
+            )),
+            // paginazione della cronologia per tipo di operazione (logoperazionidao.getpaginalog)
+            // gli indici per paziente medico e timestamp contengono già idlog (rowid) in coda quindi servono anche al cursore
+            new Migrazione(3, "indice dei log per tipo di operazione", List.of(
+                    "CREATE INDEX IF NOT EXISTS idx_log_tipo_timestamp ON LogOperazioni (TipoOperazione, Timestamp)"
+            )),
+            // riepilogo giornaliero delle rilevazioni per paziente aggiornato a ogni inserimento (vedi rilevazioneglicemiadao)
+            // fuoriintervallo usava le soglie fisse di allora (80-130 prima dei pasti 80-180 altrimenti), la migrazione 10 lo ricalcola con le regole
+            new Migrazione(4, "riepilogo giornaliero della glicemia", List.of(
+                    "CREATE TABLE IF NOT EXISTS RiepilogoGlicemiaGiornaliero (" +
+                            "IDPaziente INTEGER NOT NULL, " +
+                            "Giorno TEXT NOT NULL, " +
+                            "NumeroRilevazioni INTEGER NOT NULL, " +
+                            "Somma INTEGER NOT NULL, " +
+                            "Minimo INTEGER NOT NULL, " +
+                            "Massimo INTEGER NOT NULL, " +
+                            "FuoriIntervallo INTEGER NOT NULL, " +
+                            "PRIMARY KEY (IDPaziente, Giorno)) WITHOUT ROWID",
+                    // popola il riepilogo con le rilevazioni già presenti
+                    "INSERT OR REPLACE INTO RiepilogoGlicemiaGiornaliero " +
+                            "SELECT IDPaziente, substr(Timestamp, 1, 10), COUNT(*), SUM(Valore), MIN(Valore), MAX(Valore), " +
+                            "SUM(CASE WHEN Note IN ('Prima colazione', 'Prima pranzo', 'Prima cena') " +
+                            "THEN Valore < 80 OR Valore > 130 ELSE Valore < 80 OR Valore > 180 END) " +
+                            "FROM RilevazioniGlicemia GROUP BY IDPaziente, substr(Timestamp, 1, 10)"
+            )),
+            // assunzioni registrate per paziente giorno e terapia aggiornate a ogni inserimento (vedi assunzionefarmacidao)
+            // la chiave parte da (idpaziente, giorno) così i controlli di aderenza leggono una sola riga per terapia
+            new Migrazione(5, "conteggi giornalieri delle assunzioni", List.of(
+                    "CREATE TABLE IF NOT EXISTS ConteggioAssunzioniGiornaliero (" +
+                            "IDPaziente INTEGER NOT NULL, " +
+                            "Giorno TEXT NOT NULL, " +
+                            "IDTerapia INTEGER NOT NULL, " +
+                            "Conteggio INTEGER NOT NULL, " +
+                            "PRIMARY KEY (IDPaziente, Giorno, IDTerapia)) WITHOUT ROWID",
+                    // popola i conteggi con le assunzioni già presenti
+                    "INSERT OR REPLACE INTO ConteggioAssunzioniGiornaliero " +
+                            "SELECT IDPaziente, substr(TimestampAssunzione, 1, 10), IDTerapia, COUNT(*) " +
+                            "FROM AssunzioniFarmaci GROUP BY IDPaziente, substr(TimestampAssunzione, 1, 10), IDTerapia"
+            )),
+            // intervalli di glicemia per momento della giornata usati da monitorservice.checkglicemia (vedi motoreregoleglicemia)
+            // idpaziente null indica la regola predefinita, le righe con idpaziente personalizzano l'intervallo di un paziente
+            new Migrazione(6, "regole di allerta della glicemia", List.of(
+                    "CREATE TABLE IF NOT EXISTS RegoleGlicemia (" +
+                            "IDRegola INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "IDPaziente INTEGER, " +
+                            "Momento TEXT NOT NULL, " +
+                            "Minimo INTEGER NOT NULL, " +
+                            "Massimo INTEGER NOT NULL, " +
+                            "Priorita INTEGER NOT NULL DEFAULT 3)",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS idx_regole_paziente_momento ON RegoleGlicemia (COALESCE(IDPaziente, 0), Momento)",
+                    // soglie usate finora: prima dei pasti tra 80 e 130 mg/dl dopo i pasti tra 80 e 180 mg/dl (regolaglicemia.predefinita)
+                    "INSERT INTO RegoleGlicemia (IDPaziente, Momento, Minimo, Massimo, Priorita) VALUES " +
+                            "(NULL, 'PRIMA_COLAZIONE', 80, 130, 3), (NULL, 'PRIMA_PRANZO', 80, 130, 3), (NULL, 'PRIMA_CENA', 80, 130, 3), " +
+                            "(NULL, 'DOPO_COLAZIONE', 80, 180, 3), (NULL, 'DOPO_PRANZO', 80, 180, 3), (NULL, 'DOPO_CENA', 80, 180, 3), " +
+                            "(NULL, 'NON_SPECIFICATO', 80, 180, 3)"
+            )),
+            // promemoria idempotenti di monitorservice.checkfarmacidaily (vedi notifichedao.inseriscipromemoria)
+            // un solo promemoria per destinatario tipo giorno e livello, le ripetizioni aggiornano la stessa riga
+            // le notifiche normali hanno giorno null e restano fuori dall'indice
+            new Migrazione(7, "promemoria giornalieri senza duplicati", List.of(
+                    "ALTER TABLE Notifiche ADD COLUMN Giorno TEXT",
+                    "ALTER TABLE Notifiche ADD COLUMN Livello INTEGER",
+                    "ALTER TABLE Notifiche ADD COLUMN Ripetizioni INTEGER NOT NULL DEFAULT 1",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS idx_notifiche_promemoria ON Notifiche (IDDestinatario, Tipo, Giorno, Livello) WHERE Giorno IS NOT NULL"
+            )),
+            // notifichedao.legginotifichedopo (where iddestinatario and idnotifica > ?) legge solo la coda dell'indice
+            new Migrazione(8, "indice delle notifiche per id", List.of(
+                    "CREATE INDEX IF NOT EXISTS idx_notifiche_destinatario_id ON Notifiche (IDDestinatario, IDNotifica)"
+            )),
+            // campanello delle dashboard (notifichedao.getunreadsummary): conteggio e priorità massima leggono solo le non lette
+            // l'indice dell'elenco ha anche idnotifica come spareggio per la paginazione con cursore (notifichedao.getpaginanotifiche)
+            new Migrazione(9, "indici per il campanello e le pagine di notifiche", List.of(
+                    "CREATE INDEX IF NOT EXISTS idx_notifiche_non_lette ON Notifiche (IDDestinatario, Priorita) WHERE Letta = 0",
+                    "DROP INDEX IF EXISTS idx_notifiche_destinatario",
+                    "CREATE INDEX IF NOT EXISTS idx_notifiche_destinatario ON Notifiche (IDDestinatario, Letta ASC, Timestamp DESC, IDNotifica DESC)"
+            )),
+            // il riepilogo giornaliero conta le rilevazioni fuori intervallo con le regole della glicemia (anche quelle dei pazienti)
+            // come gli avvisi di motoreregoleglicemia: i giorni già presenti vengono ricalcolati con le regole attuali
+            new Migrazione(10, "riepilogo giornaliero con le regole della glicemia", List.of(
+                    "DELETE FROM RiepilogoGlicemiaGiornaliero",
+                    RilevazioneGlicemiaDAO.SQL_RICOSTRUISCI_RIEPILOGO
+            ))
+    );
+
+    // applica le migrazioni mancanti sulla connessione indicata (quella dello scrittore)
+    // @return il numero di migrazioni applicate
+    // @throws sqlexception se una migrazione fallisce (le migrazioni precedenti restano applicate)
+    static int applica(Connection conn) throws SQLException {
+        return applica(conn, MIGRAZIONI);
+    }
+
+    static int applica(Connection conn, List<Migrazione> migrazioni) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS SchemaVersioni (" +
+                    "Versione INTEGER PRIMARY KEY, " +
+                    "Descrizione TEXT NOT NULL, " +
+                    "DataApplicazione TEXT NOT NULL)");
+        }
+
+        int versioneAttuale = versioneAttuale(conn);
+        int applicate = 0;
+        for (Migrazione migrazione : migrazioni) {
+            if (migrazione.getVersione() <= versioneAttuale) {
+                continue;
+            }
+            applicaMigrazione(conn, migrazione);
+            applicate++;
+        }
+        return applicate;
+    }
+
+    // versione più alta registrata nella tabella schemaversioni (0 se il database è vuoto)
+    static int versioneAttuale(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(Versione), 0) FROM SchemaVersioni")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void applicaMigrazione(Connection conn, Migrazione migrazione) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                for (String istruzione : migrazione.getIstruzioni()) {
+                    stmt.execute(istruzione);
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO SchemaVersioni (Versione, Descrizione, DataApplicazione) VALUES (?, ?, ?)")) {
+                pstmt.setInt(1, migrazione.getVersione());
+                pstmt.setString(2, migrazione.getDescrizione());
+                pstmt.setObject(3, LocalDateTime.now());
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+            System.out.println("applicata migrazione del database v" + migrazione.getVersione() + " (" + migrazione.getDescrizione() + ")");
+        } catch (SQLException e) {
+            conn.rollback();
+            System.err.println("errore durante la migrazione del database v" + migrazione.getVersione() + " " + e.getMessage());
+            throw new SQLException("migrazione del database v" + migrazione.getVersione() + " fallita", e);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.univr.telemedicina.dao;
+
+// modalità di scrittura del log delle operazioni (vedi logoperazionidao)
+public enum ModalitaAudit {
+    // ogni log viene scritto prima di restituire il controllo al chiamante
+    SINCRONO,
+    // i log vengono accodati e scritti a gruppi in background
+    // alla chiusura i log ancora in coda vengono scartati
+    ASINCRONO,
+    // come asincrono ma alla chiusura (databasemanager.shutdown) i log in coda vengono scritti
+    ASINCRONO_FLUSH_CHIUSURA
+}
@@ -1,10 +1,15 @@
 package org.univr.telemedicina.dao;
 
 import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.CursoreNotifiche;
 import org.univr.telemedicina.model.Notifica;
+import org.univr.telemedicina.model.PaginaNotifiche;
+import org.univr.telemedicina.model.RiepilogoNonLette;
 
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 // classe per la gestione delle operazioni di accesso al database relative alle notifiche
@@ -16,23 +21,122 @@ public class NotificheDAO {
     public void inserisciNotifica(Notifica notifica) throws DataAccessException {
         String sql = "INSERT INTO Notifiche (IDDestinatario, Priorita, Titolo, Messaggio, Tipo, Letta, Timestamp) VALUES (?, ?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, notifica.getIdDestinatario());
-            pstmt.setInt(2, notifica.getPriorita());
-            pstmt.setString(3, notifica.getTitolo());
-            pstmt.setString(4, notifica.getMessaggio());
-            pstmt.setString(5, notifica.getTipo());
-            pstmt.setInt(6, notifica.getLetta());
-            pstmt.setObject(7, notifica.getTimestamp());
+        try {
+            DatabaseManager.eseguiInserimento(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, notifica.getIdDestinatario());
+                    pstmt.setInt(2, notifica.getPriorita());
+                    pstmt.setString(3, notifica.getTitolo());
+                    pstmt.setString(4, notifica.getMessaggio());
+                    pstmt.setString(5, notifica.getTipo());
+                    pstmt.setInt(6, notifica.getLetta());
+                    pstmt.setObject(7, notifica.getTimestamp());
 
-            pstmt.executeUpdate();
+                    pstmt.executeUpdate();
+                    return DatabaseManager.chiaveGenerata(pstmt);
+                }
+            });
         } catch (SQLException e) {
             throw new DataAccessException("errore durante l'inserimento della notifica " + e.getMessage(), e);
         }
     }
 
+    // inserisce un gruppo di notifiche in un'unica transazione
+    // usato dai controlli periodici che generano molte notifiche insieme
+    // a ogni notifica viene assegnato l'id generato dal db
+    // @param notifiche le notifiche da inserire
+    // @return gli id generati nello stesso ordine delle notifiche
+    public List<Integer> inserisciNotifiche(List<Notifica> notifiche) throws DataAccessException {
+        if (notifiche.isEmpty()) {
+            return List.of();
+        }
+        String sql = "INSERT INTO Notifiche (IDDestinatario, Priorita, Titolo, Messaggio, Tipo, Letta, Timestamp) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+        try {
+            long ultimoId = DatabaseManager.eseguiScrittura(conn -> {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (Notifica notifica : notifiche) {
+                        pstmt.setInt(1, notifica.getIdDestinatario());
+                        pstmt.setInt(2, notifica.getPriorita());
+                        pstmt.setString(3, notifica.getTitolo());
+                        pstmt.setString(4, notifica.getMessaggio());
+                        pstmt.setString(5, notifica.getTipo());
+                        pstmt.setInt(6, notifica.getLetta());
+                        pstmt.setObject(7, notifica.getTimestamp());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                // le righe sono inserite di seguito dall'unico thread scrittore nella stessa transazione
+                // quindi gli id sono consecutivi e terminano con l'ultimo rowid inserito
+                long ultimoRowid;
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                    ultimoRowid = rs.next() ? rs.getLong(1) : 0L;
+                }
+                conn.commit();
+                conn.setAutoCommit(true);
+                return ultimoRowid;
+            });
+            int primoId = (int) (ultimoId - notifiche.size() + 1);
+            List<Integer> ids = new ArrayList<>(notifiche.size());
+            for (int i = 0; i < notifiche.size(); i++) {
+                notifiche.get(i).setIdNotifica(primoId + i);
+                ids.add(primoId + i);
+            }
+            return ids;
+        } catch (SQLException e) {
+            throw new DataAccessException("errore durante l'inserimento di " + notifiche.size() + " notifiche " + e.getMessage(), e);
+        }
+    }
+
+    // inserisce un gruppo di promemoria giornalieri in un'unica transazione
+    // se il destinatario ha già un promemoria dello stesso tipo per lo stesso giorno e livello
+    // la riga esistente viene aggiornata (messaggio timestamp e numero di ripetizioni) invece di crearne una nuova
+    // lo stato di lettura non cambia: un nuovo avviso arriva solo quando sale il livello
+    // @param notifiche i promemoria da inserire
+    // @param giorno il giorno a cui si riferiscono i promemoria
+    // @param livello il livello di sollecito (ad esempio pomeriggio o sera)
+    // @return il numero di promemoria scritti tra nuovi e aggiornati
+    public int inserisciPromemoria(List<Notifica> notifiche, LocalDate giorno, int livello) throws DataAccessException {
+        if (notifiche.isEmpty()) {
+            return 0;
+        }
+        String sql = "INSERT INTO Notifiche (IDDestinatario, Priorita, Titolo, Messaggio, Tipo, Letta, Timestamp, Giorno, Livello) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                "ON CONFLICT (IDDestinatario, Tipo, Giorno, Livello) WHERE Giorno IS NOT NULL DO UPDATE SET " +
+                // un sollecito con un messaggio o un livello diverso torna non letto anche se il precedente era già stato letto
+                "Letta = CASE WHEN Messaggio IS NOT excluded.Messaggio OR Livello IS NOT excluded.Livello THEN 0 ELSE Letta END, " +
+                "Priorita = excluded.Priorita, Titolo = excluded.Titolo, Messaggio = excluded.Messaggio, " +
+                "Timestamp = excluded.Timestamp, Ripetizioni = Ripetizioni + 1";
+
+        try {
+            return DatabaseManager.eseguiScrittura(conn -> {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (Notifica notifica : notifiche) {
+                        pstmt.setInt(1, notifica.getIdDestinatario());
+                        pstmt.setInt(2, notifica.getPriorita());
+                        pstmt.setString(3, notifica.getTitolo());
+                        pstmt.setString(4, notifica.getMessaggio());
+                        pstmt.setString(5, notifica.getTipo());
+                        pstmt.setInt(6, notifica.getLetta());
+                        pstmt.setObject(7, notifica.getTimestamp());
+                        pstmt.setObject(8, giorno);
+                        pstmt.setInt(9, livello);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                conn.commit();
+                conn.setAutoCommit(true);
+                return notifiche.size();
+            });
+        } catch (SQLException e) {
+            throw new DataAccessException("errore durante l'inserimento di " + notifiche.size() + " promemoria " + e.getMessage(), e);
+        }
+    }
+
     // legge le notifiche per un determinato destinatario
     // le ordina per priorità e timestamp in ordine decrescente
     // @param iddestinatario l'id del destinatario per cui leggere le notifiche
@@ -48,7 +152,7 @@ public class NotificheDAO {
 
 
         // utilizza un preparedstatement per la sicurezza e la corretta gestione dei parametri
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             // imposta il valore del parametro (?) nella query
@@ -58,17 +162,7 @@ public class NotificheDAO {
             // esegui la query e ottieni i risultati
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    Notifica notifica = new Notifica(
-                            rs.getInt("IDNotifica"),
-                            rs.getInt("IDDestinatario"),
-                            rs.getInt("Priorita"),
-                            rs.getString("Titolo"),
-                            rs.getString("Messaggio"),
-                            rs.getString("Tipo"),
-                            rs.getInt("Letta"),
-                            rs.getObject("Timestamp", java.time.LocalDateTime.class)
-                    );
-                    notifiche.add(notifica);
+                    notifiche.add(leggiNotifica(rs));
                 }
             }
         } catch (SQLException e) {
@@ -78,16 +172,178 @@ public class NotificheDAO {
         return notifiche;
     }
 
+    // legge solo le notifiche arrivate dopo l'ultima già vista dal chiamante
+    // quando non c'è nulla di nuovo la query tocca soltanto la coda dell'indice (iddestinatario, idnotifica)
+    // @param iddestinatario l'id del destinatario
+    // @param ultimoidvisto l'id più alto già letto (0 per leggere tutto)
+    // @param limite numero massimo di notifiche lette, le successive arrivano alla lettura seguente
+    // @return le nuove notifiche in ordine di id
+    public List<Notifica> leggiNotificheDopo(int idDestinatario, int ultimoIdVisto, int limite) throws DataAccessException {
+        if (limite <= 0) {
+            throw new IllegalArgumentException("il limite deve essere maggiore di zero");
+        }
+        List<Notifica> notifiche = new ArrayList<>();
+        String sql = "SELECT * FROM Notifiche WHERE IDDestinatario = ? AND IDNotifica > ? ORDER BY IDNotifica LIMIT ?";
+
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idDestinatario);
+            pstmt.setInt(2, ultimoIdVisto);
+            pstmt.setInt(3, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    notifiche.add(leggiNotifica(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("errore durante il recupero delle nuove notifiche " + e.getMessage());
+            throw new DataAccessException("errore durante il recupero delle nuove notifiche per il destinatario con id " + idDestinatario, e);
+        }
+        return notifiche;
+    }
+
+    // numero di notifiche non lette e priorità più alta tra queste, con l'id più alto tra tutte le notifiche del destinatario
+    // il conteggio legge solo l'indice parziale delle non lette e l'id più alto solo l'ultima voce di (iddestinatario, idnotifica)
+    // @param iddestinatario l'id del destinatario
+    public RiepilogoNonLette getUnreadSummary(int idDestinatario) throws DataAccessException {
+        String sql = "SELECT COUNT(*), COALESCE(MAX(Priorita), 0), " +
+                "COALESCE((SELECT MAX(IDNotifica) FROM Notifiche WHERE IDDestinatario = ?), 0) " +
+                "FROM Notifiche WHERE IDDestinatario = ? AND Letta = 0";
+
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idDestinatario);
+            pstmt.setInt(2, idDestinatario);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return new RiepilogoNonLette(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+            }
+        } catch (SQLException e) {
+            System.err.println("errore durante il conteggio delle notifiche non lette " + e.getMessage());
+            throw new DataAccessException("errore durante il conteggio delle notifiche non lette del destinatario con id " + idDestinatario, e);
+        }
+    }
+
+    // legge una pagina delle notifiche di un destinatario: prima le non lette poi dalla più recente
+    // come per i log la paginazione usa il cursore dell'ultima notifica letta invece di offset
+    // @param iddestinatario l'id del destinatario
+    // @param cursore il cursore restituito dalla pagina precedente null per la prima pagina
+    // @param dimensionepagina numero massimo di notifiche nella pagina
+    // @return la pagina con il cursore per la pagina successiva
+    public PaginaNotifiche getPaginaNotifiche(int idDestinatario, CursoreNotifiche cursore, int dimensionePagina) throws DataAccessException {
+        if (dimensionePagina <= 0) {
+            throw new IllegalArgumentException("la dimensione della pagina deve essere maggiore di zero");
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM Notifiche WHERE IDDestinatario = ?");
+        List<Object> parametri = new ArrayList<>();
+        parametri.add(idDestinatario);
+        if (cursore != null) {
+            if (cursore.getLetta() == 0) {
+                // ancora tra le non lette: le non lette più vecchie del cursore e poi tutte le lette
+                sql.append(" AND (Letta = 1 OR (Letta = 0 AND (Timestamp, IDNotifica) < (?, ?)))");
+            } else {
+                sql.append(" AND Letta = 1 AND (Timestamp, IDNotifica) < (?, ?)");
+            }
+            parametri.add(cursore.getTimestamp());
+            parametri.add(cursore.getIDNotifica());
+        }
+        // una notifica in più per sapere se esiste una pagina successiva
+        sql.append(" ORDER BY Letta ASC, Timestamp DESC, IDNotifica DESC LIMIT ?");
+        parametri.add(dimensionePagina + 1);
+
+        List<Notifica> notifiche = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < parametri.size(); i++) {
+                pstmt.setObject(i + 1, parametri.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    notifiche.add(leggiNotifica(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("errore durante la lettura di una pagina di notifiche " + e.getMessage());
+            throw new DataAccessException("errore durante la lettura di una pagina di notifiche del destinatario con id " + idDestinatario, e);
+        }
+
+        CursoreNotifiche prossimo = null;
+        if (notifiche.size() > dimensionePagina) {
+            notifiche.remove(notifiche.size() - 1);
+            Notifica ultima = notifiche.get(notifiche.size() - 1);
+            prossimo = new CursoreNotifiche(ultima.getLetta(), ultima.getTimestamp(), ultima.getIdNotifica());
+        }
+        return new PaginaNotifiche(notifiche, prossimo);
+    }
+
+    // crea una notifica dalla riga corrente del resultset
+    private static Notifica leggiNotifica(ResultSet rs) throws SQLException {
+        return new Notifica(
+                rs.getInt("IDNotifica"),
+                rs.getInt("IDDestinatario"),
+                rs.getInt("Priorita"),
+                rs.getString("Titolo"),
+                rs.getString("Messaggio"),
+                rs.getString("Tipo"),
+                rs.getInt("Letta"),
+                rs.getObject("Timestamp", java.time.LocalDateTime.class)
+        );
+    }
+
+    // segna come lette con un solo aggiornamento le notifiche mostrate al destinatario
+    // le notifiche non ancora caricate o arrivate dopo restano non lette
+    // @param iddestinatario l'id del destinatario
+    // @param idnotifiche gli id delle notifiche mostrate
+    // @return il numero di notifiche segnate come lette
+    public int segnaLette(int idDestinatario, Collection<Integer> idNotifiche) throws DataAccessException {
+        if (idNotifiche.isEmpty()) {
+            return 0;
+        }
+        String sql = "UPDATE Notifiche SET Letta = 1 WHERE IDDestinatario = ? AND Letta = 0 AND IDNotifica IN (" + InsiemeId.SOTTOQUERY + ")";
+
+        try {
+            return DatabaseManager.eseguiScrittura(conn -> {
+                int aggiornate = 0;
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (String blocco : InsiemeId.blocchi(idNotifiche)) {
+                        pstmt.setInt(1, idDestinatario);
+                        pstmt.setString(2, blocco);
+                        aggiornate += pstmt.executeUpdate();
+                    }
+                }
+                return aggiornate;
+            });
+        } catch (SQLException e) {
+            throw new DataAccessException("errore durante l'aggiornamento della lettura delle notifiche " + e.getMessage(), e);
+        }
+    }
+
     // segna una notifica come letta
     // @param idnotifica l'id della notifica da segnare come letta
-    public void setNotificaLetta(int idNotifica) throws DataAccessException {
+    // @return l'id del destinatario della notifica (0 se la notifica non esiste)
+    public int setNotificaLetta(int idNotifica) throws DataAccessException {
+        String sqlDestinatario = "SELECT IDDestinatario FROM Notifiche WHERE IDNotifica = ?";
         String sql = "UPDATE Notifiche SET Letta = 1 WHERE IDNotifica = ?";
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, idNotifica);
-            pstmt.executeUpdate();
+        try {
+            return DatabaseManager.eseguiScrittura(conn -> {
+                int idDestinatario = 0;
+                try (PreparedStatement pstmt = conn.prepareStatement(sqlDestinatario)) {
+                    pstmt.setInt(1, idNotifica);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            idDestinatario = rs.getInt(1);
+                        }
+                    }
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, idNotifica);
+                    pstmt.executeUpdate();
+                }
+                return idDestinatario;
+            });
         } catch (SQLException e) {
             throw new DataAccessException("errore durante l'aggiornamento della lettura della notifica " + e.getMessage(), e);
         }
@@ -0,0 +1,12 @@
+package org.univr.telemedicina.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// operazione jdbc da eseguire su una connessione fornita da databasemanager
+// usata per le scritture che vengono eseguite dal thread scrittore (vedi databasemanager.eseguiscrittura)
+// la connessione non va chiusa dall'operazione
+@FunctionalInterface
+public interface OperazioneSql<T> {
+    T esegui(Connection conn) throws SQLException;
+}
@@ -1,7 +1,9 @@
 package org.univr.telemedicina.dao;
 
 import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.ContattoPaziente;
 import org.univr.telemedicina.model.Paziente;
+import org.univr.telemedicina.model.PazienteSummary;
 import org.univr.telemedicina.model.Utente;
 
 import java.sql.Connection;
@@ -10,7 +12,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 // classe dao per trovare tutti i pazienti associati ad un medico e creare l'associazione utente-paziente
@@ -24,12 +29,14 @@ public class PazientiDAO {
     public void create(Paziente paziente) throws DataAccessException {
         String sql = "INSERT INTO Pazienti(IDPaziente, IDMedicoRiferimento) VALUES (?, ?)";
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, paziente.getIDPaziente());
-            pstmt.setInt(2, paziente.getIDMedicoRiferimento());
-            pstmt.executeUpdate();
+        try {
+            DatabaseManager.eseguiScrittura(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, paziente.getIDPaziente());
+                    pstmt.setInt(2, paziente.getIDMedicoRiferimento());
+                    return pstmt.executeUpdate();
+                }
+            });
 
         } catch (SQLException e) {
             System.err.println("errore durante la creazione del paziente " + e.getMessage());
@@ -48,7 +55,7 @@ public class PazientiDAO {
                 "JOIN Pazienti p ON u.IDUtente = p.IDPaziente " +
                 "WHERE p.IDMedicoRiferimento = ?";
 
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             // imposta il parametro della query (?) per evitare sql injection
@@ -79,12 +86,80 @@ public class PazientiDAO {
         return pazienti;
     }
 
+    // come findpazientibymedid ma legge solo le colonne necessarie agli elenchi
+    // niente password email e ruolo così le righe sono più piccole e gli oggetti più leggeri
+    // @param idmedico l'id del medico di riferimento
+    // @return una lista di pazientesummary ordinata per cognome e nome
+    public List<PazienteSummary> findSummaryByMedId(int IDMedico) throws DataAccessException {
+        List<PazienteSummary> pazienti = new ArrayList<>();
+
+        String sql = "SELECT u.IDUtente, u.Nome, u.Cognome, u.DataNascita FROM Pazienti p " +
+                "JOIN Utenti u ON u.IDUtente = p.IDPaziente " +
+                "WHERE p.IDMedicoRiferimento = ? " +
+                "ORDER BY u.Cognome, u.Nome";
+
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, IDMedico);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    pazienti.add(new PazienteSummary(
+                            rs.getInt("IDUtente"),
+                            rs.getString("Nome"),
+                            rs.getString("Cognome"),
+                            rs.getObject("DataNascita", LocalDate.class)
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("errore durante la ricerca dei pazienti per idmedico " + e.getMessage());
+            throw new DataAccessException("errore durante la ricerca dei pazienti per il medico con id " + IDMedico, e);
+        }
+        return pazienti;
+    }
+
+    // restituisce l'utente completo di un paziente dato il suo id
+    // usato quando il medico seleziona un paziente dall'elenco
+    // @param idpaziente l'id del paziente
+    // @return l'utente del paziente o optional vuoto se non esiste
+    public Optional<Utente> findPazienteById(int IDPaziente) throws DataAccessException {
+        String sql = "SELECT u.* FROM Utenti u " +
+                "JOIN Pazienti p ON u.IDUtente = p.IDPaziente " +
+                "WHERE p.IDPaziente = ?";
+
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, IDPaziente);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(new Utente(
+                            rs.getInt("IDUtente"),
+                            rs.getString("Email"),
+                            rs.getString("HashedPassword"),
+                            rs.getString("Nome"),
+                            rs.getString("Cognome"),
+                            rs.getString("Ruolo"),
+                            rs.getObject("DataNascita", LocalDate.class)
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("errore durante la ricerca del paziente con id " + IDPaziente + " " + e.getMessage());
+            throw new DataAccessException("errore durante la ricerca del paziente con id " + IDPaziente, e);
+        }
+        return Optional.empty();
+    }
+
     // restituisce l'id del medico di riferimento per un paziente specifico
     // @param idpaziente l'id del paziente di cui si vuole conoscere il medico di riferimento
     // @return l'id del medico di riferimento per il paziente specificato
     public Optional<Integer> getMedicoRiferimentoByPazienteId(int IDPaziente) throws DataAccessException {
         String sql = "SELECT IDMedicoRiferimento FROM Pazienti WHERE IDPaziente = ?";
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, IDPaziente);
@@ -101,13 +176,47 @@ public class PazientiDAO {
     }
 
 
+    // restituisce medico di riferimento e nome di più pazienti con una sola query
+    // usato da monitorservice per risolvere i destinatari delle notifiche di un gruppo di rilevazioni
+    // @param idPazienti gli id dei pazienti
+    // @return una mappa da id paziente a contatto, i pazienti non trovati non compaiono
+    public Map<Integer, ContattoPaziente> findContattiByIds(Collection<Integer> idPazienti) throws DataAccessException {
+        Map<Integer, ContattoPaziente> contatti = new HashMap<>();
+        if (idPazienti.isEmpty()) {
+            return contatti;
+        }
+
+        String sql = "SELECT p.IDPaziente, p.IDMedicoRiferimento, u.Nome, u.Cognome FROM Pazienti p " +
+                "JOIN Utenti u ON u.IDUtente = p.IDPaziente " +
+                "WHERE p.IDPaziente IN (" + InsiemeId.SOTTOQUERY + ")";
+
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            for (String blocco : InsiemeId.blocchi(idPazienti)) {
+                pstmt.setString(1, blocco);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int idPaziente = rs.getInt("IDPaziente");
+                        contatti.put(idPaziente, new ContattoPaziente(idPaziente, rs.getInt("IDMedicoRiferimento"), rs.getString("Nome") + " " + rs.getString("Cognome")));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("errore durante la ricerca dei contatti di " + idPazienti.size() + " pazienti " + e.getMessage());
+            throw new DataAccessException("errore durante la ricerca dei contatti di " + idPazienti.size() + " pazienti", e);
+        }
+        return contatti;
+    }
+
     // restituisce una stringa con il nome del paziente dato il suo idpaziente
     // @param idpaziente l'id del paziente di cui si vuole ottenere il nome
     // @return una stringa contenente il nome e cognome del paziente o null se non trovato
     public String findNameById(int IDPaziente) throws DataAccessException {
         String sql = "SELECT Nome, Cognome FROM Utenti WHERE IDUtente = ?";
 
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, IDPaziente);
@@ -130,7 +239,7 @@ public class PazientiDAO {
     // @throws dataaccessexception se si verifica un errore durante l'accesso ai dati
     public int findMedByIDPaziente(int IDPaziente) throws DataAccessException, SQLException {
         String sql = "SELECT IDMedicoRiferimento FROM Pazienti WHERE IDPaziente = ?";
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, IDPaziente);
@@ -0,0 +1,110 @@
+package org.univr.telemedicina.dao;
+
+// fotografia delle metriche del pool di connessioni in un certo istante
+// viene restituita da databasemanager.getpoolmetrics() ed è immutabile
+public class PoolMetrics {
+    // numero massimo di connessioni che il pool può prestare contemporaneamente
+    private final int dimensioneMassima;
+    // connessioni attualmente in prestito
+    private final int attive;
+    // connessioni aperte e pronte nel pool
+    private final int libere;
+    // connessioni fisiche aperte in totale
+    private final int aperte;
+    // numero totale di connessioni prestate
+    private final long prestiti;
+    // numero di richieste scadute perché il pool era esaurito
+    private final long timeout;
+    // connessioni scartate perché non più valide al momento del prestito
+    private final long validazioniFallite;
+    // tempo totale e massimo di attesa per ottenere una connessione
+    private final long attesaTotaleNanos;
+    private final long attesaMassimaNanos;
+    // cache dei preparedstatement: statement riutilizzati, compilati e rimossi perché la cache era piena
+    private final long cacheHit;
+    private final long cacheMiss;
+    private final long cacheEspulsioni;
+
+    public PoolMetrics(int dimensioneMassima, int attive, int libere, int aperte, long prestiti, long timeout, long validazioniFallite, long attesaTotaleNanos, long attesaMassimaNanos, long cacheHit, long cacheMiss, long cacheEspulsioni) {
+        this.dimensioneMassima = dimensioneMassima;
+        this.attive = attive;
+        this.libere = libere;
+        this.aperte = aperte;
+        this.prestiti = prestiti;
+        this.timeout = timeout;
+        this.validazioniFallite = validazioniFallite;
+        this.attesaTotaleNanos = attesaTotaleNanos;
+        this.attesaMassimaNanos = attesaMassimaNanos;
+        this.cacheHit = cacheHit;
+        this.cacheMiss = cacheMiss;
+        this.cacheEspulsioni = cacheEspulsioni;
+    }
+
+    // metodi getter per i campi della classe
+    public int getDimensioneMassima() {
+        return dimensioneMassima;
+    }
+
+    public int getAttive() {
+        return attive;
+    }
+
+    public int getLibere() {
+        return libere;
+    }
+
+    public int getAperte() {
+        return aperte;
+    }
+
+    public long getPrestiti() {
+        return prestiti;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public long getValidazioniFallite() {
+        return validazioniFallite;
+    }
+
+    public long getAttesaTotaleNanos() {
+        return attesaTotaleNanos;
+    }
+
+    public long getAttesaMassimaNanos() {
+        return attesaMassimaNanos;
+    }
+
+    public long getCacheHit() {
+        return cacheHit;
+    }
+
+    public long getCacheMiss() {
+        return cacheMiss;
+    }
+
+    public long getCacheEspulsioni() {
+        return cacheEspulsioni;
+    }
+
+    // percentuale di preparestatement serviti dalla cache
+    public double getCacheHitRatio() {
+        long totale = cacheHit + cacheMiss;
+        return totale == 0 ? 0.0 : (double) cacheHit / totale;
+    }
+
+    // attesa media in millisecondi per ogni prestito
+    public double getAttesaMediaMillis() {
+        return prestiti == 0 ? 0.0 : (attesaTotaleNanos / 1_000_000.0) / prestiti;
+    }
+
+    @Override
+    public String toString() {
+        return "pool " + attive + "/" + dimensioneMassima + " attive, " + libere + " libere, " + prestiti + " prestiti, "
+                + timeout + " timeout, attesa media " + String.format("%.3f", getAttesaMediaMillis()) + " ms, attesa massima "
+                + String.format("%.3f", attesaMassimaNanos / 1_000_000.0) + " ms, cache statement "
+                + cacheHit + " hit / " + cacheMiss + " miss";
+    }
+}
@@ -0,0 +1,103 @@
+package org.univr.telemedicina.dao;
+
+import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.MomentoPasto;
+import org.univr.telemedicina.model.RegolaGlicemia;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// classe dao per le regole di allerta della glicemia
+// legge tutte le regole (predefinite e personalizzate) e imposta gli intervalli personalizzati di un paziente
+public class RegoleGlicemiaDAO {
+
+    // incrementata a ogni modifica delle regole: chi tiene le regole in cache (monitorservice) le rilegge quando cambia
+    // è condivisa da tutte le istanze del dao così una modifica fatta dalla dashboard del medico vale subito anche per lo scheduler
+    private static final AtomicLong VERSIONE = new AtomicLong();
+
+    // versione attuale delle regole nel processo
+    public static long getVersioneRegole() {
+        return VERSIONE.get();
+    }
+
+    // legge tutte le regole, prima quelle predefinite poi quelle dei pazienti
+    // @return la lista delle regole
+    public List<RegolaGlicemia> leggiRegole() throws DataAccessException {
+        List<RegolaGlicemia> regole = new ArrayList<>();
+
+        String sql = "SELECT IDPaziente, Momento, Minimo, Massimo, Priorita FROM RegoleGlicemia ORDER BY IDPaziente IS NOT NULL, IDPaziente";
+
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                int idPaziente = rs.getInt("IDPaziente");
+                Integer paziente = rs.wasNull() ? null : idPaziente;
+                regole.add(new RegolaGlicemia(paziente, MomentoPasto.valueOf(rs.getString("Momento")),
+                        rs.getInt("Minimo"), rs.getInt("Massimo"), rs.getInt("Priorita")));
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            System.err.println("errore durante la lettura delle regole della glicemia " + e.getMessage());
+            throw new DataAccessException("errore durante la lettura delle regole della glicemia", e);
+        }
+        return regole;
+    }
+
+    // imposta l'intervallo personalizzato di un paziente per un momento della giornata sostituendo quello precedente
+    // @param regola la regola con idpaziente valorizzato
+    public void impostaRegolaPaziente(RegolaGlicemia regola) throws DataAccessException {
+        if (regola.getIDPaziente() == null) {
+            throw new IllegalArgumentException("la regola deve indicare il paziente");
+        }
+        String sqlElimina = "DELETE FROM RegoleGlicemia WHERE IDPaziente = ? AND Momento = ?";
+        String sqlInserisci = "INSERT INTO RegoleGlicemia (IDPaziente, Momento, Minimo, Massimo, Priorita) VALUES (?, ?, ?, ?, ?)";
+
+        try {
+            DatabaseManager.eseguiScrittura(conn -> {
+                conn.setAutoCommit(false);
+                try (PreparedStatement elimina = conn.prepareStatement(sqlElimina);
+                     PreparedStatement inserisci = conn.prepareStatement(sqlInserisci)) {
+                    elimina.setInt(1, regola.getIDPaziente());
+                    elimina.setString(2, regola.getMomento().name());
+                    elimina.executeUpdate();
+
+                    inserisci.setInt(1, regola.getIDPaziente());
+                    inserisci.setString(2, regola.getMomento().name());
+                    inserisci.setInt(3, regola.getMinimo());
+                    inserisci.setInt(4, regola.getMassimo());
+                    inserisci.setInt(5, regola.getPriorita());
+                    inserisci.executeUpdate();
+                }
+                conn.commit();
+                conn.setAutoCommit(true);
+                return 1;
+            });
+            VERSIONE.incrementAndGet();
+        } catch (SQLException e) {
+            System.err.println("errore durante il salvataggio della regola della glicemia " + e.getMessage());
+            throw new DataAccessException("errore durante il salvataggio della regola della glicemia per il paziente con id " + regola.getIDPaziente(), e);
+        }
+    }
+
+    // elimina gli intervalli personalizzati di un paziente che torna a usare le regole predefinite
+    // @param idPaziente l'id del paziente
+    public void rimuoviRegolePaziente(int idPaziente) throws DataAccessException {
+        String sql = "DELETE FROM RegoleGlicemia WHERE IDPaziente = ?";
+
+        try {
+            DatabaseManager.eseguiScrittura(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, idPaziente);
+                    return pstmt.executeUpdate();
+                }
+            });
+            VERSIONE.incrementAndGet();
+        } catch (SQLException e) {
+            System.err.println("errore durante l'eliminazione delle regole della glicemia " + e.getMessage());
+            throw new DataAccessException("errore durante l'eliminazione delle regole della glicemia per il paziente con id " + idPaziente, e);
+        }
+    }
+}
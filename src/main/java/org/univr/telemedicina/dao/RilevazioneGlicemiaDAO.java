@@ -1,52 +1,216 @@
 package org.univr.telemedicina.dao;
 
 import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.AggregatoGlicemia;
+import org.univr.telemedicina.model.MomentoPasto;
+import org.univr.telemedicina.model.RegolaGlicemia;
+import org.univr.telemedicina.model.RiepilogoGlicemiaGiornaliero;
 import org.univr.telemedicina.model.RilevazioneGlicemia;
+import org.univr.telemedicina.model.RisoluzioneGlicemia;
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class RilevazioneGlicemiaDAO {
+
+    // una rilevazione è fuori intervallo secondo la stessa regola di motoreregoleglicemia: quella personalizzata del paziente
+    // per il momento della rilevazione se esiste altrimenti quella predefinita (idpaziente null) della tabella regoleglicemia
+    // e senza righe nella tabella le soglie predefinite di regolaglicemia
+    // il riepilogo di un giorno usa le regole in vigore quando le rilevazioni sono state inserite (come gli avvisi al medico):
+    // cambiare una regola non ricalcola i giorni passati, ricostruisciriepilogogiornaliero li ricalcola con le regole attuali
+    // @param alias la tabella della query esterna con le colonne idpaziente valore e note
+    private static String condizioneFuoriIntervallo(String alias) {
+        StringBuilder momento = new StringBuilder("CASE ").append(alias).append(".Note");
+        StringBuilder notePrimaDelPasto = new StringBuilder();
+        for (MomentoPasto momentoPasto : MomentoPasto.values()) {
+            if (momentoPasto.getNote() == null) {
+                continue;
+            }
+            momento.append(" WHEN '").append(momentoPasto.getNote()).append("' THEN '").append(momentoPasto.name()).append("'");
+            if (momentoPasto.isPrimaDelPasto()) {
+                notePrimaDelPasto.append(notePrimaDelPasto.length() == 0 ? "" : ", ").append("'").append(momentoPasto.getNote()).append("'");
+            }
+        }
+        momento.append(" ELSE '").append(MomentoPasto.NON_SPECIFICATO.name()).append("' END");
+
+        String valore = alias + ".Valore";
+        return "COALESCE((SELECT " + valore + " < regola.Minimo OR " + valore + " > regola.Massimo FROM RegoleGlicemia regola " +
+                "WHERE COALESCE(regola.IDPaziente, 0) IN (" + alias + ".IDPaziente, 0) AND regola.Momento = " + momento + " " +
+                "ORDER BY COALESCE(regola.IDPaziente, 0) DESC LIMIT 1), " +
+                "CASE WHEN " + alias + ".Note IN (" + notePrimaDelPasto + ") " +
+                "THEN " + valore + " < " + RegolaGlicemia.MINIMO_PREDEFINITO + " OR " + valore + " > " + RegolaGlicemia.MASSIMO_PRIMA_PASTO_PREDEFINITO + " " +
+                "ELSE " + valore + " < " + RegolaGlicemia.MINIMO_PREDEFINITO + " OR " + valore + " > " + RegolaGlicemia.MASSIMO_DOPO_PASTO_PREDEFINITO + " END)";
+    }
+
+    // ricalcola il riepilogo di tutti i giorni dalle rilevazioni con le regole attuali
+    // usato da ricostruisciriepilogogiornaliero e dalla migrazione che riallinea i riepiloghi alle regole dei pazienti
+    static final String SQL_RICOSTRUISCI_RIEPILOGO = "INSERT INTO RiepilogoGlicemiaGiornaliero " +
+            "SELECT IDPaziente, substr(Timestamp, 1, 10), COUNT(*), SUM(Valore), MIN(Valore), MAX(Valore), SUM(" + condizioneFuoriIntervallo("RilevazioniGlicemia") + ") " +
+            "FROM RilevazioniGlicemia GROUP BY IDPaziente, substr(Timestamp, 1, 10)";
+
+    // aggiunge una rilevazione al riepilogo del suo giorno creando la riga se non esiste
+    private static final String SQL_AGGIORNA_RIEPILOGO = "INSERT INTO RiepilogoGlicemiaGiornaliero " +
+            "(IDPaziente, Giorno, NumeroRilevazioni, Somma, Minimo, Massimo, FuoriIntervallo) " +
+            "SELECT IDPaziente, Giorno, 1, Valore, Valore, Valore, " + condizioneFuoriIntervallo("nuova") + " " +
+            "FROM (SELECT ? AS IDPaziente, ? AS Giorno, ? AS Valore, ? AS Note) AS nuova WHERE true " +
+            "ON CONFLICT (IDPaziente, Giorno) DO UPDATE SET " +
+            "NumeroRilevazioni = NumeroRilevazioni + 1, " +
+            "Somma = Somma + excluded.Somma, " +
+            "Minimo = MIN(Minimo, excluded.Minimo), " +
+            "Massimo = MAX(Massimo, excluded.Massimo), " +
+            "FuoriIntervallo = FuoriIntervallo + excluded.FuoriIntervallo";
+
     // salva nel database una rilevazione di glicemia
+    // il riepilogo giornaliero viene aggiornato nella stessa transazione dell'inserimento
     public void create(RilevazioneGlicemia rilevazione) throws DataAccessException {
         String sql = "INSERT INTO RilevazioniGlicemia (IDPaziente, Valore, Timestamp, Note) VALUES (?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, rilevazione.getIdPaziente());
-            pstmt.setInt(2, rilevazione.getValore());
-            pstmt.setObject(3, rilevazione.getTimestamp());
-            pstmt.setString(4, rilevazione.getNote());
+        try {
+            DatabaseManager.eseguiInserimento(conn -> {
+                long chiave;
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, rilevazione.getIdPaziente());
+                    pstmt.setInt(2, rilevazione.getValore());
+                    pstmt.setObject(3, rilevazione.getTimestamp());
+                    pstmt.setString(4, rilevazione.getNote());
 
-            pstmt.executeUpdate();
+                    pstmt.executeUpdate();
+                    chiave = DatabaseManager.chiaveGenerata(pstmt);
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_AGGIORNA_RIEPILOGO)) {
+                    impostaRiepilogo(pstmt, rilevazione);
+                    pstmt.executeUpdate();
+                }
+                return chiave;
+            });
         } catch (SQLException e) {
             System.err.println("errore durante il salvataggio della rilevazione di glicemia " + e.getMessage());
             throw new DataAccessException("errore durante il salvataggio della rilevazione di glicemia per il paziente con id " + rilevazione.getIdPaziente(), e);
         }
     }
 
+    // salva in un'unica transazione un insieme di rilevazioni (anche di pazienti diversi) usando executebatch
+    // pensato per i sensori continui che inviano molte rilevazioni insieme
+    // se un inserimento fallisce non viene salvata nessuna rilevazione dell'insieme
+    // @param rilevazioni le rilevazioni da salvare
+    // @return il numero di rilevazioni salvate
+    public int createBatch(Collection<RilevazioneGlicemia> rilevazioni) throws DataAccessException {
+        if (rilevazioni == null || rilevazioni.isEmpty()) {
+            return 0;
+        }
+        String sql = "INSERT INTO RilevazioniGlicemia (IDPaziente, Valore, Timestamp, Note) VALUES (?, ?, ?, ?)";
+
+        try {
+            return DatabaseManager.eseguiScrittura(conn -> {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (RilevazioneGlicemia rilevazione : rilevazioni) {
+                        pstmt.setInt(1, rilevazione.getIdPaziente());
+                        pstmt.setInt(2, rilevazione.getValore());
+                        pstmt.setObject(3, rilevazione.getTimestamp());
+                        pstmt.setString(4, rilevazione.getNote());
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(SQL_AGGIORNA_RIEPILOGO)) {
+                    for (RilevazioneGlicemia rilevazione : rilevazioni) {
+                        impostaRiepilogo(pstmt, rilevazione);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                conn.commit();
+                conn.setAutoCommit(true);
+                return rilevazioni.size();
+            });
+        } catch (SQLException e) {
+            System.err.println("errore durante il salvataggio di un insieme di rilevazioni di glicemia " + e.getMessage());
+            throw new DataAccessException("errore durante il salvataggio di " + rilevazioni.size() + " rilevazioni di glicemia", e);
+        }
+    }
+
+    // ricostruisce da zero il riepilogo giornaliero a partire dalle rilevazioni (per il primo popolamento o dopo correzioni manuali)
+    // @return il numero di giorni nel riepilogo
+    public int ricostruisciRiepilogoGiornaliero() throws DataAccessException {
+        try {
+            return DatabaseManager.eseguiScrittura(conn -> {
+                conn.setAutoCommit(false);
+                int giorni;
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("DELETE FROM RiepilogoGlicemiaGiornaliero");
+                    giorni = stmt.executeUpdate(SQL_RICOSTRUISCI_RIEPILOGO);
+                }
+                conn.commit();
+                conn.setAutoCommit(true);
+                return giorni;
+            });
+        } catch (SQLException e) {
+            System.err.println("errore durante la ricostruzione del riepilogo giornaliero " + e.getMessage());
+            throw new DataAccessException("errore durante la ricostruzione del riepilogo giornaliero della glicemia", e);
+        }
+    }
+
+    // legge il riepilogo giornaliero di un paziente tra due giorni (inclusi) dal più vecchio
+    // una riga per giorno con almeno una rilevazione
+    public List<RiepilogoGlicemiaGiornaliero> getRiepilogoGiornaliero(int idPaziente, LocalDate da, LocalDate a) throws DataAccessException {
+        List<RiepilogoGlicemiaGiornaliero> riepiloghi = new ArrayList<>();
+        String sql = "SELECT * FROM RiepilogoGlicemiaGiornaliero WHERE IDPaziente = ? AND Giorno >= ? AND Giorno <= ? ORDER BY Giorno";
+
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, idPaziente);
+            pstmt.setString(2, da.toString());
+            pstmt.setString(3, a.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int numero = rs.getInt("NumeroRilevazioni");
+                    riepiloghi.add(new RiepilogoGlicemiaGiornaliero(
+                            rs.getInt("IDPaziente"),
+                            LocalDate.parse(rs.getString("Giorno")),
+                            numero,
+                            (double) rs.getLong("Somma") / numero,
+                            rs.getInt("Minimo"),
+                            rs.getInt("Massimo"),
+                            rs.getInt("FuoriIntervallo")
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("errore durante la lettura del riepilogo giornaliero " + e.getMessage());
+            throw new DataAccessException("errore durante la lettura del riepilogo giornaliero per il paziente con id " + idPaziente, e);
+        }
+        return riepiloghi;
+    }
+
+    // imposta i parametri di sql_aggiorna_riepilogo per una rilevazione
+    // il giorno è il prefisso del timestamp iso come nella ricostruzione
+    private static void impostaRiepilogo(PreparedStatement pstmt, RilevazioneGlicemia rilevazione) throws SQLException {
+        pstmt.setInt(1, rilevazione.getIdPaziente());
+        pstmt.setString(2, rilevazione.getTimestamp().toLocalDate().toString());
+        pstmt.setInt(3, rilevazione.getValore());
+        pstmt.setString(4, rilevazione.getNote());
+    }
+
     // trova tutte le rilevazioni di glicemia per un paziente specifico
     // fa in modo che le rilevazioni piu recenti siano prime nella lista
     public List<RilevazioneGlicemia> getRilevazioniByPaziente(int idPaziente) throws DataAccessException {
         List<RilevazioneGlicemia> rilevazioni = new ArrayList<>();
         String sql = "SELECT * FROM RilevazioniGlicemia WHERE IDPaziente = ? ORDER BY Timestamp DESC";
 
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, idPaziente);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    RilevazioneGlicemia rilevazione = new RilevazioneGlicemia(
-                            rs.getInt("IDRilevazione"),
-                            rs.getInt("IDPaziente"),
-                            rs.getInt("Valore"),
-                            rs.getObject("Timestamp", LocalDateTime.class),
-                            rs.getString("Note")
-                    );
-                    rilevazioni.add(rilevazione);
+                    rilevazioni.add(mapResultSetToRilevazione(rs));
                 }
             }
         } catch (SQLException e) {
@@ -55,4 +219,117 @@ public class RilevazioneGlicemiaDAO {
         }
         return rilevazioni;
     }
+
+    // trova le rilevazioni di un paziente in un intervallo di tempo [da, a) dalla più recente
+    // il filtro sul timestamp viene fatto da sqlite con l'indice (idpaziente, timestamp) invece che in java
+    // @param da inizio dell'intervallo incluso
+    // @param a fine dell'intervallo esclusa
+    public List<RilevazioneGlicemia> getRilevazioniByPazienteInIntervallo(int idPaziente, LocalDateTime da, LocalDateTime a) throws DataAccessException {
+        List<RilevazioneGlicemia> rilevazioni = new ArrayList<>();
+        String sql = "SELECT * FROM RilevazioniGlicemia WHERE IDPaziente = ? AND Timestamp >= ? AND Timestamp < ? ORDER BY Timestamp DESC";
+
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, idPaziente);
+            pstmt.setObject(2, da);
+            pstmt.setObject(3, a);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rilevazioni.add(mapResultSetToRilevazione(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("errore durante la ricerca delle rilevazioni di glicemia in un intervallo " + e.getMessage());
+            throw new DataAccessException("errore durante la ricerca delle rilevazioni di glicemia per il paziente con id " + idPaziente + " tra " + da + " e " + a, e);
+        }
+        return rilevazioni;
+    }
+
+    // raggruppa le rilevazioni di un paziente in [da, a) per ora o per giorno con minimo media e massimo
+    // il raggruppamento avviene in sqlite sull'indice coprente (idpaziente, timestamp, valore)
+    // così il grafico riceve al massimo un punto per intervallo indipendentemente dal numero di rilevazioni
+    // @return gli aggregati dal più vecchio al più recente (solo gli intervalli con almeno una rilevazione)
+    public List<AggregatoGlicemia> getAggregatiByPaziente(int idPaziente, LocalDateTime da, LocalDateTime a, RisoluzioneGlicemia risoluzione) throws DataAccessException {
+        List<AggregatoGlicemia> aggregati = new ArrayList<>();
+        // il timestamp è salvato come testo iso (2025-03-01T08:30...) quindi il prefisso identifica l'intervallo
+        int lunghezzaPrefisso = risoluzione == RisoluzioneGlicemia.ORA ? 13 : 10;
+        String sql = "SELECT substr(Timestamp, 1, " + lunghezzaPrefisso + ") AS Intervallo, COUNT(*) AS Numero, " +
+                "MIN(Valore) AS Minimo, AVG(Valore) AS Media, MAX(Valore) AS Massimo " +
+                "FROM RilevazioniGlicemia WHERE IDPaziente = ? AND Timestamp >= ? AND Timestamp < ? " +
+                "GROUP BY Intervallo ORDER BY Intervallo";
+
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, idPaziente);
+            pstmt.setObject(2, da);
+            pstmt.setObject(3, a);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String intervallo = rs.getString("Intervallo");
+                    LocalDateTime inizio = risoluzione == RisoluzioneGlicemia.ORA
+                            ? LocalDateTime.parse(intervallo + ":00")
+                            : LocalDate.parse(intervallo).atStartOfDay();
+                    aggregati.add(new AggregatoGlicemia(inizio, rs.getInt("Numero"), rs.getInt("Minimo"), rs.getDouble("Media"), rs.getInt("Massimo")));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("errore durante l'aggregazione delle rilevazioni di glicemia " + e.getMessage());
+            throw new DataAccessException("errore durante l'aggregazione delle rilevazioni di glicemia per il paziente con id " + idPaziente, e);
+        }
+        return aggregati;
+    }
+
+    // trova le ultime n rilevazioni di un paziente dalla più recente
+    public List<RilevazioneGlicemia> getUltimeRilevazioniByPaziente(int idPaziente, int limite) throws DataAccessException {
+        List<RilevazioneGlicemia> rilevazioni = new ArrayList<>();
+        String sql = "SELECT * FROM RilevazioniGlicemia WHERE IDPaziente = ? ORDER BY Timestamp DESC LIMIT ?";
+
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, idPaziente);
+            pstmt.setInt(2, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rilevazioni.add(mapResultSetToRilevazione(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("errore durante la ricerca delle ultime rilevazioni di glicemia " + e.getMessage());
+            throw new DataAccessException("errore durante la ricerca delle ultime rilevazioni di glicemia per il paziente con id " + idPaziente, e);
+        }
+        return rilevazioni;
+    }
+
+    // come getrilevazionibypaziente ma legge le rilevazioni una alla volta invece di caricarle tutte in memoria
+    // lo stream tiene occupata una connessione di lettura e va chiuso con try-with-resources
+    // @param dimensioneFetch righe richieste al driver per volta (0 per il default)
+    // @throws dataaccessexception se la query non può essere eseguita
+    // gli errori durante lo scorrimento arrivano come uncheckeddataaccessexception
+    public Stream<RilevazioneGlicemia> streamRilevazioniByPaziente(int idPaziente, int dimensioneFetch) throws DataAccessException {
+        String sql = "SELECT * FROM RilevazioniGlicemia WHERE IDPaziente = ? ORDER BY Timestamp DESC";
+        return CursoreRisultati.stream(sql, pstmt -> pstmt.setInt(1, idPaziente), RilevazioneGlicemiaDAO::mapResultSetToRilevazione,
+                dimensioneFetch, "rilevazioni di glicemia per il paziente con id " + idPaziente);
+    }
+
+    // passa alla callback ogni rilevazione del paziente dalla più recente senza tenerle in memoria
+    // @return il numero di rilevazioni lette
+    public int forEachRilevazioneByPaziente(int idPaziente, int dimensioneFetch, Consumer<RilevazioneGlicemia> callback) throws DataAccessException {
+        String sql = "SELECT * FROM RilevazioniGlicemia WHERE IDPaziente = ? ORDER BY Timestamp DESC";
+        return CursoreRisultati.perOgniRiga(sql, pstmt -> pstmt.setInt(1, idPaziente), RilevazioneGlicemiaDAO::mapResultSetToRilevazione,
+                dimensioneFetch, "rilevazioni di glicemia per il paziente con id " + idPaziente, callback);
+    }
+
+    // metodo helper per mappare una riga di resultset a un oggetto rilevazioneglicemia
+    private static RilevazioneGlicemia mapResultSetToRilevazione(ResultSet rs) throws SQLException {
+        return new RilevazioneGlicemia(
+                rs.getInt("IDRilevazione"),
+                rs.getInt("IDPaziente"),
+                rs.getInt("Valore"),
+                rs.getObject("Timestamp", LocalDateTime.class),
+                rs.getString("Note")
+        );
+    }
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package org.univr.telemedicina.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// esegue tutte le scritture sul database da un unico thread con un'unica connessione
+// sqlite ammette un solo scrittore alla volta: serializzando le scritture qui invece che nel driver
+// non si verificano più errori sqlite_busy tra gui e scheduler e le letture (wal) non vengono mai bloccate
+class ScrittoreDatabase {
+
+    // pool con una sola connessione usato per riutilizzare la connessione e la sua cache di statement
+    private final ConnectionPool connessione;
+    private final ThreadPoolExecutor executor;
+    private volatile Thread threadScrittore;
+
+    // connessione in uso dall'operazione corrente (letta solo dal thread scrittore)
+    private Connection connessioneCorrente;
+
+    ScrittoreDatabase(String url, List<String> setupConnessione, long timeoutMillis, int capacitaCacheStatement) {
+        this.connessione = new ConnectionPool(url, 1, timeoutMillis, setupConnessione, capacitaCacheStatement);
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "telemedicina-db-scrittore");
+            t.setDaemon(true);
+            threadScrittore = t;
+            return t;
+        });
+    }
+
+    // accoda l'operazione al thread scrittore e ne attende il risultato
+    // se viene chiamato dal thread scrittore stesso (operazioni annidate) l'operazione viene eseguita subito
+    // sulla stessa connessione così da far parte della stessa transazione
+    <T> T esegui(OperazioneSql<T> operazione) throws SQLException {
+        if (isThreadScrittore()) {
+            return eseguiSulThread(operazione);
+        }
+
+        Future<T> risultato;
+        try {
+            risultato = executor.submit(() -> eseguiSulThread(operazione));
+        } catch (RejectedExecutionException e) {
+            throw new SQLException("il thread scrittore del database è stato chiuso", e);
+        }
+
+        try {
+            return risultato.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("attesa della scrittura interrotta", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (causa instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (causa instanceof Error error) {
+                throw error;
+            }
+            throw new SQLException("errore durante la scrittura sul database", causa);
+        }
+    }
+
+    private <T> T eseguiSulThread(OperazioneSql<T> operazione) throws SQLException {
+        if (connessioneCorrente != null) {
+            return operazione.esegui(connessioneCorrente);
+        }
+        // alla chiusura il pool annulla la transazione rimasta aperta (ad esempio dopo un errore)
+        // e rimette la connessione in autocommit
+        try (Connection conn = connessione.borrow()) {
+            connessioneCorrente = conn;
+            return operazione.esegui(conn);
+        } finally {
+            connessioneCorrente = null;
+        }
+    }
+
+    // true se il thread corrente è il thread scrittore
+    boolean isThreadScrittore() {
+        return Thread.currentThread() == threadScrittore;
+    }
+
+    // numero di scritture in attesa del thread scrittore
+    int scrittureInCoda() {
+        return executor.getQueue().size();
+    }
+
+    PoolMetrics metrics() {
+        return connessione.metrics();
+    }
+
+    // attende le scritture già accodate e chiude la connessione
+    void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.err.println("il thread scrittore non ha terminato le scritture in coda entro 5 secondi");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+        connessione.close();
+    }
+}
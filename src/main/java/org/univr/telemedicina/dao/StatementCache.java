@@ -0,0 +1,208 @@
+package org.univr.telemedicina.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// cache lru dei preparedstatement di una singola connessione fisica
+// la chiave è il testo sql: la stessa query preparata due volte viene compilata da sqlite una sola volta
+// lo statement restituito è un proxy: close() non lo chiude davvero ma lo "ripulisce" e lo rimette in cache
+// non è thread-safe perché una connessione del pool è usata da un solo thread alla volta
+class StatementCache {
+
+    private final Connection fisica;
+    private final int capacita;
+    // contatori condivisi tra tutte le cache dello stesso pool
+    private final LongAdder hit;
+    private final LongAdder miss;
+    private final LongAdder espulsioni;
+
+    // linkedhashmap in ordine di accesso: il primo elemento è quello usato meno di recente
+    private final LinkedHashMap<String, StatementInCache> statements;
+
+    StatementCache(Connection fisica, int capacita, LongAdder hit, LongAdder miss, LongAdder espulsioni) {
+        this.fisica = fisica;
+        this.capacita = capacita;
+        this.hit = hit;
+        this.miss = miss;
+        this.espulsioni = espulsioni;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StatementInCache> eldest) {
+                if (size() > StatementCache.this.capacita) {
+                    espulsioni.increment();
+                    eldest.getValue().espelli();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // restituisce lo statement per il testo sql indicato preparandolo solo se non è già in cache
+    // @param connessioneProxy la connessione vista dal chiamante (restituita da getconnection() dello statement)
+    PreparedStatement prepara(String sql, Connection connessioneProxy) throws SQLException {
+        if (capacita <= 0) {
+            return fisica.prepareStatement(sql);
+        }
+
+        StatementInCache cached = statements.get(sql);
+        if (cached != null && cached.inUso) {
+            // la stessa query è già aperta (es chiamate annidate) quindi si usa uno statement normale non in cache
+            miss.increment();
+            return fisica.prepareStatement(sql);
+        }
+        if (cached == null) {
+            miss.increment();
+            cached = new StatementInCache(fisica.prepareStatement(sql));
+            statements.put(sql, cached);
+        } else {
+            hit.increment();
+        }
+        cached.inUso = true;
+        return cached.proxy(connessioneProxy);
+    }
+
+    // chiude tutti gli statement in cache (quando la connessione fisica viene chiusa)
+    void chiudiTutti() {
+        Iterator<StatementInCache> it = statements.values().iterator();
+        while (it.hasNext()) {
+            it.next().chiudiFisico();
+            it.remove();
+        }
+    }
+
+    // riporta in cache gli statement che il chiamante non ha chiuso prima di restituire la connessione
+    void ripristinaInUso() {
+        for (StatementInCache cached : List.copyOf(statements.values())) {
+            if (cached.inUso && cached.prestato != null) {
+                cached.prestato.chiuso = true;
+                cached.restituisci();
+            }
+        }
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    // statement fisico tenuto in cache con lo stato necessario a riutilizzarlo
+    private static class StatementInCache {
+        private final PreparedStatement fisico;
+        // resultset aperti con executequery da chiudere alla restituzione
+        private final List<ResultSet> resultSetAperti = new ArrayList<>(1);
+        private boolean inUso = false;
+        private boolean espulso = false;
+        // handler del proxy attualmente prestato
+        private StatementPrestato prestato;
+
+        StatementInCache(PreparedStatement fisico) {
+            this.fisico = fisico;
+        }
+
+        PreparedStatement proxy(Connection connessioneProxy) {
+            prestato = new StatementPrestato(this, connessioneProxy);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    prestato);
+        }
+
+        // rimette lo statement in uno stato pulito per il prossimo utilizzo
+        void restituisci() {
+            try {
+                for (ResultSet rs : resultSetAperti) {
+                    rs.close();
+                }
+                resultSetAperti.clear();
+                fisico.clearParameters();
+                fisico.clearBatch();
+            } catch (SQLException e) {
+                // uno statement che non si riesce a ripulire non va riutilizzato
+                espulso = true;
+            } finally {
+                inUso = false;
+                prestato = null;
+            }
+            if (espulso) {
+                chiudiFisico();
+            }
+        }
+
+        // lo statement esce dalla cache: se qualcuno lo sta usando verrà chiuso alla restituzione
+        void espelli() {
+            espulso = true;
+            if (!inUso) {
+                chiudiFisico();
+            }
+        }
+
+        void chiudiFisico() {
+            try {
+                fisico.close();
+            } catch (SQLException e) {
+                System.err.println("errore durante la chiusura di uno statement in cache " + e.getMessage());
+            }
+        }
+    }
+
+    // invocation handler dello statement prestato al chiamante
+    private static class StatementPrestato implements InvocationHandler {
+        private final StatementInCache cached;
+        private final Connection connessioneProxy;
+        private boolean chiuso = false;
+
+        StatementPrestato(StatementInCache cached, Connection connessioneProxy) {
+            this.cached = cached;
+            this.connessioneProxy = connessioneProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!chiuso) {
+                        chiuso = true;
+                        cached.restituisci();
+                    }
+                    return null;
+                case "isClosed":
+                    return chiuso;
+                case "getConnection":
+                    return connessioneProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "statement in cache " + cached.fisico;
+                default:
+                    break;
+            }
+
+            if (chiuso) {
+                throw new SQLException("lo statement è già stato chiuso");
+            }
+            try {
+                Object risultato = method.invoke(cached.fisico, args);
+                if (risultato instanceof ResultSet rs && method.getName().equals("executeQuery")) {
+                    cached.resultSetAperti.add(rs);
+                }
+                return risultato;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
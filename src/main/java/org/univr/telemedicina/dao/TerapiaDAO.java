@@ -23,7 +23,7 @@ public class TerapiaDAO {
         String sql = "SELECT * FROM Terapie WHERE IDPaziente = ?";
 
         // try-with-resources per garantire la chiusura automatica delle risorse (connection preparedstatement resultset)
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             // imposta il parametro della query (?) per evitare sql injection
@@ -70,7 +70,7 @@ public class TerapiaDAO {
         String sql = "SELECT DISTINCT IDPaziente FROM Terapie " +
                 "WHERE date('now') >= DataInizio AND (date('now') <= DataFine OR DataFine IS NULL)";
 
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -97,26 +97,22 @@ public class TerapiaDAO {
         //inizializziamo la mappa per memorizzare le frequenze totali
         Map<Integer, Integer> mapFrequenze = new HashMap<>();
 
-        // creiamo una stringa di placeholder (?,?,?) per la clausola in sarà tipo "531,532,533"
-        // serve perche non sappiamo quanti pazienti ci sono quindi non possiamo usare un preparedstatement con un numero fisso di parametri
-        String placeholders = String.join(",", Collections.nCopies(patientIds.size(), "?"));
-
+        // gli id sono passati come un unico array json (vedi insiemeid) quindi il testo della query non dipende
+        // da quanti pazienti ci sono e gli elenchi grandi vengono eseguiti a blocchi
         // la query usa sum e group by per fare il lavoro di aggregazione direttamente nel db
         String sql = "SELECT IDPaziente, SUM(FrequenzaGiornaliera) as FrequenzaTotale " +
-                "FROM Terapie WHERE IDPaziente IN (" + placeholders + ") GROUP BY IDPaziente";
+                "FROM Terapie WHERE IDPaziente IN (" + InsiemeId.SOTTOQUERY + ") GROUP BY IDPaziente";
 
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            // impostiamo i valori per ogni placeholder
-            int index = 1;
-            for (Integer id : patientIds) {
-                pstmt.setInt(index++, id);
-            }
+            for (String blocco : InsiemeId.blocchi(patientIds)) {
+                pstmt.setString(1, blocco);
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    mapFrequenze.put(rs.getInt("IDPaziente"), rs.getInt("FrequenzaTotale"));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        mapFrequenze.put(rs.getInt("IDPaziente"), rs.getInt("FrequenzaTotale"));
+                    }
                 }
             }
         } catch (SQLException e) {
@@ -133,20 +129,22 @@ public class TerapiaDAO {
     public void assignTherapy(Terapia terapia) throws DataAccessException {
         String sql = "INSERT INTO Terapie (IDPaziente, IDMedico, NomeFarmaco, Quantita, FrequenzaGiornaliera, Indicazioni, DataInizio, DataFine) VALUES(?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            //rimosso idterapia perché è auto-incrementato nel database
-            pstmt.setInt(1, terapia.getIDPaziente()); // reimpostato indexes
-            pstmt.setInt(2, terapia.getIDMedico());
-            pstmt.setString(3, terapia.getNomeFarmaco());
-            pstmt.setString(4, terapia.getQuantita());
-            pstmt.setInt(5, terapia.getFrequenzaGiornaliera());
-            pstmt.setString(6, terapia.getIndicazioni());
-            pstmt.setObject(7, terapia.getDataInizio());
-            pstmt.setObject(8, terapia.getDataFine());
-
-            pstmt.executeUpdate();
+        try {
+            DatabaseManager.eseguiScrittura(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    //rimosso idterapia perché è auto-incrementato nel database
+                    pstmt.setInt(1, terapia.getIDPaziente()); // reimpostato indexes
+                    pstmt.setInt(2, terapia.getIDMedico());
+                    pstmt.setString(3, terapia.getNomeFarmaco());
+                    pstmt.setString(4, terapia.getQuantita());
+                    pstmt.setInt(5, terapia.getFrequenzaGiornaliera());
+                    pstmt.setString(6, terapia.getIndicazioni());
+                    pstmt.setObject(7, terapia.getDataInizio());
+                    pstmt.setObject(8, terapia.getDataFine());
+
+                    return pstmt.executeUpdate();
+                }
+            });
 
         } catch (SQLException e) {
             System.err.println("errore durante l'assegnazione della terapia " + e.getMessage());
@@ -159,20 +157,22 @@ public class TerapiaDAO {
     public void updateTherapy(Terapia terapia) throws DataAccessException {
         String sql = "UPDATE Terapie SET IDPaziente = ?, IDMedico = ?, NomeFarmaco = ?, Quantita = ?, FrequenzaGiornaliera = ?, Indicazioni = ?, DataInizio = ?, DataFine = ? WHERE IDTerapia = ?";
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, terapia.getIDPaziente());
-            pstmt.setInt(2, terapia.getIDMedico());
-            pstmt.setString(3, terapia.getNomeFarmaco());
-            pstmt.setString(4, terapia.getQuantita());
-            pstmt.setInt(5, terapia.getFrequenzaGiornaliera());
-            pstmt.setString(6, terapia.getIndicazioni());
-            pstmt.setObject(7, terapia.getDataInizio());
-            pstmt.setObject(8, terapia.getDataFine());
-            pstmt.setInt(9, terapia.getIDTerapia());
-
-            int affectedRows = pstmt.executeUpdate();
+        try {
+            int affectedRows = DatabaseManager.eseguiScrittura(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, terapia.getIDPaziente());
+                    pstmt.setInt(2, terapia.getIDMedico());
+                    pstmt.setString(3, terapia.getNomeFarmaco());
+                    pstmt.setString(4, terapia.getQuantita());
+                    pstmt.setInt(5, terapia.getFrequenzaGiornaliera());
+                    pstmt.setString(6, terapia.getIndicazioni());
+                    pstmt.setObject(7, terapia.getDataInizio());
+                    pstmt.setObject(8, terapia.getDataFine());
+                    pstmt.setInt(9, terapia.getIDTerapia());
+
+                    return pstmt.executeUpdate();
+                }
+            });
 
             //verifa che la terapia sia stata effettivamente aggiornata
             if(affectedRows == 0){
@@ -188,12 +188,13 @@ public class TerapiaDAO {
     public void delete(int idTerapia) throws DataAccessException {
         String sql = "DELETE FROM Terapie WHERE IDTerapia = ?";
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, idTerapia);
-
-            int affectedRows = pstmt.executeUpdate();
+        try {
+            int affectedRows = DatabaseManager.eseguiScrittura(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, idTerapia);
+                    return pstmt.executeUpdate();
+                }
+            });
 
             if (affectedRows == 0) {
                 throw new DataAccessException("eliminazione terapia fallita non è stata trovata nessuna terapia con id " + idTerapia, null);
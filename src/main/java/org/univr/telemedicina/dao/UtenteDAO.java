@@ -20,7 +20,7 @@ public class UtenteDAO {
         String sql = "SELECT * FROM Utenti WHERE Email = ?";
 
         // try-with-resources per garantire la chiusura automatica delle risorse (connection preparedstatement resultset)
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             // imposta il parametro della query (?) per evitare sql injection
@@ -59,26 +59,29 @@ public class UtenteDAO {
     public Utente create(Utente utente) throws DataAccessException {
         String sql = "INSERT INTO Utenti(Email, HashedPassword, Nome, Cognome, Ruolo, DataNascita) VALUES(?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, utente.getEmail());
-            pstmt.setString(2, utente.getHashedPassword());
-            pstmt.setString(3, utente.getNome());
-            pstmt.setString(4, utente.getCognome());
-            pstmt.setString(5, utente.getRuolo());
-            pstmt.setObject(6, utente.getDataNascita());
-
-            int affectedRows = pstmt.executeUpdate();
-
-            //controllo se ho scritto per ottenere l'idutente           === importante === sarebbe da mettere uuid
-            if(affectedRows > 0){
-                try(ResultSet generatedKeys = pstmt.getGeneratedKeys()){
-                    if(generatedKeys.next()){
-                        utente.setIDUtente(generatedKeys.getInt(1)); // imposta l'id generato nell'oggetto utente
+        try {
+            DatabaseManager.eseguiScrittura(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, utente.getEmail());
+                    pstmt.setString(2, utente.getHashedPassword());
+                    pstmt.setString(3, utente.getNome());
+                    pstmt.setString(4, utente.getCognome());
+                    pstmt.setString(5, utente.getRuolo());
+                    pstmt.setObject(6, utente.getDataNascita());
+
+                    int affectedRows = pstmt.executeUpdate();
+
+                    //controllo se ho scritto per ottenere l'idutente           === importante === sarebbe da mettere uuid
+                    if(affectedRows > 0){
+                        try(ResultSet generatedKeys = pstmt.getGeneratedKeys()){
+                            if(generatedKeys.next()){
+                                utente.setIDUtente(generatedKeys.getInt(1)); // imposta l'id generato nell'oggetto utente
+                            }
+                        }
                     }
+                    return affectedRows;
                 }
-            }
+            });
 
         } catch (SQLException e) {
             System.err.println("errore durante la creazione dell'utente " + e.getMessage());
@@ -96,7 +99,7 @@ public class UtenteDAO {
         // query per selezionare l'email dell'utente con un idutente specifico
         String sql = "SELECT Email FROM Utenti WHERE IDUtente = ?";
 
-        try (Connection conn = DatabaseManager.getConnection();
+        try (Connection conn = DatabaseManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, idUtente);
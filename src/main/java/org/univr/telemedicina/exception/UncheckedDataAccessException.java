@@ -0,0 +1,16 @@
+package org.univr.telemedicina.exception;
+
+// eccezione non controllata per errori di accesso ai dati durante lo scorrimento di uno stream
+// gli stream non possono lanciare eccezioni controllate quindi la dataaccessexception viene incapsulata
+public class UncheckedDataAccessException extends RuntimeException {
+    // costruttore che accetta l'eccezione originale
+    public UncheckedDataAccessException(DataAccessException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    // restituisce la dataaccessexception originale
+    @Override
+    public synchronized DataAccessException getCause() {
+        return (DataAccessException) super.getCause();
+    }
+}
@@ -2,6 +2,7 @@ package org.univr.telemedicina.gui;
 
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -27,20 +28,24 @@ import org.univr.telemedicina.exception.MedicoServiceException;
 import org.univr.telemedicina.exception.TherapyException;
 import org.univr.telemedicina.model.*;
 import org.univr.telemedicina.service.MedicoService;
+import org.univr.telemedicina.service.AscoltatoreNotifiche;
 import org.univr.telemedicina.service.NotificheService;
 import org.univr.telemedicina.service.TerapiaService;
 import javafx.scene.control.Tooltip;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.Period;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 public class DashboardMedicoController {
@@ -67,14 +72,24 @@ public class DashboardMedicoController {
     private final PazientiDAO pazientiDAO = new PazientiDAO();
     private final RilevazioneGlicemiaDAO rivelazioneGlicemiaDAO = new RilevazioneGlicemiaDAO();
     private final CondizioniPazienteDAO condizioniPazienteDAO = new CondizioniPazienteDAO();
-    private final LogOperazioniDAO logOperazioniDAO = new LogOperazioniDAO();
+    private final LogOperazioniDAO logOperazioniDAO = new LogOperazioniDAO(ModalitaAudit.ASINCRONO_FLUSH_CHIUSURA);
     private final TerapiaDAO terapiaDAO = new TerapiaDAO();
     private final AssunzioneFarmaciDAO assunzioneFarmaciDAO = new AssunzioneFarmaciDAO();
     private final MedicoService medicoService = new MedicoService(pazientiDAO, rivelazioneGlicemiaDAO, condizioniPazienteDAO, logOperazioniDAO, terapiaDAO, assunzioneFarmaciDAO);
     private final TerapiaService terapiaService = new TerapiaService(terapiaDAO, logOperazioniDAO);
     private final NotificheService notificheService = new NotificheService(new NotificheDAO());
     private ScheduledExecutorService notificationScheduler;
-    private List<Notifica> allNotifications;
+    // riceve le notifiche scritte da questo processo senza aspettare il controllo periodico
+    private final AscoltatoreNotifiche ascoltatoreNotifiche = idDestinatario -> requestNotificationRefresh();
+    private final AtomicBoolean notificationRefreshPending = new AtomicBoolean(false);
+    // l'elenco viene letto solo all'apertura del popup una pagina alla volta
+    private static final int NOTIFICATION_PAGE_SIZE = 20;
+    private CursoreNotifiche nextNotificationCursor;
+    // notifiche caricate nel popup aperto: alla chiusura vengono segnate come lette solo queste
+    private ObservableList<Notifica> shownNotifications;
+    // id più alto tra tutte le notifiche del destinatario all'apertura del popup e poi tra quelle aggiunte (0 con il popup chiuso)
+    // con il popup aperto si leggono solo le notifiche successive
+    private volatile int lastShownNotificationId;
 
 
     private Parent formTerapia;
@@ -83,6 +98,13 @@ public class DashboardMedicoController {
     private PazienteDashboard datiPazienteCorrente;
     private String tipoVista = "mensile"; // o "settimanale"
     private LocalDate dataCorrente = LocalDate.now();
+    // rilevazioni del paziente selezionato già caricate per il grafico e intervallo di date che coprono
+    // il grafico rilegge il database solo quando il periodo mostrato esce da questo intervallo
+    private List<RilevazioneGlicemia> rilevazioniCaricate = List.of();
+    // margine di precaricamento delle singole rilevazioni prima e dopo la settimana mostrata
+    private static final Period MARGINE_RILEVAZIONI = Period.ofWeeks(1);
+    private LocalDate inizioCaricato;
+    private LocalDate fineCaricato;
     private String formCorrente;
 
     // Dichiarazione delle label collegate tramite @FXML
@@ -139,8 +161,15 @@ public class DashboardMedicoController {
         emailLable.setText("");
         dateLable.setText("");
         ageLable.setText("");
-        topTexts(medicoLoggato);
-        init(medicoLoggato);
+        // l'elenco compatto dei pazienti viene letto una sola volta per contatori e menu
+        try {
+            List<PazienteSummary> listaPazienti = medicoService.getSummaryPazientiAssegnati(medicoLoggato.getIDUtente());
+            topTexts(listaPazienti);
+            init(listaPazienti);
+        } catch (MedicoServiceException e) {
+            System.err.println("Errore durante il recupero dei pazienti: " + e.getMessage());
+            pazienteMenuButton.setText("Errore nel caricamento dei pazienti");
+        }
         initializeNotifications();
 
         try {
@@ -197,39 +226,39 @@ public class DashboardMedicoController {
         handleCreaModificaTerapiaButton(null);
     }
 
-    private void topTexts(Utente medicoLoggato) {
+    private void topTexts(List<PazienteSummary> listaPazienti) {
         try {
-            List<Utente> pazientiTotaliCount = medicoService.getPazientiAssegnati(medicoLoggato.getIDUtente());
-            pazientiTotali.setText(String.valueOf(pazientiTotaliCount.size()));
+            pazientiTotali.setText(String.valueOf(listaPazienti.size()));
 
-            List<Utente> pazientiAttiviList = medicoService.getPazientiAttivi(medicoLoggato.getIDUtente());
+            List<PazienteSummary> pazientiAttiviList = medicoService.getSummaryPazientiAttivi(listaPazienti);
             pazientiAttivi.setText(String.valueOf(pazientiAttiviList.size()));
 
-            double aderenzaGlobale = medicoService.calcolaAderenzaGlobale(pazientiAttiviList);
+            double aderenzaGlobale = medicoService.calcolaAderenzaGlobalePerId(pazientiAttiviList.stream().map(PazienteSummary::getIDPaziente).toList());
             indiceAderenzaGlobale.setText(String.format("%.2f", aderenzaGlobale * 100) + "%");
         } catch (MedicoServiceException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private void init(Utente medicoLoggato) {
-        try {
-            List<Utente> listaPazienti = medicoService.getPazientiAssegnati(medicoLoggato.getIDUtente());
-            if (listaPazienti.isEmpty()) {
-                pazienteMenuButton.setText("Nessun paziente assegnato");
-            }
+    private void init(List<PazienteSummary> listaPazienti) {
+        if (listaPazienti.isEmpty()) {
+            pazienteMenuButton.setText("Nessun paziente assegnato");
+        }
 
-            for (Utente paziente : listaPazienti) {
-                MenuItem menuItem = new MenuItem(paziente.getNome() + " " + paziente.getCognome() + " (" + paziente.getEmail() + ")");
-                menuItem.setOnAction(event -> {
-                    pazienteSelezionato(paziente);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+        for (PazienteSummary paziente : listaPazienti) {
+            String nascita = paziente.getDataNascita() != null ? paziente.getDataNascita().format(formatter) : "";
+            MenuItem menuItem = new MenuItem(paziente.getNome() + " " + paziente.getCognome() + " (" + nascita + ")");
+            menuItem.setOnAction(event -> {
+                try {
+                    // l'utente completo viene caricato solo quando il paziente viene selezionato
+                    pazienteSelezionato(medicoService.getPaziente(paziente.getIDPaziente()));
                     pazienteMenuButton.setText(paziente.getNome() + " " + paziente.getCognome());
-                });
-                pazienteMenuButton.getItems().add(menuItem);
-            }
-        } catch (Exception e) {
-            System.err.println("Errore durante il recupero dei pazienti: " + e.getMessage());
-            pazienteMenuButton.setText("Errore nel caricamento dei pazienti");
+                } catch (MedicoServiceException e) {
+                    System.err.println("Errore durante il caricamento del paziente: " + e.getMessage());
+                }
+            });
+            pazienteMenuButton.getItems().add(menuItem);
         }
     }
 
@@ -246,7 +275,15 @@ public class DashboardMedicoController {
         terapiePrescritteContainer.getChildren().clear();
 
         try {
-            datiPazienteCorrente = medicoService.getDatiPazienteDasboard(paziente);
+            // carica le rilevazioni della settimana corrente più un margine per la navigazione
+            // la vista mensile usa gli aggregati giornalieri e non ha bisogno delle singole rilevazioni
+            LocalDate inizioSettimana = dataCorrente.minusDays(dataCorrente.getDayOfWeek().getValue() - 1);
+            LocalDate da = inizioSettimana.minus(MARGINE_RILEVAZIONI);
+            LocalDate a = inizioSettimana.plusDays(6).plus(MARGINE_RILEVAZIONI);
+            datiPazienteCorrente = medicoService.getDatiPazienteDasboard(paziente, da, a);
+            rilevazioniCaricate = datiPazienteCorrente.getElencoRilevazioni();
+            inizioCaricato = da;
+            fineCaricato = a;
 
             VBox condizioniBox = new VBox(5);
             condizioniBox.prefWidthProperty().bind(informazioniPazienteContainer.widthProperty());
@@ -305,19 +342,13 @@ public class DashboardMedicoController {
         glicemiaChart.getData().clear();
         if (pazienteSelezionato == null) return;
 
-        List<RilevazioneGlicemia> rilevazioni = datiPazienteCorrente.getElencoRilevazioni();
-
-        LocalDate inizioPeriodo;
-        LocalDate finePeriodo;
+        LocalDate inizioPeriodo = inizioPeriodo();
+        LocalDate finePeriodo = finePeriodo();
 
         if ("settimanale".equals(tipoVista)) {
-            inizioPeriodo = dataCorrente.minusDays(dataCorrente.getDayOfWeek().getValue() - 1);
-            finePeriodo = inizioPeriodo.plusDays(6);
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd");
             periodoLabel.setText(inizioPeriodo.format(formatter) + "-" + finePeriodo.format(formatter) + " " + dataCorrente.format(DateTimeFormatter.ofPattern("MMMM")));
         } else { // mensile
-            inizioPeriodo = dataCorrente.withDayOfMonth(1);
-            finePeriodo = dataCorrente.withDayOfMonth(dataCorrente.lengthOfMonth());
             periodoLabel.setText(dataCorrente.format(DateTimeFormatter.ofPattern("MMMM yyyy")));
         }
 
@@ -326,14 +357,27 @@ public class DashboardMedicoController {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM");
 
         List<XYChart.Data<String, Number>> dataPoints = new java.util.ArrayList<>();
-        for (RilevazioneGlicemia rilevazione : rilevazioni) {
-            LocalDate dataRilevazione = rilevazione.getTimestamp().toLocalDate();
-            if (!dataRilevazione.isBefore(inizioPeriodo) && !dataRilevazione.isAfter(finePeriodo)) {
-                dataPoints.add(new XYChart.Data<>(rilevazione.getTimestamp().format(formatter), rilevazione.getValore(), rilevazione));
+        if ("settimanale".equals(tipoVista)) {
+            // vista settimanale: le singole rilevazioni
+            List<RilevazioneGlicemia> rilevazioni = rilevazioniPerPeriodo(inizioPeriodo, finePeriodo);
+            for (RilevazioneGlicemia rilevazione : rilevazioni) {
+                LocalDate dataRilevazione = rilevazione.getTimestamp().toLocalDate();
+                if (!dataRilevazione.isBefore(inizioPeriodo) && !dataRilevazione.isAfter(finePeriodo)) {
+                    dataPoints.add(new XYChart.Data<>(rilevazione.getTimestamp().format(formatter), rilevazione.getValore(), rilevazione));
+                }
+            }
+            java.util.Collections.reverse(dataPoints);
+        } else {
+            // vista mensile: un punto per giorno con la media (al massimo 31 punti)
+            try {
+                for (AggregatoGlicemia aggregato : medicoService.getAggregatiGlicemia(pazienteSelezionato.getIDUtente(), inizioPeriodo, finePeriodo, RisoluzioneGlicemia.GIORNO)) {
+                    dataPoints.add(new XYChart.Data<>(aggregato.getInizio().format(formatter), Math.round(aggregato.getMedia()), aggregato));
+                }
+            } catch (MedicoServiceException e) {
+                System.err.println("Errore durante il caricamento delle rilevazioni: " + e.getMessage());
             }
         }
 
-        java.util.Collections.reverse(dataPoints);
         series.getData().addAll(dataPoints);
         glicemiaChart.getData().add(series);
 
@@ -349,15 +393,26 @@ public class DashboardMedicoController {
             data.getNode().setScaleY(1.2);
 
             data.getNode().setOnMouseEntered(event -> {
-                RilevazioneGlicemia rilevazione = (RilevazioneGlicemia) data.getExtraValue();
-                DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-
-                String tooltipText = String.format(
-                        "Valore: %d mg/dL\nOra: %s\n%s",
-                        rilevazione.getValore(),
-                        rilevazione.getTimestamp().format(timeFormatter),
-                        rilevazione.getNote() != null && !rilevazione.getNote().isEmpty() ? rilevazione.getNote() : "Nessuna nota"
-                );
+                String tooltipText;
+                if (data.getExtraValue() instanceof AggregatoGlicemia aggregato) {
+                    tooltipText = String.format(
+                            "Media: %.0f mg/dL\nMin: %d mg/dL - Max: %d mg/dL\n%d rilevazioni\nClicca per la settimana",
+                            aggregato.getMedia(),
+                            aggregato.getMinimo(),
+                            aggregato.getMassimo(),
+                            aggregato.getNumeroRilevazioni()
+                    );
+                } else {
+                    RilevazioneGlicemia rilevazione = (RilevazioneGlicemia) data.getExtraValue();
+                    DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
+
+                    tooltipText = String.format(
+                            "Valore: %d mg/dL\nOra: %s\n%s",
+                            rilevazione.getValore(),
+                            rilevazione.getTimestamp().format(timeFormatter),
+                            rilevazione.getNote() != null && !rilevazione.getNote().isEmpty() ? rilevazione.getNote() : "Nessuna nota"
+                    );
+                }
 
                 tooltip.setText(tooltipText);
                 tooltip.show(data.getNode().getScene().getWindow(), event.getScreenX() + 15, event.getScreenY() + 15);
@@ -367,6 +422,15 @@ public class DashboardMedicoController {
                 data.getNode().setScaleY(1.5);
             });
 
+            // clic su un giorno della vista mensile: passa alla settimana con le singole rilevazioni
+            if (data.getExtraValue() instanceof AggregatoGlicemia aggregato) {
+                data.getNode().setOnMouseClicked(event -> {
+                    tooltip.hide();
+                    dataCorrente = aggregato.getInizio().toLocalDate();
+                    setSettimanaleButton(null);
+                });
+            }
+
             data.getNode().setOnMouseExited(event -> {
                 tooltip.hide();
                 data.getNode().setStyle("-fx-background-color: #454545;");
@@ -376,6 +440,40 @@ public class DashboardMedicoController {
         }
     }
 
+    // primo e ultimo giorno della settimana o del mese mostrato nel grafico
+    private LocalDate inizioPeriodo() {
+        if ("settimanale".equals(tipoVista)) {
+            return dataCorrente.minusDays(dataCorrente.getDayOfWeek().getValue() - 1);
+        }
+        return dataCorrente.withDayOfMonth(1);
+    }
+
+    private LocalDate finePeriodo() {
+        if ("settimanale".equals(tipoVista)) {
+            return inizioPeriodo().plusDays(6);
+        }
+        return dataCorrente.withDayOfMonth(dataCorrente.lengthOfMonth());
+    }
+
+    // restituisce le rilevazioni già caricate se coprono il periodo
+    // altrimenti legge dal database il periodo con un margine prima e dopo così le frecce non rileggono a ogni click
+    private List<RilevazioneGlicemia> rilevazioniPerPeriodo(LocalDate inizioPeriodo, LocalDate finePeriodo) {
+        boolean coperto = inizioCaricato != null && !inizioPeriodo.isBefore(inizioCaricato) && !finePeriodo.isAfter(fineCaricato);
+        if (!coperto) {
+            LocalDate da = inizioPeriodo.minus(MARGINE_RILEVAZIONI);
+            LocalDate a = finePeriodo.plus(MARGINE_RILEVAZIONI);
+            try {
+                rilevazioniCaricate = medicoService.getRilevazioniPaziente(pazienteSelezionato.getIDUtente(), da, a);
+                inizioCaricato = da;
+                fineCaricato = a;
+            } catch (MedicoServiceException e) {
+                System.err.println("Errore durante il caricamento delle rilevazioni: " + e.getMessage());
+                return List.of();
+            }
+        }
+        return rilevazioniCaricate;
+    }
+
     @FXML
     private void handleSinistraButton(ActionEvent event) {
         if ("settimanale".equals(tipoVista)) {
@@ -725,13 +823,19 @@ public class DashboardMedicoController {
     }
 
     public void handleLogout(ActionEvent actionEvent) {
-        if (notificationScheduler != null && !notificationScheduler.isShutdown()) {
-            notificationScheduler.shutdownNow();
-        }
-
         if(!showConfirmationDialog("Sei sicuro di voler effettuare il logout?")) {
             return;
         }
+        // solo dopo la conferma: annullando il logout il campanello deve continuare ad aggiornarsi
+        stopNotifications();
+        // gli avvisi per i medici ancora in attesa di riepilogo vengono scritti prima di lasciare la dashboard
+        try {
+            notificheService.emettiTuttiIRiepiloghi();
+        } catch (DataAccessException e) {
+            System.err.println("errore durante la scrittura dei riepiloghi al logout " + e.getMessage());
+        }
+        // scrive i log rimasti in coda e ferma il thread del log di questa dashboard (rimuove anche l'azione di chiusura)
+        logOperazioniDAO.close();
 
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/org/univr/telemedicina/gui/fxml/login.fxml"));
@@ -751,7 +855,34 @@ public class DashboardMedicoController {
 
     private void initializeNotifications() {
         notificationScheduler = Executors.newSingleThreadScheduledExecutor();
-        notificationScheduler.scheduleAtFixedRate(this::checkNotifications, 0, 10, TimeUnit.SECONDS);
+        // il campanello si aggiorna quando una notifica viene scritta o letta in questo processo
+        // il controllo periodico lento resta per le notifiche scritte da altri processi (applicationscheduler)
+        notificheService.iscrivi(medicoLoggato.getIDUtente(), ascoltatoreNotifiche);
+        notificationScheduler.scheduleAtFixedRate(this::checkNotifications, 0, NotificheService.SECONDI_POLL_RISERVA, TimeUnit.SECONDS);
+    }
+
+    // più avvisi ravvicinati (ad esempio quando si segnano come lette tutte le notifiche) producono un solo aggiornamento
+    private void requestNotificationRefresh() {
+        if (notificationScheduler == null || notificationScheduler.isShutdown() || !notificationRefreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            notificationScheduler.execute(() -> {
+                notificationRefreshPending.set(false);
+                checkNotifications();
+            });
+        } catch (RejectedExecutionException e) {
+            notificationRefreshPending.set(false);
+        }
+    }
+
+    private void stopNotifications() {
+        if (medicoLoggato != null) {
+            notificheService.annullaIscrizione(medicoLoggato.getIDUtente(), ascoltatoreNotifiche);
+        }
+        if (notificationScheduler != null && !notificationScheduler.isShutdown()) {
+            notificationScheduler.shutdownNow();
+        }
     }
 
     private void checkNotifications() {
@@ -759,28 +890,27 @@ public class DashboardMedicoController {
             return;
         }
         try {
-            List<Notifica> newNotifications = notificheService.read(medicoLoggato.getIDUtente());
-            Platform.runLater(() -> updateNotificationBell(newNotifications));
+            // solo conteggio e priorità massima delle non lette, l'elenco si legge all'apertura del popup
+            RiepilogoNonLette summary = notificheService.getUnreadSummary(medicoLoggato.getIDUtente());
+            // con il popup aperto vengono lette solo le notifiche arrivate dopo l'ultima mostrata
+            int lastShownId = lastShownNotificationId;
+            List<Notifica> newNotifications = lastShownId > 0
+                    ? notificheService.readDopo(medicoLoggato.getIDUtente(), lastShownId, NOTIFICATION_PAGE_SIZE)
+                    : List.of();
+            //Mette l'esecuzione dell'update nella UI thread
+            Platform.runLater(() -> {
+                updateNotificationBell(summary);
+                addNewNotifications(newNotifications);
+            });
         } catch (DataAccessException e) {
             e.printStackTrace();
         }
     }
 
-    private void updateNotificationBell(List<Notifica> notifications) {
-        this.allNotifications = notifications;
+    private void updateNotificationBell(RiepilogoNonLette summary) {
         notificationButton.getStyleClass().removeAll("notification-yellow", "notification-orange", "notification-red");
 
-        if (notifications == null || notifications.isEmpty()) {
-            return;
-        }
-
-        int maxPriority = notifications.stream()
-                .filter(n -> n.getLetta() == 0) // Considera solo le non lette
-                .mapToInt(Notifica::getPriorita)
-                .max()
-                .orElse(0);
-
-        switch (maxPriority) {
+        switch (summary.getPrioritaMassima()) {
             case 1:
                 notificationButton.getStyleClass().add("notification-yellow");
                 break;
@@ -797,19 +927,34 @@ public class DashboardMedicoController {
 
     @FXML
     private void handleNotificationClick(ActionEvent event) {
-        if (allNotifications == null || allNotifications.isEmpty()) {
+        PaginaNotifiche firstPage;
+        int lastNotificationId;
+        try {
+            // l'id più alto tra tutte le notifiche (anche lette e non ancora caricate) viene letto prima della pagina:
+            // da lì parte la lettura incrementale del popup aperto
+            lastNotificationId = notificheService.getUnreadSummary(medicoLoggato.getIDUtente()).getUltimoIdNotifica();
+            firstPage = notificheService.readPagina(medicoLoggato.getIDUtente(), null, NOTIFICATION_PAGE_SIZE);
+        } catch (DataAccessException e) {
+            e.printStackTrace();
+            showAlert("Errore", "Impossibile caricare le notifiche.");
+            return;
+        }
+        if (firstPage.getNotifiche().isEmpty()) {
             showAlert("Notifiche", "Nessuna notifica presente.");
             return;
         }
 
-        Popup popup = createNotificationsPopup();
+        nextNotificationCursor = firstPage.getProssimoCursore();
+        Popup popup = createNotificationsPopup(firstPage);
+        // una notifica arrivata tra le due letture è già nella prima pagina
+        lastShownNotificationId = Math.max(lastNotificationId, firstPage.getNotifiche().stream().mapToInt(Notifica::getIdNotifica).max().orElse(0));
         Point2D buttonPos = notificationButton.localToScreen(0, notificationButton.getHeight());
+        // le notifiche mostrate vengono segnate come lette alla chiusura così le pagine successive restano coerenti con il cursore
+        popup.setOnHidden(e -> markNotificationsAsRead());
         popup.show(notificationButton.getScene().getWindow(), buttonPos.getX() - 330, buttonPos.getY());
-
-        markNotificationsAsRead(allNotifications);
     }
 
-    private Popup createNotificationsPopup() {
+    private Popup createNotificationsPopup(PaginaNotifiche firstPage) {
         Popup popup = new Popup();
         popup.setAutoHide(true);
 
@@ -823,9 +968,10 @@ public class DashboardMedicoController {
         Label headerLabel = new Label("Notifiche");
         headerLabel.getStyleClass().add("notification-header-label");
 
-        // 3. Crea la ListView per le notifiche
+        // 3. Crea la ListView con la prima pagina di notifiche
         ListView<Notifica> listView = new ListView<>();
-        listView.setItems(FXCollections.observableArrayList(allNotifications));
+        shownNotifications = FXCollections.observableArrayList(firstPage.getNotifiche());
+        listView.setItems(shownNotifications);
         listView.setCellFactory(param -> new DashboardMedicoController.NotificationListCell());
         listView.getStyleClass().add("notification-list-view");
 
@@ -835,12 +981,12 @@ public class DashboardMedicoController {
         // 4. Aggiungi i componenti al contenitore
         popupContent.getChildren().addAll(headerLabel, listView);
 
-        // Se non ci sono notifiche, mostra un messaggio
-        if (allNotifications == null || allNotifications.isEmpty()) {
-            popupContent.getChildren().remove(listView);
-            Label noNotificationsLabel = new Label("Nessuna notifica presente.");
-            noNotificationsLabel.setPadding(new Insets(20));
-            popupContent.getChildren().add(noNotificationsLabel);
+        // 5. Le pagine successive vengono lette solo su richiesta
+        if (firstPage.haAltrePagine()) {
+            Button moreButton = new Button("Mostra altre");
+            moreButton.setMaxWidth(Double.MAX_VALUE);
+            moreButton.setOnAction(e -> loadNextNotificationPage(listView, popupContent, moreButton));
+            popupContent.getChildren().add(moreButton);
         }
 
         popup.getContent().add(popupContent);
@@ -848,22 +994,53 @@ public class DashboardMedicoController {
         return popup;
     }
 
-    private void markNotificationsAsRead(List<Notifica> notifications) {
-        List<Notifica> unread = notifications.stream()
-                .filter(n -> n.getLetta() == 0)
-                .collect(Collectors.toList());
-
-        if (!unread.isEmpty()) {
-            for (Notifica notifica : unread) {
-                try {
-                    notificheService.setNotificaLetta(notifica.getIdNotifica());
-                } catch (DataAccessException e) {
-                    e.printStackTrace();
-                    showAlert("Errore", "Impossibile segnare la notifica come letta: " + notifica.getTitolo());
+    // aggiunge in cima al popup aperto le notifiche nuove (in ordine di id crescente) non ancora mostrate
+    private void addNewNotifications(List<Notifica> newNotifications) {
+        if (lastShownNotificationId == 0 || shownNotifications == null) {
+            return;
+        }
+        List<Integer> alreadyShown = shownNotifications.stream().map(Notifica::getIdNotifica).toList();
+        for (Notifica notifica : newNotifications) {
+            if (notifica.getIdNotifica() > lastShownNotificationId) {
+                if (!alreadyShown.contains(notifica.getIdNotifica())) {
+                    shownNotifications.add(0, notifica);
                 }
+                lastShownNotificationId = notifica.getIdNotifica();
+            }
+        }
+    }
+
+    private void loadNextNotificationPage(ListView<Notifica> listView, VBox popupContent, Button moreButton) {
+        try {
+            PaginaNotifiche page = notificheService.readPagina(medicoLoggato.getIDUtente(), nextNotificationCursor, NOTIFICATION_PAGE_SIZE);
+            // una notifica già aggiunta in cima mentre il popup era aperto non viene ripetuta
+            List<Integer> alreadyShown = listView.getItems().stream().map(Notifica::getIdNotifica).toList();
+            listView.getItems().addAll(page.getNotifiche().stream()
+                    .filter(notifica -> !alreadyShown.contains(notifica.getIdNotifica()))
+                    .toList());
+            nextNotificationCursor = page.getProssimoCursore();
+            if (!page.haAltrePagine()) {
+                popupContent.getChildren().remove(moreButton);
             }
-            // Ricarica le notifiche per aggiornare lo stato visivo del campanello
-            checkNotifications();
+        } catch (DataAccessException e) {
+            e.printStackTrace();
+            showAlert("Errore", "Impossibile caricare altre notifiche.");
+        }
+    }
+
+    private void markNotificationsAsRead() {
+        lastShownNotificationId = 0;
+        try {
+            // un solo aggiornamento per le non lette mostrate nel popup: quelle non caricate o arrivate dopo restano non lette
+            // il campanello si aggiorna tramite l'ascoltatore
+            List<Integer> shownUnread = shownNotifications.stream()
+                    .filter(notifica -> notifica.getLetta() == 0)
+                    .map(Notifica::getIdNotifica)
+                    .toList();
+            notificheService.segnaLette(medicoLoggato.getIDUtente(), shownUnread);
+        } catch (DataAccessException e) {
+            e.printStackTrace();
+            showAlert("Errore", "Impossibile segnare le notifiche come lette.");
         }
     }
 
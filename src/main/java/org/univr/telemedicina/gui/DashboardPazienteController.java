@@ -30,6 +30,7 @@ import org.univr.telemedicina.exception.MedicoServiceException;
 import org.univr.telemedicina.exception.WrongAssumptionException;
 import org.univr.telemedicina.model.*;
 import org.univr.telemedicina.service.MonitorService;
+import org.univr.telemedicina.service.AscoltatoreNotifiche;
 import org.univr.telemedicina.service.NotificheService;
 
 import java.awt.*;
@@ -43,8 +44,10 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import org.univr.telemedicina.service.PazienteService;
@@ -55,9 +58,19 @@ public class DashboardPazienteController {
     private Utente pazienteLoggato;
     private final NotificheService notificheService = new NotificheService(new NotificheDAO());
     private final MonitorService monitorService = new MonitorService(new TerapiaDAO(), new AssunzioneFarmaciDAO(), notificheService, new PazientiDAO());
-    private final PazienteService pazienteService = new PazienteService(new RilevazioneGlicemiaDAO(), monitorService, new CondizioniPazienteDAO(), new UtenteDAO(), new PazientiDAO(), new AssunzioneFarmaciDAO(), new TerapiaDAO(), new NotificheService(new NotificheDAO()));
+    private final PazienteService pazienteService = new PazienteService(new RilevazioneGlicemiaDAO(), monitorService, new CondizioniPazienteDAO(), new UtenteDAO(), new PazientiDAO(), new AssunzioneFarmaciDAO(), new TerapiaDAO(), notificheService);
     private ScheduledExecutorService notificationScheduler;
-    private List<Notifica> allNotifications;
+    // riceve le notifiche scritte da questo processo senza aspettare il controllo periodico
+    private final AscoltatoreNotifiche ascoltatoreNotifiche = idDestinatario -> requestNotificationRefresh();
+    private final AtomicBoolean notificationRefreshPending = new AtomicBoolean(false);
+    // l'elenco viene letto solo all'apertura del popup una pagina alla volta
+    private static final int NOTIFICATION_PAGE_SIZE = 20;
+    private CursoreNotifiche nextNotificationCursor;
+    // notifiche caricate nel popup aperto: alla chiusura vengono segnate come lette solo queste
+    private ObservableList<Notifica> shownNotifications;
+    // id più alto tra tutte le notifiche del destinatario all'apertura del popup e poi tra quelle aggiunte (0 con il popup chiuso)
+    // con il popup aperto si leggono solo le notifiche successive
+    private volatile int lastShownNotificationId;
     private List<String> profiloInfo;
     private int currentProfiloIndex;
     private PazienteDashboard pazienteDashboard;
@@ -418,27 +431,46 @@ public class DashboardPazienteController {
 
     @FXML
     public void handleNotificationClick(ActionEvent actionEvent) {
-        if (allNotifications == null || allNotifications.isEmpty()) {
+        PaginaNotifiche firstPage;
+        int lastNotificationId;
+        try {
+            // l'id più alto tra tutte le notifiche (anche lette e non ancora caricate) viene letto prima della pagina:
+            // da lì parte la lettura incrementale del popup aperto
+            lastNotificationId = notificheService.getUnreadSummary(pazienteLoggato.getIDUtente()).getUltimoIdNotifica();
+            firstPage = notificheService.readPagina(pazienteLoggato.getIDUtente(), null, NOTIFICATION_PAGE_SIZE);
+        } catch (DataAccessException e) {
+            e.printStackTrace();
+            showAlert("Errore", "Impossibile caricare le notifiche.");
+            return;
+        }
+        if (firstPage.getNotifiche().isEmpty()) {
             showAlert("Notifiche", "Nessuna notifica presente.");
             return;
         }
 
-        Popup popup = createNotificationsPopup();
+        nextNotificationCursor = firstPage.getProssimoCursore();
+        Popup popup = createNotificationsPopup(firstPage);
+        // una notifica arrivata tra le due letture è già nella prima pagina
+        lastShownNotificationId = Math.max(lastNotificationId, firstPage.getNotifiche().stream().mapToInt(Notifica::getIdNotifica).max().orElse(0));
         Point2D buttonPos = notificationButton.localToScreen(0, notificationButton.getHeight());
+        // le notifiche mostrate vengono segnate come lette alla chiusura così le pagine successive restano coerenti con il cursore
+        popup.setOnHidden(e -> markNotificationsAsRead());
         popup.show(notificationButton.getScene().getWindow(), buttonPos.getX() - 330, buttonPos.getY());
-
-        markNotificationsAsRead(allNotifications);
     }
 
     @FXML
     public void handleLogout(ActionEvent actionEvent) {
-        if (notificationScheduler != null && !notificationScheduler.isShutdown()) {
-            notificationScheduler.shutdownNow();
-        }
-
         if(!showConfirmationDialog("Sei sicuro di voler effettuare il logout?")) {
             return;
         }
+        // solo dopo la conferma: annullando il logout il campanello deve continuare ad aggiornarsi
+        stopNotifications();
+        // gli avvisi per i medici ancora in attesa di riepilogo vengono scritti prima di lasciare la dashboard
+        try {
+            notificheService.emettiTuttiIRiepiloghi();
+        } catch (DataAccessException e) {
+            System.err.println("errore durante la scrittura dei riepiloghi al logout " + e.getMessage());
+        }
 
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/org/univr/telemedicina/gui/fxml/login.fxml"));
@@ -458,7 +490,34 @@ public class DashboardPazienteController {
 
     private void initializeNotifications() {
         notificationScheduler = Executors.newSingleThreadScheduledExecutor();
-        notificationScheduler.scheduleAtFixedRate(this::checkNotifications, 0, 10, TimeUnit.SECONDS);
+        // il campanello si aggiorna quando una notifica viene scritta o letta in questo processo
+        // il controllo periodico lento resta per le notifiche scritte da altri processi (applicationscheduler)
+        notificheService.iscrivi(pazienteLoggato.getIDUtente(), ascoltatoreNotifiche);
+        notificationScheduler.scheduleAtFixedRate(this::checkNotifications, 0, NotificheService.SECONDI_POLL_RISERVA, TimeUnit.SECONDS);
+    }
+
+    // più avvisi ravvicinati (ad esempio quando si segnano come lette tutte le notifiche) producono un solo aggiornamento
+    private void requestNotificationRefresh() {
+        if (notificationScheduler == null || notificationScheduler.isShutdown() || !notificationRefreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            notificationScheduler.execute(() -> {
+                notificationRefreshPending.set(false);
+                checkNotifications();
+            });
+        } catch (RejectedExecutionException e) {
+            notificationRefreshPending.set(false);
+        }
+    }
+
+    private void stopNotifications() {
+        if (pazienteLoggato != null) {
+            notificheService.annullaIscrizione(pazienteLoggato.getIDUtente(), ascoltatoreNotifiche);
+        }
+        if (notificationScheduler != null && !notificationScheduler.isShutdown()) {
+            notificationScheduler.shutdownNow();
+        }
     }
 
     private void checkNotifications() {
@@ -466,29 +525,27 @@ public class DashboardPazienteController {
             return;
         }
         try {
-            List<Notifica> newNotifications = notificheService.read(pazienteLoggato.getIDUtente());
+            // solo conteggio e priorità massima delle non lette, l'elenco si legge all'apertura del popup
+            RiepilogoNonLette summary = notificheService.getUnreadSummary(pazienteLoggato.getIDUtente());
+            // con il popup aperto vengono lette solo le notifiche arrivate dopo l'ultima mostrata
+            int lastShownId = lastShownNotificationId;
+            List<Notifica> newNotifications = lastShownId > 0
+                    ? notificheService.readDopo(pazienteLoggato.getIDUtente(), lastShownId, NOTIFICATION_PAGE_SIZE)
+                    : List.of();
             //Mette l'esecuzione dell'update nella UI thread
-            Platform.runLater(() -> updateNotificationBell(newNotifications));
+            Platform.runLater(() -> {
+                updateNotificationBell(summary);
+                addNewNotifications(newNotifications);
+            });
         } catch (DataAccessException e) {
             e.printStackTrace();
         }
     }
 
-    private void updateNotificationBell(List<Notifica> notifications) {
-        this.allNotifications = notifications;
+    private void updateNotificationBell(RiepilogoNonLette summary) {
         notificationButton.getStyleClass().removeAll("notification-yellow", "notification-orange", "notification-red");
 
-        if (notifications == null || notifications.isEmpty()) {
-            return;
-        }
-
-        int maxPriority = notifications.stream()
-                .filter(n -> n.getLetta() == 0) // Considera solo le non lette
-                .mapToInt(Notifica::getPriorita)
-                .max()
-                .orElse(0);
-
-        switch (maxPriority) {
+        switch (summary.getPrioritaMassima()) {
             case 1:
                 notificationButton.getStyleClass().add("notification-yellow");
                 break;
@@ -503,7 +560,7 @@ public class DashboardPazienteController {
         }
     }
 
-    private Popup createNotificationsPopup() {
+    private Popup createNotificationsPopup(PaginaNotifiche firstPage) {
         Popup popup = new Popup();
         popup.setAutoHide(true);
 
@@ -517,9 +574,10 @@ public class DashboardPazienteController {
         Label headerLabel = new Label("Notifiche");
         headerLabel.getStyleClass().add("notification-header-label");
 
-        // 3. Crea la ListView per le notifiche
+        // 3. Crea la ListView con la prima pagina di notifiche
         ListView<Notifica> listView = new ListView<>();
-        listView.setItems(FXCollections.observableArrayList(allNotifications));
+        shownNotifications = FXCollections.observableArrayList(firstPage.getNotifiche());
+        listView.setItems(shownNotifications);
         listView.setCellFactory(param -> new NotificationListCell());
         listView.getStyleClass().add("notification-list-view");
 
@@ -529,12 +587,12 @@ public class DashboardPazienteController {
         // 4. Aggiungi i componenti al contenitore
         popupContent.getChildren().addAll(headerLabel, listView);
 
-        // Se non ci sono notifiche, mostra un messaggio
-        if (allNotifications == null || allNotifications.isEmpty()) {
-            popupContent.getChildren().remove(listView);
-            Label noNotificationsLabel = new Label("Nessuna notifica presente.");
-            noNotificationsLabel.setPadding(new Insets(20));
-            popupContent.getChildren().add(noNotificationsLabel);
+        // 5. Le pagine successive vengono lette solo su richiesta
+        if (firstPage.haAltrePagine()) {
+            Button moreButton = new Button("Mostra altre");
+            moreButton.setMaxWidth(Double.MAX_VALUE);
+            moreButton.setOnAction(e -> loadNextNotificationPage(listView, popupContent, moreButton));
+            popupContent.getChildren().add(moreButton);
         }
 
         popup.getContent().add(popupContent);
@@ -542,22 +600,53 @@ public class DashboardPazienteController {
         return popup;
     }
 
-    private void markNotificationsAsRead(List<Notifica> notifications) {
-        List<Notifica> unread = notifications.stream()
-                .filter(n -> n.getLetta() == 0)
-                .collect(Collectors.toList());
-
-        if (!unread.isEmpty()) {
-            for (Notifica notifica : unread) {
-                try {
-                    notificheService.setNotificaLetta(notifica.getIdNotifica());
-                } catch (DataAccessException e) {
-                    e.printStackTrace();
-                    showAlert("Errore", "Impossibile segnare la notifica come letta: " + notifica.getTitolo());
+    // aggiunge in cima al popup aperto le notifiche nuove (in ordine di id crescente) non ancora mostrate
+    private void addNewNotifications(List<Notifica> newNotifications) {
+        if (lastShownNotificationId == 0 || shownNotifications == null) {
+            return;
+        }
+        List<Integer> alreadyShown = shownNotifications.stream().map(Notifica::getIdNotifica).toList();
+        for (Notifica notifica : newNotifications) {
+            if (notifica.getIdNotifica() > lastShownNotificationId) {
+                if (!alreadyShown.contains(notifica.getIdNotifica())) {
+                    shownNotifications.add(0, notifica);
                 }
+                lastShownNotificationId = notifica.getIdNotifica();
             }
-            // Ricarica le notifiche per aggiornare lo stato visivo del campanello
-            checkNotifications();
+        }
+    }
+
+    private void loadNextNotificationPage(ListView<Notifica> listView, VBox popupContent, Button moreButton) {
+        try {
+            PaginaNotifiche page = notificheService.readPagina(pazienteLoggato.getIDUtente(), nextNotificationCursor, NOTIFICATION_PAGE_SIZE);
+            // una notifica già aggiunta in cima mentre il popup era aperto non viene ripetuta
+            List<Integer> alreadyShown = listView.getItems().stream().map(Notifica::getIdNotifica).toList();
+            listView.getItems().addAll(page.getNotifiche().stream()
+                    .filter(notifica -> !alreadyShown.contains(notifica.getIdNotifica()))
+                    .toList());
+            nextNotificationCursor = page.getProssimoCursore();
+            if (!page.haAltrePagine()) {
+                popupContent.getChildren().remove(moreButton);
+            }
+        } catch (DataAccessException e) {
+            e.printStackTrace();
+            showAlert("Errore", "Impossibile caricare altre notifiche.");
+        }
+    }
+
+    private void markNotificationsAsRead() {
+        lastShownNotificationId = 0;
+        try {
+            // un solo aggiornamento per le non lette mostrate nel popup: quelle non caricate o arrivate dopo restano non lette
+            // il campanello si aggiorna tramite l'ascoltatore
+            List<Integer> shownUnread = shownNotifications.stream()
+                    .filter(notifica -> notifica.getLetta() == 0)
+                    .map(Notifica::getIdNotifica)
+                    .toList();
+            notificheService.segnaLette(pazienteLoggato.getIDUtente(), shownUnread);
+        } catch (DataAccessException e) {
+            e.printStackTrace();
+            showAlert("Errore", "Impossibile segnare le notifiche come lette.");
         }
     }
 
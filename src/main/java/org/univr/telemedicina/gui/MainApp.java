@@ -4,6 +4,10 @@ import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import org.univr.telemedicina.dao.DatabaseManager;
+import org.univr.telemedicina.dao.NotificheDAO;
+import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.service.NotificheService;
 
 import java.io.IOException;
 
@@ -26,6 +30,17 @@ public class MainApp extends Application {
         }
     }
 
+    // alla chiusura della finestra scrive i riepiloghi delle notifiche ancora in attesa e rilascia le connessioni del pool
+    @Override
+    public void stop() {
+        try {
+            new NotificheService(new NotificheDAO()).emettiTuttiIRiepiloghi();
+        } catch (DataAccessException e) {
+            System.err.println("errore durante la scrittura dei riepiloghi alla chiusura " + e.getMessage());
+        }
+        DatabaseManager.shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
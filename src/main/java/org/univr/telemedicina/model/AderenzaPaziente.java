@@ -0,0 +1,36 @@
+package org.univr.telemedicina.model;
+
+// dosi prescritte e assunte da un paziente dall'inizio delle sue terapie (vedi assunzionefarmacidao.getaderenzaperpazienti)
+public class AderenzaPaziente {
+    // identificativo del paziente
+    private final int IDPaziente;
+    // somma su tutte le terapie di frequenza giornaliera per giorni di terapia trascorsi
+    private final long dosiPrescritte;
+    // assunzioni registrate dal paziente
+    private final long dosiAssunte;
+
+    // costruttore per creare un oggetto con parametri
+    public AderenzaPaziente(int IDPaziente, long dosiPrescritte, long dosiAssunte) {
+        this.IDPaziente = IDPaziente;
+        this.dosiPrescritte = dosiPrescritte;
+        this.dosiAssunte = dosiAssunte;
+    }
+
+    // metodi getter per i campi della classe
+    public int getIDPaziente() {
+        return IDPaziente;
+    }
+
+    public long getDosiPrescritte() {
+        return dosiPrescritte;
+    }
+
+    public long getDosiAssunte() {
+        return dosiAssunte;
+    }
+
+    // rapporto tra dosi assunte e prescritte, 0 se non ci sono dosi prescritte
+    public double getAderenza() {
+        return dosiPrescritte > 0 ? (double) dosiAssunte / dosiPrescritte : 0.0;
+    }
+}
@@ -0,0 +1,46 @@
+package org.univr.telemedicina.model;
+
+import java.time.LocalDateTime;
+
+// valori minimo medio e massimo delle rilevazioni di glicemia in un intervallo (un'ora o un giorno)
+// usato dai grafici per mostrare un punto per intervallo invece di ogni singola rilevazione
+public class AggregatoGlicemia {
+    // inizio dell'intervallo
+    private final LocalDateTime inizio;
+    // numero di rilevazioni nell'intervallo
+    private final int numeroRilevazioni;
+    // valori in mg/dl
+    private final int minimo;
+    private final double media;
+    private final int massimo;
+
+    // costruttore per creare un oggetto con parametri
+    public AggregatoGlicemia(LocalDateTime inizio, int numeroRilevazioni, int minimo, double media, int massimo) {
+        this.inizio = inizio;
+        this.numeroRilevazioni = numeroRilevazioni;
+        this.minimo = minimo;
+        this.media = media;
+        this.massimo = massimo;
+    }
+
+    // metodi getter per i campi della classe
+    public LocalDateTime getInizio() {
+        return inizio;
+    }
+
+    public int getNumeroRilevazioni() {
+        return numeroRilevazioni;
+    }
+
+    public int getMinimo() {
+        return minimo;
+    }
+
+    public double getMedia() {
+        return media;
+    }
+
+    public int getMassimo() {
+        return massimo;
+    }
+}
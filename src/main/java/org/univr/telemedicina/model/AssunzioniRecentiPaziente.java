@@ -0,0 +1,46 @@
+package org.univr.telemedicina.model;
+
+// dati di un paziente per il controllo di aderenza degli ultimi giorni (vedi assunzionefarmacidao.getassunzionirecentiperpazienti)
+// contiene già medico di riferimento e nome così il controllo non deve interrogare il db per ogni paziente
+public class AssunzioniRecentiPaziente {
+    // identificativo del paziente
+    private final int IDPaziente;
+    // medico di riferimento, null se il paziente non è associato a un medico
+    private final Integer IDMedicoRiferimento;
+    // nome e cognome del paziente
+    private final String nomePaziente;
+    // somma delle frequenze giornaliere delle terapie considerate
+    private final int frequenzaGiornaliera;
+    // assunzioni registrate nel periodo controllato
+    private final int assunzioni;
+
+    // costruttore per creare un oggetto con parametri
+    public AssunzioniRecentiPaziente(int IDPaziente, Integer IDMedicoRiferimento, String nomePaziente, int frequenzaGiornaliera, int assunzioni) {
+        this.IDPaziente = IDPaziente;
+        this.IDMedicoRiferimento = IDMedicoRiferimento;
+        this.nomePaziente = nomePaziente;
+        this.frequenzaGiornaliera = frequenzaGiornaliera;
+        this.assunzioni = assunzioni;
+    }
+
+    // metodi getter per i campi della classe
+    public int getIDPaziente() {
+        return IDPaziente;
+    }
+
+    public Integer getIDMedicoRiferimento() {
+        return IDMedicoRiferimento;
+    }
+
+    public String getNomePaziente() {
+        return nomePaziente;
+    }
+
+    public int getFrequenzaGiornaliera() {
+        return frequenzaGiornaliera;
+    }
+
+    public int getAssunzioni() {
+        return assunzioni;
+    }
+}
@@ -0,0 +1,31 @@
+package org.univr.telemedicina.model;
+
+// medico di riferimento e nome di un paziente, quanto serve per notificare il medico
+public class ContattoPaziente {
+    // identificativo del paziente
+    private final int IDPaziente;
+    // medico che riceve le notifiche del paziente
+    private final int IDMedicoRiferimento;
+    // nome e cognome del paziente
+    private final String nome;
+
+    // costruttore per creare un oggetto con parametri
+    public ContattoPaziente(int IDPaziente, int IDMedicoRiferimento, String nome) {
+        this.IDPaziente = IDPaziente;
+        this.IDMedicoRiferimento = IDMedicoRiferimento;
+        this.nome = nome;
+    }
+
+    // metodi getter per i campi della classe
+    public int getIDPaziente() {
+        return IDPaziente;
+    }
+
+    public int getIDMedicoRiferimento() {
+        return IDMedicoRiferimento;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+}
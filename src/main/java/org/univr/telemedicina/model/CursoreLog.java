@@ -0,0 +1,26 @@
+package org.univr.telemedicina.model;
+
+import java.time.LocalDateTime;
+
+// posizione dell'ultimo log letto in una pagina della cronologia
+// la pagina successiva parte dal primo log più vecchio di questa posizione (ordinamento timestamp desc idlog desc)
+public class CursoreLog {
+    // timestamp e id dell'ultimo log della pagina precedente
+    private final LocalDateTime timestamp;
+    private final int IDLog;
+
+    // costruttore per creare un oggetto con parametri
+    public CursoreLog(LocalDateTime timestamp, int IDLog) {
+        this.timestamp = timestamp;
+        this.IDLog = IDLog;
+    }
+
+    // metodi getter per i campi della classe
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public int getIDLog() {
+        return IDLog;
+    }
+}
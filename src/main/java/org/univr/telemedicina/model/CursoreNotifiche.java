@@ -0,0 +1,32 @@
+package org.univr.telemedicina.model;
+
+import java.time.LocalDateTime;
+
+// posizione dell'ultima notifica letta in una pagina dell'elenco delle notifiche
+// la pagina successiva parte dalla notifica che segue questa posizione (ordinamento letta asc timestamp desc idnotifica desc)
+public class CursoreNotifiche {
+    // stato di lettura timestamp e id dell'ultima notifica della pagina precedente
+    private final int letta;
+    private final LocalDateTime timestamp;
+    private final int IDNotifica;
+
+    // costruttore per creare un oggetto con parametri
+    public CursoreNotifiche(int letta, LocalDateTime timestamp, int IDNotifica) {
+        this.letta = letta;
+        this.timestamp = timestamp;
+        this.IDNotifica = IDNotifica;
+    }
+
+    // metodi getter per i campi della classe
+    public int getLetta() {
+        return letta;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public int getIDNotifica() {
+        return IDNotifica;
+    }
+}
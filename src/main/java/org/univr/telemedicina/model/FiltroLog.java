@@ -0,0 +1,74 @@
+package org.univr.telemedicina.model;
+
+import java.time.LocalDateTime;
+
+// criteri per filtrare la cronologia dei log delle operazioni
+// i campi lasciati a null non vengono applicati
+public class FiltroLog {
+    // log delle operazioni su un paziente o di un medico
+    private Integer IDPaziente;
+    private Integer IDMedico;
+    // intervallo di date [da, a)
+    private LocalDateTime da;
+    private LocalDateTime a;
+    // tipo di operazione (es. "AGGIORNAMENTO_TERAPIA")
+    private String tipoOperazione;
+
+    // costruttore vuoto per un filtro senza criteri
+    public FiltroLog() {}
+
+    // filtro per la cronologia di un paziente
+    public static FiltroLog perPaziente(int IDPaziente) {
+        FiltroLog filtro = new FiltroLog();
+        filtro.setIDPaziente(IDPaziente);
+        return filtro;
+    }
+
+    // filtro per la cronologia di un medico
+    public static FiltroLog perMedico(int IDMedico) {
+        FiltroLog filtro = new FiltroLog();
+        filtro.setIDMedico(IDMedico);
+        return filtro;
+    }
+
+    // metodi getter e setter per i campi della classe
+    public Integer getIDPaziente() {
+        return IDPaziente;
+    }
+
+    public void setIDPaziente(Integer IDPaziente) {
+        this.IDPaziente = IDPaziente;
+    }
+
+    public Integer getIDMedico() {
+        return IDMedico;
+    }
+
+    public void setIDMedico(Integer IDMedico) {
+        this.IDMedico = IDMedico;
+    }
+
+    public LocalDateTime getDa() {
+        return da;
+    }
+
+    public void setDa(LocalDateTime da) {
+        this.da = da;
+    }
+
+    public LocalDateTime getA() {
+        return a;
+    }
+
+    public void setA(LocalDateTime a) {
+        this.a = a;
+    }
+
+    public String getTipoOperazione() {
+        return tipoOperazione;
+    }
+
+    public void setTipoOperazione(String tipoOperazione) {
+        this.tipoOperazione = tipoOperazione;
+    }
+}
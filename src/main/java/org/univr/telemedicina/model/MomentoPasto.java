@@ -0,0 +1,51 @@
+package org.univr.telemedicina.model;
+
+// momento della rilevazione rispetto ai pasti ricavato dalle note (scelte dal paziente nella dashboard)
+// il nome della costante è il codice salvato nella tabella regoleglicemia
+public enum MomentoPasto {
+    PRIMA_COLAZIONE(true, "Prima colazione"),
+    DOPO_COLAZIONE(false, "Dopo colazione"),
+    PRIMA_PRANZO(true, "Prima pranzo"),
+    DOPO_PRANZO(false, "Dopo pranzo"),
+    PRIMA_CENA(true, "Prima cena"),
+    DOPO_CENA(false, "Dopo cena"),
+    // note assenti o libere: si considera dopo i pasti
+    NON_SPECIFICATO(false, null);
+
+    // copia condivisa di values() per evitare un nuovo array a ogni ricerca
+    private static final MomentoPasto[] VALORI = values();
+
+    private final boolean primaDelPasto;
+    // testo delle note scelto dal paziente nella dashboard, null per non_specificato
+    private final String note;
+
+    MomentoPasto(boolean primaDelPasto, String note) {
+        this.primaDelPasto = primaDelPasto;
+        this.note = note;
+    }
+
+    public boolean isPrimaDelPasto() {
+        return primaDelPasto;
+    }
+
+    public static int numero() {
+        return VALORI.length;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    // converte le note della rilevazione nel momento corrispondente
+    public static MomentoPasto daNote(String note) {
+        if (note == null) {
+            return NON_SPECIFICATO;
+        }
+        for (MomentoPasto momento : VALORI) {
+            if (note.equals(momento.note)) {
+                return momento;
+            }
+        }
+        return NON_SPECIFICATO;
+    }
+}
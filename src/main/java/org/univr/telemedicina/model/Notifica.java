@@ -20,6 +20,10 @@ public class Notifica {
     private int Letta;
     // data e ora della notifica
     private LocalDateTime Timestamp;
+    // paziente a cui si riferisce un avviso per il medico
+    // non viene salvato nel db, serve a notificheservice per raggruppare gli avvisi nei riepiloghi
+    private Integer IdPaziente;
+    private String NomePaziente;
 
 
     // costruttore per inserire una nuova notifica
@@ -102,4 +106,15 @@ public class Notifica {
         this.Timestamp = timestamp;
     }
 
+    public Integer getIdPaziente() {
+        return IdPaziente;
+    }
+    public String getNomePaziente() {
+        return NomePaziente;
+    }
+    public void setPaziente(int idPaziente, String nomePaziente) {
+        this.IdPaziente = idPaziente;
+        this.NomePaziente = nomePaziente;
+    }
+
 }
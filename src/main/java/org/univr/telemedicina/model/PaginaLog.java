@@ -0,0 +1,31 @@
+package org.univr.telemedicina.model;
+
+import java.util.List;
+
+// una pagina della cronologia dei log delle operazioni dal più recente al più vecchio
+public class PaginaLog {
+    // log della pagina
+    private final List<LogOperazione> logs;
+    // cursore da passare per leggere la pagina successiva null se non ci sono altri log
+    private final CursoreLog prossimoCursore;
+
+    // costruttore per creare un oggetto con parametri
+    public PaginaLog(List<LogOperazione> logs, CursoreLog prossimoCursore) {
+        this.logs = logs;
+        this.prossimoCursore = prossimoCursore;
+    }
+
+    // metodi getter per i campi della classe
+    public List<LogOperazione> getLogs() {
+        return logs;
+    }
+
+    public CursoreLog getProssimoCursore() {
+        return prossimoCursore;
+    }
+
+    // true se esiste almeno un altro log dopo questa pagina
+    public boolean haAltrePagine() {
+        return prossimoCursore != null;
+    }
+}
@@ -0,0 +1,31 @@
+package org.univr.telemedicina.model;
+
+import java.util.List;
+
+// una pagina dell'elenco delle notifiche di un destinatario: prima le non lette poi dalla più recente
+public class PaginaNotifiche {
+    // notifiche della pagina
+    private final List<Notifica> notifiche;
+    // cursore da passare per leggere la pagina successiva null se non ci sono altre notifiche
+    private final CursoreNotifiche prossimoCursore;
+
+    // costruttore per creare un oggetto con parametri
+    public PaginaNotifiche(List<Notifica> notifiche, CursoreNotifiche prossimoCursore) {
+        this.notifiche = notifiche;
+        this.prossimoCursore = prossimoCursore;
+    }
+
+    // metodi getter per i campi della classe
+    public List<Notifica> getNotifiche() {
+        return notifiche;
+    }
+
+    public CursoreNotifiche getProssimoCursore() {
+        return prossimoCursore;
+    }
+
+    // true se esiste almeno un'altra notifica dopo questa pagina
+    public boolean haAltrePagine() {
+        return prossimoCursore != null;
+    }
+}
@@ -0,0 +1,40 @@
+package org.univr.telemedicina.model;
+
+import java.time.LocalDate;
+
+// dati essenziali di un paziente per gli elenchi (menu dei pazienti del medico e contatori)
+// a differenza di utente non contiene email password e ruolo
+public class PazienteSummary {
+    // identificativo del paziente (idutente)
+    private final int IDPaziente;
+    // nome e cognome
+    private final String nome;
+    private final String cognome;
+    // data di nascita
+    private final LocalDate dataNascita;
+
+    // costruttore per creare un oggetto con parametri
+    public PazienteSummary(int IDPaziente, String nome, String cognome, LocalDate dataNascita) {
+        this.IDPaziente = IDPaziente;
+        this.nome = nome;
+        this.cognome = cognome;
+        this.dataNascita = dataNascita;
+    }
+
+    // metodi getter per i campi della classe
+    public int getIDPaziente() {
+        return IDPaziente;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public String getCognome() {
+        return cognome;
+    }
+
+    public LocalDate getDataNascita() {
+        return dataNascita;
+    }
+}
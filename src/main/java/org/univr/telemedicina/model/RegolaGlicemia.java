@@ -0,0 +1,63 @@
+package org.univr.telemedicina.model;
+
+// intervallo di glicemia accettabile per un momento della giornata
+// se idpaziente è null la regola vale per tutti i pazienti senza un intervallo personalizzato
+public class RegolaGlicemia {
+    // soglie predefinite in mg/dl usate quando la tabella regoleglicemia non contiene una regola per un momento
+    // (motoreregoleglicemia e il riepilogo giornaliero di rilevazioneglicemiadao)
+    public static final int MINIMO_PREDEFINITO = 80;
+    public static final int MASSIMO_PRIMA_PASTO_PREDEFINITO = 130;
+    public static final int MASSIMO_DOPO_PASTO_PREDEFINITO = 180;
+    public static final int PRIORITA_PREDEFINITA = 3;
+
+    // paziente a cui si applica la regola, null per la regola predefinita
+    private final Integer IDPaziente;
+    // momento della rilevazione rispetto ai pasti
+    private final MomentoPasto momento;
+    // valori accettabili compresi gli estremi in mg/dl
+    private final int minimo;
+    private final int massimo;
+    // priorità della notifica inviata al medico quando il valore è fuori intervallo
+    private final int priorita;
+
+    // costruttore per creare un oggetto con parametri
+    public RegolaGlicemia(Integer IDPaziente, MomentoPasto momento, int minimo, int massimo, int priorita) {
+        this.IDPaziente = IDPaziente;
+        this.momento = momento;
+        this.minimo = minimo;
+        this.massimo = massimo;
+        this.priorita = priorita;
+    }
+
+    // regola predefinita per un momento con le soglie predefinite
+    public static RegolaGlicemia predefinita(MomentoPasto momento) {
+        int massimo = momento.isPrimaDelPasto() ? MASSIMO_PRIMA_PASTO_PREDEFINITO : MASSIMO_DOPO_PASTO_PREDEFINITO;
+        return new RegolaGlicemia(null, momento, MINIMO_PREDEFINITO, massimo, PRIORITA_PREDEFINITA);
+    }
+
+    // metodi getter per i campi della classe
+    public Integer getIDPaziente() {
+        return IDPaziente;
+    }
+
+    public MomentoPasto getMomento() {
+        return momento;
+    }
+
+    public int getMinimo() {
+        return minimo;
+    }
+
+    public int getMassimo() {
+        return massimo;
+    }
+
+    public int getPriorita() {
+        return priorita;
+    }
+
+    // true se il valore è fuori dall'intervallo della regola
+    public boolean isFuoriIntervallo(int valore) {
+        return valore < minimo || valore > massimo;
+    }
+}
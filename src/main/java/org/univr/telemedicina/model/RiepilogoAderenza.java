@@ -0,0 +1,32 @@
+package org.univr.telemedicina.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+// aderenza di un gruppo di pazienti: il dettaglio per paziente e l'indice globale
+// l'indice globale è la media delle aderenze dei pazienti che hanno almeno una terapia
+public class RiepilogoAderenza {
+    // aderenza per id paziente, contiene solo i pazienti con almeno una terapia
+    private final Map<Integer, AderenzaPaziente> perPaziente;
+
+    // costruttore per creare un oggetto con parametri
+    public RiepilogoAderenza(Map<Integer, AderenzaPaziente> perPaziente) {
+        this.perPaziente = Collections.unmodifiableMap(perPaziente);
+    }
+
+    // metodi getter per i campi della classe
+    public Map<Integer, AderenzaPaziente> getPerPaziente() {
+        return perPaziente;
+    }
+
+    // aderenza del paziente o 0 se il paziente non ha terapie
+    public double getAderenza(int idPaziente) {
+        AderenzaPaziente aderenza = perPaziente.get(idPaziente);
+        return aderenza != null ? aderenza.getAderenza() : 0.0;
+    }
+
+    // indice di aderenza globale compreso tra 0 e 1 (0 se nessun paziente ha terapie)
+    public double getAderenzaGlobale() {
+        return perPaziente.values().stream().mapToDouble(AderenzaPaziente::getAderenza).average().orElse(0.0);
+    }
+}
@@ -0,0 +1,59 @@
+package org.univr.telemedicina.model;
+
+import java.time.LocalDate;
+
+// riepilogo delle rilevazioni di glicemia di un paziente in un giorno
+// letto dalla tabella riepilogoglicemiagiornaliero aggiornata a ogni nuova rilevazione
+public class RiepilogoGlicemiaGiornaliero {
+    // paziente e giorno del riepilogo
+    private final int IDPaziente;
+    private final LocalDate giorno;
+    // numero di rilevazioni del giorno
+    private final int numeroRilevazioni;
+    // valori in mg/dl
+    private final double media;
+    private final int minimo;
+    private final int massimo;
+    // rilevazioni fuori dall'intervallo consigliato (80-130 prima dei pasti 80-180 altrimenti)
+    private final int fuoriIntervallo;
+
+    // costruttore per creare un oggetto con parametri
+    public RiepilogoGlicemiaGiornaliero(int IDPaziente, LocalDate giorno, int numeroRilevazioni, double media, int minimo, int massimo, int fuoriIntervallo) {
+        this.IDPaziente = IDPaziente;
+        this.giorno = giorno;
+        this.numeroRilevazioni = numeroRilevazioni;
+        this.media = media;
+        this.minimo = minimo;
+        this.massimo = massimo;
+        this.fuoriIntervallo = fuoriIntervallo;
+    }
+
+    // metodi getter per i campi della classe
+    public int getIDPaziente() {
+        return IDPaziente;
+    }
+
+    public LocalDate getGiorno() {
+        return giorno;
+    }
+
+    public int getNumeroRilevazioni() {
+        return numeroRilevazioni;
+    }
+
+    public double getMedia() {
+        return media;
+    }
+
+    public int getMinimo() {
+        return minimo;
+    }
+
+    public int getMassimo() {
+        return massimo;
+    }
+
+    public int getFuoriIntervallo() {
+        return fuoriIntervallo;
+    }
+}
@@ -0,0 +1,37 @@
+package org.univr.telemedicina.model;
+
+// numero di notifiche non lette di un destinatario e priorità più alta tra queste
+// è tutto quello che serve al campanello delle dashboard, con l'id più alto serve anche come punto di partenza
+// della lettura incrementale quando si apre il popup
+public class RiepilogoNonLette {
+    // numero di notifiche non lette
+    private final int numero;
+    // priorità più alta tra le non lette (0 se non ce ne sono)
+    private final int prioritaMassima;
+    // id più alto tra tutte le notifiche del destinatario, lette o no (0 se non ce ne sono)
+    private final int ultimoIdNotifica;
+
+    // costruttore per creare un oggetto con parametri
+    public RiepilogoNonLette(int numero, int prioritaMassima, int ultimoIdNotifica) {
+        this.numero = numero;
+        this.prioritaMassima = prioritaMassima;
+        this.ultimoIdNotifica = ultimoIdNotifica;
+    }
+
+    // metodi getter per i campi della classe
+    public int getNumero() {
+        return numero;
+    }
+
+    public int getPrioritaMassima() {
+        return prioritaMassima;
+    }
+
+    public int getUltimoIdNotifica() {
+        return ultimoIdNotifica;
+    }
+
+    public boolean haNonLette() {
+        return numero > 0;
+    }
+}
@@ -0,0 +1,7 @@
+package org.univr.telemedicina.model;
+
+// ampiezza degli intervalli in cui vengono raggruppate le rilevazioni per i grafici
+public enum RisoluzioneGlicemia {
+    ORA,
+    GIORNO
+}
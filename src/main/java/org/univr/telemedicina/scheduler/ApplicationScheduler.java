@@ -7,6 +7,7 @@ import org.univr.telemedicina.dao.TerapiaDAO;
 import org.univr.telemedicina.exception.DataAccessException;
 import org.univr.telemedicina.service.MonitorService;
 import org.univr.telemedicina.service.NotificheService;
+import org.univr.telemedicina.service.SweepParallelo;
 
 import java.time.Duration;
 import java.time.ZoneId;
@@ -22,7 +23,13 @@ public class ApplicationScheduler {
         ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 
         // L'istanziazione dei servizi va bene qui
-        MonitorService monitorService = new MonitorService(new TerapiaDAO(), new AssunzioneFarmaciDAO(), new NotificheService(new NotificheDAO()), new PazientiDAO());
+        NotificheService notificheService = new NotificheService(new NotificheDAO());
+        MonitorService monitorService = new MonitorService(new TerapiaDAO(), new AssunzioneFarmaciDAO(), notificheService, new PazientiDAO());
+
+        // con parallelismo maggiore di 1 (-Dtelemedicina.monitor.parallelismo) i controlli dividono i pazienti in shard
+        // valutati in parallelo, altrimenti restano sequenziali
+        SweepParallelo sweep = new SweepParallelo();
+        boolean parallelo = sweep.getParallelismo() > 1;
 
         System.out.println("Avvio dello scheduler dei task di monitoraggio...");
 
@@ -30,7 +37,11 @@ public class ApplicationScheduler {
         Runnable checkAdherenceTask = () -> {
             try {
                 System.out.println("Esecuzione task checkFarmaciDaily...");
-                monitorService.checkFarmaciDaily();
+                if (parallelo) {
+                    System.out.println(monitorService.checkFarmaciDaily(sweep));
+                } else {
+                    monitorService.checkFarmaciDaily();
+                }
             } catch (DataAccessException e) {
                 System.err.println("Errore critico in checkFarmaciDaily: " + e.getMessage());
             }
@@ -44,7 +55,11 @@ public class ApplicationScheduler {
         Runnable check3DayAdherenceTask = () -> {
             try {
                 System.out.println("Esecuzione task checkFarmaci3Daily...");
-                monitorService.checkFarmaci3Daily();
+                if (parallelo) {
+                    System.out.println(monitorService.checkFarmaci3Daily(sweep));
+                } else {
+                    monitorService.checkFarmaci3Daily();
+                }
             } catch (DataAccessException e) {
                 System.err.println("Errore critico in checkFarmaci3Daily: " + e.getMessage());
             }
@@ -65,6 +80,28 @@ public class ApplicationScheduler {
         scheduler.scheduleAtFixedRate(check3DayAdherenceTask, initialDelayInSeconds, TimeUnit.DAYS.toSeconds(1), TimeUnit.SECONDS);
 
         System.out.println("Task 'checkFarmaci3Daily' schedulato per le 18:00. Prossima esecuzione tra " + initialDelayInSeconds + " secondi.");
+
+        // --- Task 3: con il raggruppamento attivo (-Dtelemedicina.notifiche.finestraRiepilogoMinuti) scrive i riepiloghi scaduti ---
+        if (notificheService.isRiepilogoAttivo()) {
+            Runnable riepiloghiTask = () -> {
+                try {
+                    notificheService.emettiRiepiloghiScaduti();
+                } catch (DataAccessException e) {
+                    System.err.println("Errore durante la scrittura dei riepiloghi: " + e.getMessage());
+                }
+            };
+            scheduler.scheduleAtFixedRate(riepiloghiTask, 1, 1, TimeUnit.MINUTES);
+            System.out.println("Task dei riepiloghi delle notifiche schedulato ogni minuto.");
+
+            // alla chiusura dello scheduler i riepiloghi non ancora scaduti vengono scritti subito
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    notificheService.emettiTuttiIRiepiloghi();
+                } catch (DataAccessException e) {
+                    System.err.println("Errore durante la scrittura dei riepiloghi alla chiusura: " + e.getMessage());
+                }
+            }));
+        }
         System.out.println("Lo scheduler è attivo e rimarrà in esecuzione.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package org.univr.telemedicina.service;
+
+// riceve un avviso quando le notifiche di un destinatario cambiano (nuova notifica o notifica letta)
+// viene chiamato sul thread che ha completato la scrittura quindi l'interfaccia grafica deve spostarsi sul proprio thread
+@FunctionalInterface
+public interface AscoltatoreNotifiche {
+
+    // @param iddestinatario il destinatario le cui notifiche sono cambiate
+    void notificheCambiate(int idDestinatario);
+}
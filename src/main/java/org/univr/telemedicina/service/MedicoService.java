@@ -5,7 +5,10 @@ import org.univr.telemedicina.exception.DataAccessException;
 import org.univr.telemedicina.exception.MedicoServiceException;
 import org.univr.telemedicina.model.*;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
 
@@ -56,6 +59,38 @@ public class MedicoService {
         }
     }
 
+    // elenco compatto dei pazienti assegnati al medico (id nome cognome data di nascita)
+    // da usare per menu e contatori al posto di getpazientiassegnati
+    public List<PazienteSummary> getSummaryPazientiAssegnati(int idMedico) throws MedicoServiceException {
+        try {
+            return pazientiDAO.findSummaryByMedId(idMedico);
+        } catch (DataAccessException e) {
+            throw new MedicoServiceException("errore durante il recupero dei pazienti assegnati " + e.getMessage(), e);
+        }
+    }
+
+    // filtra l'elenco compatto tenendo solo i pazienti con una terapia in corso
+    public List<PazienteSummary> getSummaryPazientiAttivi(List<PazienteSummary> pazientiAssegnati) throws MedicoServiceException {
+        try {
+            Set<Integer> pazientiAttiviGlobal = new HashSet<>(terapiaDAO.getActivePatientIds());
+            return pazientiAssegnati.stream()
+                    .filter(paziente -> pazientiAttiviGlobal.contains(paziente.getIDPaziente()))
+                    .toList();
+        } catch (DataAccessException e) {
+            throw new MedicoServiceException("errore durante il recupero dei pazienti attivi " + e.getMessage(), e);
+        }
+    }
+
+    // carica l'utente completo di un paziente selezionato dall'elenco
+    public Utente getPaziente(int idPaziente) throws MedicoServiceException {
+        try {
+            return pazientiDAO.findPazienteById(idPaziente)
+                    .orElseThrow(() -> new MedicoServiceException("paziente con id " + idPaziente + " non trovato"));
+        } catch (DataAccessException e) {
+            throw new MedicoServiceException("errore durante il recupero del paziente " + e.getMessage(), e);
+        }
+    }
+
     // raccoglie dati necessari per la dashboard del singolo paziente
     public PazienteDashboard getDatiPazienteDasboard(Utente utente) throws MedicoServiceException{
         try{
@@ -73,6 +108,72 @@ public class MedicoService {
 
     }
 
+    // come getdatipazientedasboard ma carica solo le rilevazioni tra due date (incluse)
+    // usato dalla dashboard del medico che mostra una settimana o un mese alla volta
+    public PazienteDashboard getDatiPazienteDasboard(Utente utente, LocalDate da, LocalDate a) throws MedicoServiceException {
+        try {
+            List<RilevazioneGlicemia> elencoRilevazioni = getRilevazioniPaziente(utente.getIDUtente(), da, a);
+            List<Terapia> elencoTerapie = terapiaDAO.listTherapiesByPatId(utente.getIDUtente());
+            List<CondizioniPaziente> elencoCondizioni = condizioniPazienteDAO.listByIDPatId(utente.getIDUtente());
+            List<AssunzioneFarmaci> elencoAssunzioni = assunzioneFarmaciDAO.leggiAssunzioniFarmaci(utente.getIDUtente());
+
+            return new PazienteDashboard(utente, elencoRilevazioni, elencoTerapie, elencoCondizioni, elencoAssunzioni);
+        } catch (DataAccessException e) {
+            throw new MedicoServiceException("errore durante il recupero dei dati del paziente " + e.getMessage(), e);
+        }
+    }
+
+    // rilevazioni di un paziente tra due date (incluse) dalla più recente
+    public List<RilevazioneGlicemia> getRilevazioniPaziente(int idPaziente, LocalDate da, LocalDate a) throws MedicoServiceException {
+        if (da.isAfter(a)) {
+            throw new MedicoServiceException("la data di inizio non può essere successiva alla data di fine");
+        }
+        try {
+            return rivelazioneGlicemiaDAO.getRilevazioniByPazienteInIntervallo(idPaziente, da.atStartOfDay(), a.plusDays(1).atStartOfDay());
+        } catch (DataAccessException e) {
+            throw new MedicoServiceException("errore durante il recupero delle rilevazioni del paziente " + e.getMessage(), e);
+        }
+    }
+
+    // minimo media e massimo delle rilevazioni di un paziente per ora o per giorno tra due date (incluse)
+    public List<AggregatoGlicemia> getAggregatiGlicemia(int idPaziente, LocalDate da, LocalDate a, RisoluzioneGlicemia risoluzione) throws MedicoServiceException {
+        if (da.isAfter(a)) {
+            throw new MedicoServiceException("la data di inizio non può essere successiva alla data di fine");
+        }
+        try {
+            if (risoluzione == RisoluzioneGlicemia.GIORNO) {
+                // per giorno basta il riepilogo giornaliero (una riga per giorno invece di tutte le rilevazioni)
+                return rivelazioneGlicemiaDAO.getRiepilogoGiornaliero(idPaziente, da, a).stream()
+                        .map(r -> new AggregatoGlicemia(r.getGiorno().atStartOfDay(), r.getNumeroRilevazioni(), r.getMinimo(), r.getMedia(), r.getMassimo()))
+                        .toList();
+            }
+            return rivelazioneGlicemiaDAO.getAggregatiByPaziente(idPaziente, da.atStartOfDay(), a.plusDays(1).atStartOfDay(), risoluzione);
+        } catch (DataAccessException e) {
+            throw new MedicoServiceException("errore durante l'aggregazione delle rilevazioni del paziente " + e.getMessage(), e);
+        }
+    }
+
+    // riepilogo giornaliero (media minimo massimo e valori fuori intervallo) di un paziente tra due date incluse
+    public List<RiepilogoGlicemiaGiornaliero> getRiepilogoGiornaliero(int idPaziente, LocalDate da, LocalDate a) throws MedicoServiceException {
+        try {
+            return rivelazioneGlicemiaDAO.getRiepilogoGiornaliero(idPaziente, da, a);
+        } catch (DataAccessException e) {
+            throw new MedicoServiceException("errore durante il recupero del riepilogo giornaliero del paziente " + e.getMessage(), e);
+        }
+    }
+
+    // ultime n rilevazioni di un paziente dalla più recente
+    public List<RilevazioneGlicemia> getUltimeRilevazioniPaziente(int idPaziente, int numero) throws MedicoServiceException {
+        if (numero <= 0) {
+            throw new MedicoServiceException("il numero di rilevazioni deve essere maggiore di zero");
+        }
+        try {
+            return rivelazioneGlicemiaDAO.getUltimeRilevazioniByPaziente(idPaziente, numero);
+        } catch (DataAccessException e) {
+            throw new MedicoServiceException("errore durante il recupero delle ultime rilevazioni del paziente " + e.getMessage(), e);
+        }
+    }
+
     // aggiunge una nuova condizione
     public void addCondizioniPaziente(int idMedicoOperante, int IDPaziente, String tipo, String descrizione, String periodo, LocalDate dataRegistrazione) throws MedicoServiceException {
 
@@ -152,47 +253,21 @@ public class MedicoService {
     // @return l'indice di aderenza globale come valore compreso tra 0 e 1
     // @throws medicoserviceexception se si verifica un errore durante il calcolo
     public double calcolaAderenzaGlobale(List<Utente> pazienti) throws MedicoServiceException {
-        double aderenzaMedia = 0;
-        int pazientiConTerapia = 0;
-
-        for (Utente paziente : pazienti) {
-            try {
-                List<Terapia> terapie = terapiaDAO.listTherapiesByPatId(paziente.getIDUtente());
-                if (terapie.isEmpty()) {
-                    continue;
-                }
-
-                pazientiConTerapia++;
-                double aderenzaPaziente = calcolaAderenzaPaziente(paziente.getIDUtente(), terapie);
-                aderenzaMedia += aderenzaPaziente;
-            } catch (DataAccessException e) {
-                throw new MedicoServiceException("errore nel calcolo dell'aderenza per il paziente " + paziente.getIDUtente(), e);
-            }
-        }
-
-        if (pazientiConTerapia > 0) {
-            return aderenzaMedia / pazientiConTerapia;
-        } else {
-            return 0.0;
-        }
+        return calcolaAderenzaGlobalePerId(pazienti.stream().map(Utente::getIDUtente).toList());
     }
 
-    private double calcolaAderenzaPaziente(int idPaziente, List<Terapia> terapie) throws DataAccessException {
-        int dosiTotaliPrescritte = 0;
-        int dosiTotaliAssunte = 0;
-
-        for (Terapia terapia : terapie) {
-            LocalDate fineTerapia = (terapia.getDataFine() != null && terapia.getDataFine().isBefore(LocalDate.now())) ? terapia.getDataFine() : LocalDate.now();
-            long giorniTerapia = java.time.temporal.ChronoUnit.DAYS.between(terapia.getDataInizio(), fineTerapia) + 1;
-            dosiTotaliPrescritte += (int) (terapia.getFrequenzaGiornaliera() * giorniTerapia);
-        }
-
-        dosiTotaliAssunte = assunzioneFarmaciDAO.leggiAssunzioniFarmaci(idPaziente).size();
+    // come calcolaaderenzaglobale ma riceve solo gli id dei pazienti (es. da un elenco di pazientesummary)
+    public double calcolaAderenzaGlobalePerId(Collection<Integer> idPazienti) throws MedicoServiceException {
+        return calcolaAderenza(idPazienti).getAderenzaGlobale();
+    }
 
-        if (dosiTotaliPrescritte > 0) {
-            return (double) dosiTotaliAssunte / dosiTotaliPrescritte;
-        } else {
-            return 0.0;
+    // aderenza di ogni paziente e indice globale calcolati con una sola query aggregata
+    // i pazienti senza terapie non contribuiscono all'indice globale
+    public RiepilogoAderenza calcolaAderenza(Collection<Integer> idPazienti) throws MedicoServiceException {
+        try {
+            return new RiepilogoAderenza(assunzioneFarmaciDAO.getAderenzaPerPazienti(idPazienti, LocalDate.now()));
+        } catch (DataAccessException e) {
+            throw new MedicoServiceException("errore nel calcolo dell'aderenza di " + idPazienti.size() + " pazienti", e);
         }
     }
 }
@@ -2,16 +2,29 @@ package org.univr.telemedicina.service;
 
 import org.univr.telemedicina.dao.AssunzioneFarmaciDAO;
 import org.univr.telemedicina.dao.PazientiDAO;
+import org.univr.telemedicina.dao.RegoleGlicemiaDAO;
 import org.univr.telemedicina.dao.TerapiaDAO;
 import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.AssunzioniRecentiPaziente;
+import org.univr.telemedicina.model.ContattoPaziente;
+import org.univr.telemedicina.model.Notifica;
+import org.univr.telemedicina.model.RegolaGlicemia;
 import org.univr.telemedicina.model.RilevazioneGlicemia;
-import org.univr.telemedicina.model.Terapia;
 
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IntSummaryStatistics;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 // classe che gestisce le notifiche dei pazienti e dei medici
 // gestisce livelli di glicemia anormale puntualità di assunzione dei farmaci
@@ -21,13 +34,33 @@ public class MonitorService {
     private final AssunzioneFarmaciDAO assunzioneFarmaciDAO;
     private final NotificheService notificheService;
     private final PazientiDAO pazientiDAO;
+    private final RegoleGlicemiaDAO regoleGlicemiaDAO;
+
+    // regole della glicemia compilate e contatti dei pazienti (medico e nome) tenuti in memoria
+    // per -Dtelemedicina.monitor.cacheMinuti minuti prima di essere riletti dal db
+    private static final long TTL_CACHE_NANOS = TimeUnit.MINUTES.toNanos(Integer.getInteger("telemedicina.monitor.cacheMinuti", 10));
+    private volatile MotoreRegoleGlicemia motoreRegole;
+    private volatile long scadenzaRegoleNanos;
+    // versione delle regole (regoleglicemiadao) con cui è stato costruito il motore: se cambia le regole vengono rilette subito
+    private volatile long versioneRegole;
+    private final Map<Integer, VoceContatto> contatti = new ConcurrentHashMap<>();
+
+    // formato delle date nei messaggi delle notifiche
+    private static final DateTimeFormatter FORMATO_ORARIO = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+    // giorni consecutivi controllati da checkfarmaci3daily
+    private static final int GIORNI_ADERENZA = 3;
 
     // costruttore del servizio inizializza i dao necessari
     public MonitorService(TerapiaDAO terapiaDAO, AssunzioneFarmaciDAO assunzioneFarmaciDAO, NotificheService notificheService, PazientiDAO pazientiDAO) {
+        this(terapiaDAO, assunzioneFarmaciDAO, notificheService, pazientiDAO, new RegoleGlicemiaDAO());
+    }
+
+    public MonitorService(TerapiaDAO terapiaDAO, AssunzioneFarmaciDAO assunzioneFarmaciDAO, NotificheService notificheService, PazientiDAO pazientiDAO, RegoleGlicemiaDAO regoleGlicemiaDAO) {
         this.terapiaDAO = terapiaDAO;
         this.assunzioneFarmaciDAO = assunzioneFarmaciDAO;
         this.notificheService = notificheService;
         this.pazientiDAO = pazientiDAO;
+        this.regoleGlicemiaDAO = regoleGlicemiaDAO;
     }
 
 
@@ -46,13 +79,47 @@ public class MonitorService {
             return;
         }
 
+        // i promemoria sono scritti tutti insieme in un'unica transazione
+        // il controllo gira ogni ora ma ogni paziente ha al massimo un promemoria per livello al giorno
+        LocalDate oggi = LocalDate.now();
+        int oraAttuale = LocalDateTime.now().getHour();
+        List<Notifica> notifiche = valutaFarmaciDaily(pazientiAttivi, oggi, oraAttuale);
+        if (!notifiche.isEmpty()) {
+            notificheService.sendPromemoria(notifiche, oggi, livelloPromemoria(oraAttuale));
+        }
+    }
+
+    // come checkfarmacidaily ma divide i pazienti attivi in shard valutati in parallelo
+    // le notifiche di tutti gli shard sono scritte insieme in un'unica transazione
+    // @param sweep il parallelismo e la dimensione degli shard
+    // @return le notifiche inviate e i tempi di ogni shard
+    public RisultatoSweep checkFarmaciDaily(SweepParallelo sweep) throws DataAccessException {
+        List<Integer> pazientiAttivi = terapiaDAO.getActivePatientIds();
+        LocalDate oggi = LocalDate.now();
+        int oraAttuale = LocalDateTime.now().getHour();
+
+        RisultatoSweep risultato = sweep.esegui("checkFarmaciDaily", pazientiAttivi, shard -> valutaFarmaciDaily(shard, oggi, oraAttuale));
+        notificheService.sendPromemoria(risultato.getNotifiche(), oggi, livelloPromemoria(oraAttuale));
+        return risultato;
+    }
+
+    // livello di sollecito dei promemoria delle assunzioni
+    // 1 dal pomeriggio 2 dalla sera così il paziente riceve un nuovo avviso quando il sollecito sale
+    private static int livelloPromemoria(int oraAttuale) {
+        return oraAttuale >= 18 ? 2 : 1;
+    }
+
+    // valuta le assunzioni di oggi di un gruppo di pazienti e restituisce i promemoria da inviare
+    private List<Notifica> valutaFarmaciDaily(List<Integer> pazientiAttivi, LocalDate oggi, int oraAttuale) throws DataAccessException {
+        List<Notifica> notifiche = new ArrayList<>();
+
         // prende le frequenze totali richieste per tutti i pazienti
         Map<Integer, Integer> frequenzeRichieste = terapiaDAO.getFrequenzeGiornalierePerPazienti(pazientiAttivi);
 
         // prende il conteggio delle assunzioni di oggi per tutti i pazienti in un colpo solo
-        Map<Integer, Integer> assunzioniEffettuate = assunzioneFarmaciDAO.getConteggioAssunzioniGiornoPerPazienti(pazientiAttivi, LocalDate.now());
+        Map<Integer, Integer> assunzioniEffettuate = assunzioneFarmaciDAO.getConteggioAssunzioniGiornoPerPazienti(pazientiAttivi, oggi);
 
-        int oraAttuale = LocalDateTime.now().getHour();
+        LocalDateTime adesso = LocalDateTime.now();
 
         // per ogni paziente attivo controlla se ha registrato le assunzioni di farmaci
         for (Integer idPaziente : pazientiAttivi) {
@@ -71,90 +138,211 @@ public class MonitorService {
 
                 // se non ha ancora registrato nulla ed è pomeriggio
                 if (numeroAssunzioniOggi == 0 && oraAttuale >= 12) {
-                    // sostituzione della notifica con un output su console
-                    //system.out.println("notifica a paziente id " + idpaziente + " ricorda di registrare le assunzioni dei farmaci per oggi");
-                    notificheService.send(idPaziente, 1, "assunzioni farmaci incompleta", "hai dimenticato di registrare le assunzioni dei farmaci per oggi", "assunzioni farmaci");
+                    notifiche.add(new Notifica(idPaziente, 1, "assunzioni farmaci incompleta", "hai dimenticato di registrare le assunzioni dei farmaci per oggi", "assunzioni farmaci", adesso));
                 }
                 //se ha registrato qualcosa ma non tutto ed è già sera
                 else if (numeroAssunzioniOggi > 0 && oraAttuale >= 18) {
-                    // sostituzione della notifica con un output su console
-                    //system.out.println("notifica a paziente id " + idpaziente + " hai registrato " + numeroassunzionoggi + " su " + frequenzarichiesta + " assunzioni richieste ricorda di completare la terapia");
-                    notificheService.send(idPaziente, 1, "assunzioni farmaci incompleta", "hai registrato " + numeroAssunzioniOggi + " su " + frequenzaRichiesta + " assunzioni richieste ricorda di completare la terapia", "assunzioni farmaci");
+                    notifiche.add(new Notifica(idPaziente, 1, "assunzioni farmaci incompleta", "hai registrato " + numeroAssunzioniOggi + " su " + frequenzaRichiesta + " assunzioni richieste ricorda di completare la terapia", "assunzioni farmaci", adesso));
                 }
             }
         }
+        return notifiche;
     }
 
     // controlla se un paziente non ha registrato le assunzioni di farmaci per tre giorni consecutivi
     // questo metodo deve essere runnato la sera verso le 18:00
+    // terapie conteggi medici e nomi di tutti i pazienti sono letti con una sola query
+    // la regola viene valutata in memoria e le notifiche sono scritte insieme in un'unica transazione
     // @throws dataaccessexception se si verifica un errore durante l'accesso ai dati
     public void checkFarmaci3Daily() throws DataAccessException {
+        LocalDate oggi = LocalDate.now();
 
-        // 1. Prende gli ID di tutti i pazienti con almeno una terapia in corso
-        List<Integer> pazientiAttivi = terapiaDAO.getActivePatientIds();
+        // pazienti con almeno una terapia iniziata da più di 3 giorni e ancora in corso
+        List<AssunzioniRecentiPaziente> pazienti = assunzioneFarmaciDAO.getAssunzioniRecentiPerPazienti(oggi, GIORNI_ADERENZA);
 
-        if (pazientiAttivi.isEmpty()) {
+        if (pazienti.isEmpty()) {
             System.out.println("nessun paziente con terapie attive trovato controllo terminato");
             return;
         }
-        LocalDate oggi = LocalDate.now();
 
-        for (Integer idPaziente : pazientiAttivi) {
+        notificheService.sendAll(valutaFarmaci3Daily(pazienti));
+    }
 
-            // 2. Per ogni paziente, otteniamo la lista completa delle sue terapie
-            List<Terapia> terapieDelPaziente = terapiaDAO.listTherapiesByPatId(idPaziente);
-            int frequenzaRichiestaValida = 0;
+    // come checkfarmaci3daily ma divide i pazienti attivi in shard valutati in parallelo
+    // ogni shard legge i pazienti del proprio intervallo di id
+    // @param sweep il parallelismo e la dimensione degli shard
+    // @return le notifiche inviate e i tempi di ogni shard
+    public RisultatoSweep checkFarmaci3Daily(SweepParallelo sweep) throws DataAccessException {
+        LocalDate oggi = LocalDate.now();
+        // gli id ordinati rendono ogni shard un intervallo contiguo
+        List<Integer> pazientiAttivi = terapiaDAO.getActivePatientIds().stream().sorted().toList();
 
-            // 3. Calcoliamo la frequenza giornaliera richiesta sommando solo quella delle terapie
-            //    che sono attive da almeno 3 giorni.
-            for (Terapia terapia : terapieDelPaziente) {
-                boolean isIniziataDaAlmeno3Giorni = terapia.getDataInizio().isBefore(oggi.minusDays(3));
-                boolean isAttualmenteAttiva = (terapia.getDataFine() == null || terapia.getDataFine().isAfter(oggi));
+        RisultatoSweep risultato = sweep.esegui("checkFarmaci3Daily", pazientiAttivi, shard -> valutaFarmaci3Daily(
+                assunzioneFarmaciDAO.getAssunzioniRecentiPerPazienti(oggi, GIORNI_ADERENZA, shard.get(0), shard.get(shard.size() - 1))));
+        notificheService.sendAll(risultato.getNotifiche());
+        return risultato;
+    }
 
-                if (isIniziataDaAlmeno3Giorni && isAttualmenteAttiva) {
-                    frequenzaRichiestaValida += terapia.getFrequenzaGiornaliera();
-                }
+    // applica la regola dei 3 giorni e restituisce le notifiche per i medici
+    private List<Notifica> valutaFarmaci3Daily(List<AssunzioniRecentiPaziente> pazienti) {
+        List<Notifica> notifiche = new ArrayList<>();
+        LocalDateTime adesso = LocalDateTime.now();
+        for (AssunzioniRecentiPaziente paziente : pazienti) {
+            // frequenza totale per i 3 giorni basata solo sulle terapie valide
+            int frequenzaRichiesta3Giorni = paziente.getFrequenzaGiornaliera() * GIORNI_ADERENZA;
+            if (frequenzaRichiesta3Giorni == 0 || paziente.getAssunzioni() >= frequenzaRichiesta3Giorni) {
+                continue;
+            }
+            if (paziente.getIDMedicoRiferimento() == null) {
+                System.err.println("paziente con id " + paziente.getIDPaziente() + " senza medico di riferimento notifica di mancata aderenza non inviata");
+                continue;
             }
+            Notifica notifica = new Notifica(paziente.getIDMedicoRiferimento(), 2, "mancata aderenza alla terapia", "l'utente " + paziente.getNomePaziente() + " non è stato costante nella terapia per 3 giorni.", "assunzioni farmaci", adesso);
+            notifica.setPaziente(paziente.getIDPaziente(), paziente.getNomePaziente());
+            notifiche.add(notifica);
+        }
+        return notifiche;
+    }
 
-            // 4. Calcoliamo la frequenza totale per i 3 giorni basandoci solo sulle terapie valide
-            int frequenzaRichiesta3Giorni = frequenzaRichiestaValida * 3;
+    // controlla il valore della glicemia registrato da un paziente
+    // se il valore è fuori dall'intervallo della regola del paziente invia una notifica al medico
+    // regole medico e nome del paziente sono in cache quindi di solito non serve nessuna query
+    // @param rilevazione l'oggetto rilevazioneglicemia contenente i dati della rilevazione
+    public void checkGlicemia(RilevazioneGlicemia rilevazione) throws DataAccessException {
+        RegolaGlicemia violata = getMotoreRegole().valuta(rilevazione);
+        if (violata == null) {
+            return;
+        }
+        Notifica notifica = notificaGlicemia(rilevazione, violata, LocalDateTime.now());
+        notificheService.sendAlMedico(notifica.getIdDestinatario(), notifica.getIdPaziente(), notifica.getNomePaziente(), notifica.getPriorita(), notifica.getTitolo(), notifica.getMessaggio(), notifica.getTipo());
+    }
+
+    // costruisce la notifica per il medico di un singolo valore anormale
+    private Notifica notificaGlicemia(RilevazioneGlicemia rilevazione, RegolaGlicemia violata, LocalDateTime adesso) throws DataAccessException {
+        ContattoPaziente contatto = getContatto(rilevazione.getIdPaziente());
+        String momento = violata.getMomento().isPrimaDelPasto() ? "prima dei pasti" : "dopo i pasti";
+        Notifica notifica = new Notifica(contatto.getIDMedicoRiferimento(), violata.getPriorita(), "glicemia anormale", "il paziente " + contatto.getNome() + " ha registrato un valore glicemico anormale " + momento + " " + rilevazione.getValore() + " mg/dl", "glicemia", adesso);
+        notifica.setPaziente(rilevazione.getIdPaziente(), contatto.getNome());
+        return notifica;
+    }
 
-            // Se il paziente non ha terapie che rispettano i criteri, passiamo al successivo
-            if (frequenzaRichiesta3Giorni == 0) {
+    // controlla un insieme di rilevazioni (ad esempio quelle inviate da un sensore continuo)
+    // applica le stesse regole di checkglicemia ma invia al massimo una notifica per paziente
+    // con il numero di valori anormali e l'intervallo in cui sono stati registrati
+    // i contatti dei pazienti non ancora in cache sono letti con una sola query
+    // @param rilevazioni le rilevazioni da controllare anche di pazienti diversi
+    // @return il numero di notifiche inviate
+    public int checkGlicemiaBatch(Collection<RilevazioneGlicemia> rilevazioni) throws DataAccessException {
+        MotoreRegoleGlicemia motore = getMotoreRegole();
+
+        // raggruppa i valori anormali per paziente mantenendo l'ordine di arrivo
+        // la notifica riassuntiva usa la priorità più alta tra le regole violate dal paziente
+        Map<Integer, List<RilevazioneGlicemia>> anormaliPerPaziente = new LinkedHashMap<>();
+        Map<Integer, Integer> prioritaPerPaziente = new HashMap<>();
+        Map<Integer, RegolaGlicemia> regolaPerPaziente = new HashMap<>();
+        for (RilevazioneGlicemia rilevazione : rilevazioni) {
+            RegolaGlicemia violata = motore.valuta(rilevazione);
+            if (violata != null) {
+                anormaliPerPaziente.computeIfAbsent(rilevazione.getIdPaziente(), id -> new ArrayList<>()).add(rilevazione);
+                prioritaPerPaziente.merge(rilevazione.getIdPaziente(), violata.getPriorita(), Math::max);
+                regolaPerPaziente.putIfAbsent(rilevazione.getIdPaziente(), violata);
+            }
+        }
+        precaricaContatti(anormaliPerPaziente.keySet());
+
+        // le notifiche di tutti i pazienti sono scritte insieme in un'unica transazione
+        List<Notifica> notifiche = new ArrayList<>();
+        LocalDateTime adesso = LocalDateTime.now();
+        for (Map.Entry<Integer, List<RilevazioneGlicemia>> entry : anormaliPerPaziente.entrySet()) {
+            List<RilevazioneGlicemia> anormali = entry.getValue();
+            if (anormali.size() == 1) {
+                // un solo valore anormale: stessa notifica della rilevazione singola
+                notifiche.add(notificaGlicemia(anormali.get(0), regolaPerPaziente.get(entry.getKey()), adesso));
                 continue;
             }
 
+            int idPaziente = entry.getKey();
+            ContattoPaziente contatto = getContatto(idPaziente);
+            IntSummaryStatistics valori = anormali.stream().mapToInt(RilevazioneGlicemia::getValore).summaryStatistics();
+            LocalDateTime primo = anormali.stream().map(RilevazioneGlicemia::getTimestamp).filter(Objects::nonNull).min(LocalDateTime::compareTo).orElse(null);
+            LocalDateTime ultimo = anormali.stream().map(RilevazioneGlicemia::getTimestamp).filter(Objects::nonNull).max(LocalDateTime::compareTo).orElse(null);
 
-            // 5. Otteniamo il conteggio totale delle assunzioni negli ultimi 3 giorni
-            int numeroAssunzioni = 0;
-            for(int i = 0; i < 3; i++) {
-                numeroAssunzioni += assunzioneFarmaciDAO.getConteggioAssunzioniGiornoPerPazienti(List.of(idPaziente), LocalDate.now().minusDays(i)).getOrDefault(idPaziente, 0);
+            String messaggio = "il paziente " + contatto.getNome() + " ha registrato " + anormali.size() + " valori glicemici anormali";
+            if (primo != null) {
+                messaggio += " tra " + primo.format(FORMATO_ORARIO) + " e " + ultimo.format(FORMATO_ORARIO);
             }
+            messaggio += " (min " + valori.getMin() + " mg/dl max " + valori.getMax() + " mg/dl)";
 
-            // 6. Se il numero di assunzioni è inferiore alla frequenza richiesta per 3 giorni, inviamo una notifica
-            if(numeroAssunzioni < frequenzaRichiesta3Giorni){
-                notificheService.send(pazientiDAO.getMedicoRiferimentoByPazienteId(idPaziente).orElseThrow(), 2, "mancata aderenza alla terapia", "l'utente " + pazientiDAO.findNameById(idPaziente) + " non è stato costante nella terapia per 3 giorni.", "assunzioni farmaci");
-            }
+            Notifica notifica = new Notifica(contatto.getIDMedicoRiferimento(), prioritaPerPaziente.get(idPaziente), "glicemia anormale", messaggio, "glicemia", adesso);
+            notifica.setPaziente(idPaziente, contatto.getNome());
+            notifiche.add(notifica);
         }
+        if (!notifiche.isEmpty()) {
+            notificheService.sendAll(notifiche);
+        }
+        return notifiche.size();
     }
 
-    // controlla il valore della glicemia registrato da un paziente
-    // se il valore è anormale invia una notifica al paziente
-    // @param rilevazione l'oggetto rilevazioneglicemia contenente i dati della rilevazione
-    public void checkGlicemia(RilevazioneGlicemia rilevazione) throws DataAccessException {
-        if(rilevazione.getNote().equals("Prima colazione") || rilevazione.getNote().equals("Prima pranzo") || rilevazione.getNote().equals("Prima cena")){
-            //entra se è prima dei pasti
-            if(rilevazione.getValore() < 80 || rilevazione.getValore() > 130){
-                //system.out.println("notifica a paziente id " + rilevazione.getidpaziente() + " valore glicemico anormale prima dei pasti " + rilevazione.getvalore() + " mg/dl controlla la tua dieta");
-                notificheService.send(pazientiDAO.getMedicoRiferimentoByPazienteId(rilevazione.getIdPaziente()).orElseThrow(), 3, "glicemia anormale", "il paziente " + pazientiDAO.findNameById(rilevazione.getIdPaziente()) + " ha registrato un valore glicemico anormale prima dei pasti " + rilevazione.getValore() + " mg/dl", "glicemia");
-            }
-        } else {
-            //entra se è due ore dopo i pasti
-            if(rilevazione.getValore() > 180 || rilevazione.getValore() < 80){
-                //system.out.println("notifica a paziente id " + rilevazione.getidpaziente() + " valore glicemico anormale dopo i pasti " + rilevazione.getvalore() + " mg/dl controlla la tua dieta");
-                notificheService.send(pazientiDAO.getMedicoRiferimentoByPazienteId(rilevazione.getIdPaziente()).orElseThrow(), 3, "glicemia anormale", "il paziente " + pazientiDAO.findNameById(rilevazione.getIdPaziente()) + " ha registrato un valore glicemico anormale dopo i pasti " + rilevazione.getValore() + " mg/dl", "glicemia");
+    // rilegge le regole della glicemia dal db (ad esempio dopo aver personalizzato l'intervallo di un paziente)
+    public void ricaricaRegole() throws DataAccessException {
+        // la versione viene letta prima delle regole così una modifica durante la lettura provoca un'altra rilettura
+        versioneRegole = RegoleGlicemiaDAO.getVersioneRegole();
+        motoreRegole = new MotoreRegoleGlicemia(regoleGlicemiaDAO.leggiRegole());
+        scadenzaRegoleNanos = System.nanoTime() + TTL_CACHE_NANOS;
+    }
+
+    // svuota la cache di medici e nomi dei pazienti (ad esempio dopo il cambio del medico di riferimento)
+    public void svuotaCacheContatti() {
+        contatti.clear();
+    }
+
+    // regole compilate, rilette dal db quando sono più vecchie della durata della cache o quando sono state modificate
+    private MotoreRegoleGlicemia getMotoreRegole() throws DataAccessException {
+        if (motoreRegole == null || System.nanoTime() - scadenzaRegoleNanos > 0 || versioneRegole != RegoleGlicemiaDAO.getVersioneRegole()) {
+            ricaricaRegole();
+        }
+        return motoreRegole;
+    }
+
+    // medico di riferimento e nome del paziente dalla cache o dal db
+    // @throws nosuchelementexception se il paziente non ha un medico di riferimento
+    private ContattoPaziente getContatto(int idPaziente) throws DataAccessException {
+        VoceContatto voce = contatti.get(idPaziente);
+        if (voce != null && System.nanoTime() - voce.scadenzaNanos < 0) {
+            return voce.contatto;
+        }
+        int idMedico = pazientiDAO.getMedicoRiferimentoByPazienteId(idPaziente).orElseThrow();
+        ContattoPaziente contatto = new ContattoPaziente(idPaziente, idMedico, pazientiDAO.findNameById(idPaziente));
+        contatti.put(idPaziente, new VoceContatto(contatto));
+        return contatto;
+    }
+
+    // legge con una sola query i contatti dei pazienti che non sono ancora in cache
+    private void precaricaContatti(Collection<Integer> idPazienti) throws DataAccessException {
+        long adesso = System.nanoTime();
+        List<Integer> mancanti = new ArrayList<>();
+        for (Integer idPaziente : idPazienti) {
+            VoceContatto voce = contatti.get(idPaziente);
+            if (voce == null || adesso - voce.scadenzaNanos >= 0) {
+                mancanti.add(idPaziente);
             }
         }
+        if (mancanti.size() < 2) {
+            return;
+        }
+        for (ContattoPaziente contatto : pazientiDAO.findContattiByIds(mancanti).values()) {
+            contatti.put(contatto.getIDPaziente(), new VoceContatto(contatto));
+        }
+    }
+
+    // contatto in cache con la sua scadenza
+    private static final class VoceContatto {
+        private final ContattoPaziente contatto;
+        private final long scadenzaNanos;
 
+        private VoceContatto(ContattoPaziente contatto) {
+            this.contatto = contatto;
+            this.scadenzaNanos = System.nanoTime() + TTL_CACHE_NANOS;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package org.univr.telemedicina.service;
+
+import org.univr.telemedicina.model.MomentoPasto;
+import org.univr.telemedicina.model.RegolaGlicemia;
+import org.univr.telemedicina.model.RilevazioneGlicemia;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// regole della glicemia compilate in tabelle in memoria indicizzate per momento della giornata
+// la valutazione di una rilevazione è una ricerca in un array senza accessi al db
+// i pazienti con intervalli personalizzati hanno una propria tabella, gli altri usano quella predefinita
+// l'oggetto è immutabile: per applicare nuove regole se ne compila uno nuovo (monitorservice.ricaricaregole)
+public class MotoreRegoleGlicemia {
+
+    private final RegolaGlicemia[] predefinite;
+    private final Map<Integer, RegolaGlicemia[]> perPaziente;
+
+    // compila le regole lette dal db, le regole personalizzate completano quelle predefinite del paziente
+    public MotoreRegoleGlicemia(List<RegolaGlicemia> regole) {
+        predefinite = new RegolaGlicemia[MomentoPasto.numero()];
+        // soglie di regolaglicemia quando la tabella non contiene una regola predefinita per un momento
+        for (MomentoPasto momento : MomentoPasto.values()) {
+            predefinite[momento.ordinal()] = RegolaGlicemia.predefinita(momento);
+        }
+        for (RegolaGlicemia regola : regole) {
+            if (regola.getIDPaziente() == null) {
+                predefinite[regola.getMomento().ordinal()] = regola;
+            }
+        }
+
+        perPaziente = new HashMap<>();
+        for (RegolaGlicemia regola : regole) {
+            if (regola.getIDPaziente() != null) {
+                perPaziente.computeIfAbsent(regola.getIDPaziente(), id -> predefinite.clone())[regola.getMomento().ordinal()] = regola;
+            }
+        }
+    }
+
+    // motore con le sole soglie predefinite
+    public static MotoreRegoleGlicemia predefinito() {
+        return new MotoreRegoleGlicemia(List.of());
+    }
+
+    // regola che si applica alla rilevazione
+    public RegolaGlicemia regolaPer(int idPaziente, MomentoPasto momento) {
+        RegolaGlicemia[] regole = perPaziente.isEmpty() ? predefinite : perPaziente.getOrDefault(idPaziente, predefinite);
+        return regole[momento.ordinal()];
+    }
+
+    // restituisce la regola violata dalla rilevazione o null se il valore è nell'intervallo
+    public RegolaGlicemia valuta(RilevazioneGlicemia rilevazione) {
+        RegolaGlicemia regola = regolaPer(rilevazione.getIdPaziente(), MomentoPasto.daNote(rilevazione.getNote()));
+        return regola.isFuoriIntervallo(rilevazione.getValore()) ? regola : null;
+    }
+
+    // numero di pazienti con intervalli personalizzati
+    public int getPazientiPersonalizzati() {
+        return perPaziente.size();
+    }
+}
@@ -2,21 +2,102 @@ package org.univr.telemedicina.service;
 
 import org.univr.telemedicina.dao.NotificheDAO;
 import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.CursoreNotifiche;
 import org.univr.telemedicina.model.Notifica;
+import org.univr.telemedicina.model.PaginaNotifiche;
+import org.univr.telemedicina.model.RiepilogoNonLette;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 // servizio che gestisce le notifiche
 // scrive nel db legge dal db aggiorna lo stato di lettura delle notifiche
+// gli avvisi non urgenti per i medici possono essere raggruppati in un riepilogo per medico
+// (-Dtelemedicina.notifiche.finestraRiepilogoMinuti, 0 disattiva il raggruppamento)
 public class NotificheService {
 
+    // gli avvisi con priorità almeno 3 sono sempre inviati subito
+    private static final int PRIORITA_URGENTE = 3;
+
+    // intervallo del controllo periodico delle dashboard che resta solo per le notifiche
+    // scritte da altri processi (ad esempio applicationscheduler), quelle di questo processo arrivano agli ascoltatori
+    public static final int SECONDI_POLL_RISERVA = Integer.getInteger("telemedicina.notifiche.pollSecondi", 60);
+
+    // ascoltatori per destinatario condivisi da tutte le istanze del servizio nello stesso processo
+    private static final Map<Integer, List<AscoltatoreNotifiche>> ASCOLTATORI = new ConcurrentHashMap<>();
+
+    // avvisi in attesa per ogni medico (in ordine di arrivo) condivisi come gli ascoltatori da tutte le istanze del processo:
+    // un avviso raccolto dal servizio della dashboard del paziente viene scritto anche dal controllo di un'altra istanza
+    // e non va perso quando quella dashboard viene chiusa
+    private static final Map<Integer, RiepilogoInCorso> RIEPILOGHI = new LinkedHashMap<>();
+    private static volatile long finestraRiepilogoNanos = TimeUnit.MINUTES.toNanos(Integer.getInteger("telemedicina.notifiche.finestraRiepilogoMinuti", 0));
+
     private final NotificheDAO notificheDAO;
 
     public NotificheService(NotificheDAO notificheDAO) {
         this.notificheDAO = notificheDAO;
     }
 
+    // imposta per quanto tempo gli avvisi non urgenti di un medico vengono raccolti prima del riepilogo
+    // vale per tutto il processo perché i riepiloghi in attesa sono condivisi
+    // @param finestra la durata della finestra, zero per inviare ogni avviso subito
+    public void impostaFinestraRiepilogo(Duration finestra) {
+        finestraRiepilogoNanos = finestra.toNanos();
+    }
+
+    public boolean isRiepilogoAttivo() {
+        return finestraRiepilogoNanos > 0;
+    }
+
+    // registra un ascoltatore per le notifiche di un destinatario
+    // viene avvisato dopo ogni notifica scritta o segnata come letta da questo processo
+    public void iscrivi(int idDestinatario, AscoltatoreNotifiche ascoltatore) {
+        ASCOLTATORI.computeIfAbsent(idDestinatario, id -> new CopyOnWriteArrayList<>()).add(ascoltatore);
+    }
+
+    public void annullaIscrizione(int idDestinatario, AscoltatoreNotifiche ascoltatore) {
+        ASCOLTATORI.computeIfPresent(idDestinatario, (id, lista) -> {
+            lista.remove(ascoltatore);
+            return lista.isEmpty() ? null : lista;
+        });
+    }
+
+    // avvisa gli ascoltatori dei destinatari indicati (una sola volta per destinatario)
+    // un ascoltatore che fallisce non blocca gli altri né la scrittura già completata
+    private static void avvisa(Collection<Integer> destinatari) {
+        if (ASCOLTATORI.isEmpty()) {
+            return;
+        }
+        for (Integer idDestinatario : new LinkedHashSet<>(destinatari)) {
+            List<AscoltatoreNotifiche> lista = ASCOLTATORI.get(idDestinatario);
+            if (lista == null) {
+                continue;
+            }
+            for (AscoltatoreNotifiche ascoltatore : lista) {
+                try {
+                    ascoltatore.notificheCambiate(idDestinatario);
+                } catch (RuntimeException e) {
+                    System.err.println("errore in un ascoltatore delle notifiche del destinatario " + idDestinatario + " " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void avvisaDestinatari(List<Notifica> notifiche) {
+        avvisa(notifiche.stream().map(Notifica::getIdDestinatario).toList());
+    }
+
     // invia una notifica al destinatario specificato
     // @param iddestinatario l'id del destinatario della notifica
     // @param priorita       la priorità della notifica
@@ -31,22 +112,225 @@ public class NotificheService {
 
         //manda la notifica al database
         notificheDAO.inserisciNotifica(notifica);
+        avvisa(List.of(IdDestinatario));
+
+    }
+
+    // invia a un medico un avviso che riguarda uno dei suoi pazienti
+    // se il raggruppamento è attivo e l'avviso non è urgente finisce nel riepilogo del medico
+    // @param idmedico il medico destinatario
+    // @param idpaziente il paziente a cui si riferisce l'avviso
+    // @param nomepaziente il nome del paziente mostrato nel riepilogo
+    public void sendAlMedico(int idMedico, int idPaziente, String nomePaziente, int priorita, String titolo, String messaggio, String tipo) throws DataAccessException {
+        emettiRiepiloghiScaduti();
+
+        Notifica notifica = new Notifica(idMedico, priorita, titolo, messaggio, tipo, LocalDateTime.now());
+        notifica.setPaziente(idPaziente, nomePaziente);
+        if (accodaAvvisi(List.of(notifica)).isEmpty()) {
+            return;
+        }
+        notificheDAO.inserisciNotifica(notifica);
+        avvisa(List.of(idMedico));
+    }
 
+    // invia un gruppo di notifiche già costruite scrivendole in un'unica transazione
+    // le notifiche con un paziente di riferimento seguono le stesse regole di sendalmedico
+    // @param notifiche le notifiche da inviare
+    // @return gli id delle notifiche create subito nello stesso ordine (esclusi gli avvisi raggruppati)
+    public List<Integer> sendAll(List<Notifica> notifiche) throws DataAccessException {
+        emettiRiepiloghiScaduti();
+        if (notifiche.isEmpty()) {
+            return List.of();
+        }
+        List<Notifica> immediate = accodaAvvisi(notifiche);
+        if (immediate.isEmpty()) {
+            return List.of();
+        }
+        List<Integer> ids = notificheDAO.inserisciNotifiche(immediate);
+        avvisaDestinatari(immediate);
+        return ids;
+    }
+
+    // mette nel riepilogo del destinatario gli avvisi non urgenti riferiti a un paziente
+    // @return le notifiche da scrivere subito
+    private List<Notifica> accodaAvvisi(List<Notifica> notifiche) {
+        long finestra = finestraRiepilogoNanos;
+        if (finestra <= 0) {
+            return notifiche;
+        }
+        List<Notifica> immediate = new ArrayList<>();
+        long adesso = System.nanoTime();
+        synchronized (RIEPILOGHI) {
+            for (Notifica notifica : notifiche) {
+                if (notifica.getIdPaziente() == null || notifica.getPriorita() >= PRIORITA_URGENTE) {
+                    immediate.add(notifica);
+                    continue;
+                }
+                RIEPILOGHI.computeIfAbsent(notifica.getIdDestinatario(), id -> new RiepilogoInCorso(adesso + finestra)).avvisi.add(notifica);
+            }
+        }
+        return immediate;
+    }
+
+    // scrive i riepiloghi la cui finestra è terminata
+    // viene chiamato a ogni invio e lettura e periodicamente dallo scheduler
+    // @return il numero di notifiche scritte
+    public int emettiRiepiloghiScaduti() throws DataAccessException {
+        return emettiRiepiloghi(false);
+    }
+
+    // scrive subito tutti i riepiloghi in attesa (al logout e alla chiusura dell'applicazione)
+    // @return il numero di notifiche scritte
+    public int emettiTuttiIRiepiloghi() throws DataAccessException {
+        return emettiRiepiloghi(true);
+    }
+
+    private int emettiRiepiloghi(boolean tutti) throws DataAccessException {
+        Map<Integer, List<Notifica>> pronti = new LinkedHashMap<>();
+        long adesso = System.nanoTime();
+        synchronized (RIEPILOGHI) {
+            if (RIEPILOGHI.isEmpty()) {
+                return 0;
+            }
+            Iterator<Map.Entry<Integer, RiepilogoInCorso>> it = RIEPILOGHI.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, RiepilogoInCorso> entry = it.next();
+                if (tutti || adesso - entry.getValue().scadenzaNanos >= 0) {
+                    pronti.put(entry.getKey(), entry.getValue().avvisi);
+                    it.remove();
+                }
+            }
+        }
+        if (pronti.isEmpty()) {
+            return 0;
+        }
+
+        List<Notifica> daScrivere = new ArrayList<>(pronti.size());
+        for (Map.Entry<Integer, List<Notifica>> entry : pronti.entrySet()) {
+            daScrivere.add(creaRiepilogo(entry.getKey(), entry.getValue()));
+        }
+        try {
+            notificheDAO.inserisciNotifiche(daScrivere);
+        } catch (DataAccessException e) {
+            // gli avvisi tornano in attesa e saranno riprovati al prossimo controllo
+            System.err.println("errore durante la scrittura di " + daScrivere.size() + " riepiloghi " + e.getMessage());
+            synchronized (RIEPILOGHI) {
+                for (Map.Entry<Integer, List<Notifica>> entry : pronti.entrySet()) {
+                    RIEPILOGHI.computeIfAbsent(entry.getKey(), id -> new RiepilogoInCorso(adesso)).avvisi.addAll(0, entry.getValue());
+                }
+            }
+            throw e;
+        }
+        avvisaDestinatari(daScrivere);
+        return daScrivere.size();
+    }
+
+    // un solo avviso viene inviato così com'è, più avvisi diventano un'unica notifica
+    // con il numero di avvisi per paziente e per titolo e la priorità più alta tra quelle raccolte
+    private Notifica creaRiepilogo(int idMedico, List<Notifica> avvisi) {
+        if (avvisi.size() == 1) {
+            return avvisi.get(0);
+        }
+        Map<Integer, String> nomi = new LinkedHashMap<>();
+        Map<Integer, Map<String, Integer>> conteggi = new LinkedHashMap<>();
+        int priorita = 0;
+        for (Notifica avviso : avvisi) {
+            nomi.putIfAbsent(avviso.getIdPaziente(), avviso.getNomePaziente());
+            conteggi.computeIfAbsent(avviso.getIdPaziente(), id -> new LinkedHashMap<>()).merge(avviso.getTitolo(), 1, Integer::sum);
+            priorita = Math.max(priorita, avviso.getPriorita());
+        }
+
+        StringBuilder messaggio = new StringBuilder(avvisi.size() + " avvisi da " + conteggi.size() + " pazienti:");
+        for (Map.Entry<Integer, Map<String, Integer>> paziente : conteggi.entrySet()) {
+            int totale = paziente.getValue().values().stream().mapToInt(Integer::intValue).sum();
+            messaggio.append(" ").append(nomi.get(paziente.getKey())).append(" ").append(totale).append(" (");
+            String separatore = "";
+            for (Map.Entry<String, Integer> titolo : paziente.getValue().entrySet()) {
+                messaggio.append(separatore).append(titolo.getKey()).append(" ").append(titolo.getValue());
+                separatore = ", ";
+            }
+            messaggio.append(");");
+        }
+        return new Notifica(idMedico, priorita, "riepilogo avvisi pazienti", messaggio.toString(), "riepilogo", LocalDateTime.now());
+    }
+
+    // invia promemoria giornalieri senza duplicarli
+    // un promemoria già inviato oggi allo stesso destinatario con lo stesso livello viene aggiornato
+    // @param notifiche i promemoria da inviare
+    // @param giorno il giorno a cui si riferiscono
+    // @param livello il livello di sollecito
+    // @return il numero di promemoria scritti
+    public int sendPromemoria(List<Notifica> notifiche, LocalDate giorno, int livello) throws DataAccessException {
+        if (notifiche.isEmpty()) {
+            return 0;
+        }
+        int scritti = notificheDAO.inserisciPromemoria(notifiche, giorno, livello);
+        avvisaDestinatari(notifiche);
+        return scritti;
     }
 
     // legge le notifiche per un destinatario specifico
     // @param iddestinatario l'id del destinatario delle notifiche
     // @return una lista di notifiche per il destinatario specificato
     public List<Notifica> read(int idDestinatario) throws DataAccessException {
-        // implementazione per leggere una notifica
+        // i riepiloghi scaduti vengono scritti prima così compaiono già in questa lettura
+        emettiRiepiloghiScaduti();
         return notificheDAO.leggiNotifichePerId(idDestinatario);
     }
 
+    // legge solo le notifiche arrivate dopo l'ultima già vista (lettura incrementale delle dashboard)
+    // @param iddestinatario l'id del destinatario delle notifiche
+    // @param ultimoidvisto l'id più alto già ricevuto, 0 alla prima lettura
+    // @param limite numero massimo di notifiche restituite
+    // @return le nuove notifiche in ordine di id
+    public List<Notifica> readDopo(int idDestinatario, int ultimoIdVisto, int limite) throws DataAccessException {
+        emettiRiepiloghiScaduti();
+        return notificheDAO.leggiNotificheDopo(idDestinatario, ultimoIdVisto, limite);
+    }
+
+    // numero e priorità massima delle notifiche non lette (per il campanello delle dashboard)
+    // @param iddestinatario l'id del destinatario delle notifiche
+    public RiepilogoNonLette getUnreadSummary(int idDestinatario) throws DataAccessException {
+        emettiRiepiloghiScaduti();
+        return notificheDAO.getUnreadSummary(idDestinatario);
+    }
+
+    // legge una pagina dell'elenco delle notifiche (prima le non lette poi dalla più recente)
+    // @param cursore il cursore della pagina precedente null per la prima pagina
+    // @param dimensionepagina numero massimo di notifiche nella pagina
+    public PaginaNotifiche readPagina(int idDestinatario, CursoreNotifiche cursore, int dimensionePagina) throws DataAccessException {
+        return notificheDAO.getPaginaNotifiche(idDestinatario, cursore, dimensionePagina);
+    }
+
+    // segna come lette le notifiche mostrate a un destinatario (ad esempio quelle caricate nel popup)
+    // @param idnotifiche gli id delle notifiche mostrate
+    // @return il numero di notifiche segnate come lette
+    public int segnaLette(int idDestinatario, Collection<Integer> idNotifiche) throws DataAccessException {
+        int aggiornate = notificheDAO.segnaLette(idDestinatario, idNotifiche);
+        if (aggiornate > 0) {
+            avvisa(List.of(idDestinatario));
+        }
+        return aggiornate;
+    }
+
     // segna una notifica specifica come letta
     // @param idnotifica l'id della notifica da aggiornare
     // @throws dataaccessexception se si verifica un errore durante l'aggiornamento
     public void setNotificaLetta(int idNotifica) throws DataAccessException {
         // chiama direttamente il metodo corrispondente nel dao
-        notificheDAO.setNotificaLetta(idNotifica);
+        int idDestinatario = notificheDAO.setNotificaLetta(idNotifica);
+        if (idDestinatario > 0) {
+            avvisa(List.of(idDestinatario));
+        }
+    }
+
+    // avvisi raccolti per un medico fino alla scadenza della finestra
+    private static final class RiepilogoInCorso {
+        private final long scadenzaNanos;
+        private final List<Notifica> avvisi = new ArrayList<>();
+
+        private RiepilogoInCorso(long scadenzaNanos) {
+            this.scadenzaNanos = scadenzaNanos;
+        }
     }
 }
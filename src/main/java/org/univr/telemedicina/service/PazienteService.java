@@ -13,7 +13,10 @@ import java.time.LocalDateTime;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class PazienteService {
     
@@ -68,6 +71,43 @@ public class PazienteService {
         }
     }
 
+    // registra in blocco le rilevazioni inviate da un sensore di glicemia continuo (una ogni pochi minuti)
+    // le rilevazioni possono riguardare più pazienti e vengono salvate in un'unica transazione
+    // poi vengono controllate tutte insieme inviando al massimo una notifica per paziente
+    // @param rilevazioni le rilevazioni da registrare
+    // @return il numero di rilevazioni registrate
+    // @throws dataaccessexception se il salvataggio o il controllo falliscono
+    public int registraRilevazioniGlicemia(Collection<RilevazioneGlicemia> rilevazioni) throws DataAccessException {
+        if (rilevazioni == null || rilevazioni.isEmpty()) {
+            return 0;
+        }
+        for (RilevazioneGlicemia rilevazione : rilevazioni) {
+            if (rilevazione.getTimestamp() == null) {
+                throw new IllegalArgumentException("ogni rilevazione deve avere data e ora (paziente con id " + rilevazione.getIdPaziente() + ")");
+            }
+        }
+
+        int registrate;
+        try {
+            registrate = rilevazioneDAO.createBatch(rilevazioni);
+        } catch (DataAccessException e) {
+            System.err.println("errore durante la registrazione delle rilevazioni di glicemia " + e.getMessage());
+            throw new DataAccessException("errore durante la registrazione delle rilevazioni di glicemia ", e);
+        }
+        try {
+            monitorService.checkGlicemiaBatch(rilevazioni);
+        } catch (DataAccessException e) {
+            System.err.println(e.getMessage());
+            throw new DataAccessException("errore durante il controllo delle rilevazioni di glicemia ", e);
+        }
+        return registrate;
+    }
+
+    // come registrarilevazioniglicemia(collection) ma accetta uno stream (ad esempio letto da un file del sensore)
+    public int registraRilevazioniGlicemia(Stream<RilevazioneGlicemia> rilevazioni) throws DataAccessException {
+        return registraRilevazioniGlicemia(rilevazioni.collect(Collectors.toList()));
+    }
+
     // aggiungere le assunzioni di farmaci verificando che siano coerenti con la terapia prescritta (usando assunzionefarmacodao e terapiadao)
     // @param terapia la terapia per cui si sta registrando l'assunzione
     // @param quantitaassunta quantità di farmaco assunta
@@ -88,7 +128,8 @@ public class PazienteService {
 
                 // usavi un istanza generica di assunzionefarmaci per il test dobbiamo usare dependency injection
                 assunzioneFarmaciDAO.aggiungiAssunzione(assunzione);
-                notificheService.send(terapia.getIDMedico(), 2, "assunzione di farmaci non corretta", "il paziente " + pazienteDAO.findNameById(terapia.getIDPaziente()) + " ha assunto una quantità di farmaco diversa da quella prescritta quantità assunta " + quantitaAssunta, "assunzione farmaci");
+                String nomePaziente = pazienteDAO.findNameById(terapia.getIDPaziente());
+                notificheService.sendAlMedico(terapia.getIDMedico(), terapia.getIDPaziente(), nomePaziente, 2, "assunzione di farmaci non corretta", "il paziente " + nomePaziente + " ha assunto una quantità di farmaco diversa da quella prescritta quantità assunta " + quantitaAssunta, "assunzione farmaci");
                 throw new WrongAssumptionException("quantita' assunta non corrisponde con quantita' da assumere assunzione registrata comunque");
             }
 
@@ -0,0 +1,73 @@
+package org.univr.telemedicina.service;
+
+import org.univr.telemedicina.model.Notifica;
+
+import java.util.Arrays;
+import java.util.List;
+
+// esito di un controllo eseguito a shard (vedi sweepparallelo): notifiche prodotte e tempi di ogni shard
+public class RisultatoSweep {
+    // nome del controllo e pazienti controllati
+    private final String nome;
+    private final int pazienti;
+    // shard valutati contemporaneamente al massimo
+    private final int parallelismo;
+    // notifiche di tutti gli shard
+    private final List<Notifica> notifiche;
+    // durata di ogni shard e dell'intero controllo
+    private final long[] tempiShardNanos;
+    private final long durataNanos;
+
+    public RisultatoSweep(String nome, int pazienti, int parallelismo, List<Notifica> notifiche, long[] tempiShardNanos, long durataNanos) {
+        this.nome = nome;
+        this.pazienti = pazienti;
+        this.parallelismo = parallelismo;
+        this.notifiche = List.copyOf(notifiche);
+        this.tempiShardNanos = tempiShardNanos.clone();
+        this.durataNanos = durataNanos;
+    }
+
+    // metodi getter per i campi della classe
+    public String getNome() {
+        return nome;
+    }
+
+    public int getPazienti() {
+        return pazienti;
+    }
+
+    public int getParallelismo() {
+        return parallelismo;
+    }
+
+    public List<Notifica> getNotifiche() {
+        return notifiche;
+    }
+
+    public int getNumeroShard() {
+        return tempiShardNanos.length;
+    }
+
+    // durata dello shard in millisecondi
+    public double getTempoShardMillis(int indice) {
+        return tempiShardNanos[indice] / 1_000_000.0;
+    }
+
+    public double getTempoShardMassimoMillis() {
+        return Arrays.stream(tempiShardNanos).max().orElse(0) / 1_000_000.0;
+    }
+
+    public double getDurataMillis() {
+        return durataNanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder resoconto = new StringBuilder(nome + " " + pazienti + " pazienti in " + getNumeroShard() + " shard (parallelismo " + parallelismo + "), "
+                + notifiche.size() + " notifiche, durata " + String.format("%.1f", getDurataMillis()) + " ms, shard più lento " + String.format("%.1f", getTempoShardMassimoMillis()) + " ms");
+        for (int i = 0; i < tempiShardNanos.length; i++) {
+            resoconto.append("\n  shard ").append(i).append(" ").append(String.format("%.1f", getTempoShardMillis(i))).append(" ms");
+        }
+        return resoconto.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package org.univr.telemedicina.service;
+
+import org.univr.telemedicina.dao.DatabaseManager;
+import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.Notifica;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+// esegue un controllo periodico di monitorservice dividendo i pazienti in shard valutati in parallelo
+// ogni shard gira su un virtual thread ma al massimo "parallelismo" shard interrogano il db contemporaneamente
+// così i lettori restano entro il pool di connessioni (databasemanager.getpoolmetrics)
+// le notifiche prodotte dagli shard vengono restituite insieme per essere scritte con un solo inserimento
+public class SweepParallelo {
+
+    // parallelismo e dimensione degli shard configurabili da riga di comando
+    private static final int PARALLELISMO = Integer.getInteger("telemedicina.monitor.parallelismo", Runtime.getRuntime().availableProcessors());
+    private static final int DIMENSIONE_SHARD = Integer.getInteger("telemedicina.monitor.dimensioneShard", 500);
+    // shard per lettore: più shard che lettori bilanciano gli shard più lenti
+    private static final int SHARD_PER_LETTORE = 4;
+
+    private final int parallelismo;
+    private final int dimensioneMassimaShard;
+
+    // valuta gli id di uno shard e restituisce le notifiche da inviare
+    @FunctionalInterface
+    public interface ValutazioneShard {
+        List<Notifica> valuta(List<Integer> idPazienti) throws DataAccessException;
+    }
+
+    // costruttore con i valori di configurazione, il parallelismo non supera i lettori del pool
+    public SweepParallelo() {
+        this(Math.min(PARALLELISMO, DatabaseManager.getPoolSize()), DIMENSIONE_SHARD);
+    }
+
+    public SweepParallelo(int parallelismo, int dimensioneMassimaShard) {
+        if (parallelismo <= 0 || dimensioneMassimaShard <= 0) {
+            throw new IllegalArgumentException("parallelismo e dimensione degli shard devono essere maggiori di zero");
+        }
+        this.parallelismo = parallelismo;
+        this.dimensioneMassimaShard = dimensioneMassimaShard;
+    }
+
+    public int getParallelismo() {
+        return parallelismo;
+    }
+
+    // divide gli id (nell'ordine ricevuto) in shard contigui
+    List<List<Integer>> dividi(List<Integer> idPazienti) {
+        int numeroShard = Math.max(1, Math.min(parallelismo * SHARD_PER_LETTORE, idPazienti.size()));
+        int dimensione = Math.min(dimensioneMassimaShard, (idPazienti.size() + numeroShard - 1) / numeroShard);
+        List<List<Integer>> shard = new ArrayList<>();
+        for (int inizio = 0; inizio < idPazienti.size(); inizio += dimensione) {
+            shard.add(idPazienti.subList(inizio, Math.min(inizio + dimensione, idPazienti.size())));
+        }
+        return shard;
+    }
+
+    // valuta tutti gli shard e unisce le notifiche prodotte
+    // se uno shard fallisce gli altri vengono interrotti e l'errore viene rilanciato
+    // @param nome il nome del controllo usato nel resoconto
+    // @param idPazienti gli id dei pazienti da controllare
+    // @param valutazione la valutazione di un singolo shard
+    // @return le notifiche di tutti gli shard e i tempi di ogni shard
+    public RisultatoSweep esegui(String nome, List<Integer> idPazienti, ValutazioneShard valutazione) throws DataAccessException {
+        long inizio = System.nanoTime();
+        List<List<Integer>> shard = dividi(idPazienti);
+        Semaphore lettori = new Semaphore(parallelismo);
+
+        List<Future<List<Notifica>>> risultati = new ArrayList<>(shard.size());
+        long[] tempiShardNanos = new long[shard.size()];
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < shard.size(); i++) {
+                int indice = i;
+                risultati.add(executor.submit(() -> {
+                    lettori.acquire();
+                    try {
+                        long inizioShard = System.nanoTime();
+                        List<Notifica> notifiche = valutazione.valuta(shard.get(indice));
+                        tempiShardNanos[indice] = System.nanoTime() - inizioShard;
+                        return notifiche;
+                    } finally {
+                        lettori.release();
+                    }
+                }));
+            }
+
+            List<Notifica> notifiche = new ArrayList<>();
+            for (Future<List<Notifica>> risultato : risultati) {
+                notifiche.addAll(attendi(nome, risultato, executor));
+            }
+            return new RisultatoSweep(nome, idPazienti.size(), parallelismo, notifiche, tempiShardNanos, System.nanoTime() - inizio);
+        }
+    }
+
+    private List<Notifica> attendi(String nome, Future<List<Notifica>> risultato, ExecutorService executor) throws DataAccessException {
+        try {
+            return risultato.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            throw new DataAccessException("controllo " + nome + " interrotto", e);
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            System.err.println("errore in uno shard del controllo " + nome + " " + e.getCause().getMessage());
+            if (e.getCause() instanceof DataAccessException dae) {
+                throw dae;
+            }
+            throw new DataAccessException("errore in uno shard del controllo " + nome, e.getCause());
+        }
+    }
+}
@@ -3,7 +3,9 @@ package org.univr.telemedicina.dao;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.univr.telemedicina.model.AderenzaPaziente;
 import org.univr.telemedicina.model.AssunzioneFarmaci;
+import org.univr.telemedicina.model.AssunzioniRecentiPaziente;
 import org.univr.telemedicina.model.Terapia;
 import org.univr.telemedicina.model.Utente;
 
@@ -11,9 +13,11 @@ import java.sql.Connection;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -50,6 +54,7 @@ class AssunzioneFarmaciDAOTest {
     void tearDown() {
         try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
             stmt.execute("DELETE FROM AssunzioniFarmaci");
+            stmt.execute("DELETE FROM ConteggioAssunzioniGiornaliero");
             stmt.execute("DELETE FROM Terapie");
             stmt.execute("DELETE FROM Pazienti");
             stmt.execute("DELETE FROM Utenti");
@@ -107,4 +112,92 @@ class AssunzioneFarmaciDAOTest {
         assertNotNull(conteggio);
         assertEquals(2, conteggio.get(paziente.getIDUtente()).intValue(), "Il conteggio delle assunzioni per il paziente dovrebbe essere 2.");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testConteggiGiornalieriAggiornatiERicostruiti() throws Exception {
+        // ARRANGE
+        LocalDate giorno = LocalDate.of(2025, 6, 11);
+        assunzioneFarmaciDAO.aggiungiAssunzione(new AssunzioneFarmaci(terapia.getIDTerapia(), paziente.getIDUtente(), giorno.atTime(8, 0), "10mg"));
+        assunzioneFarmaciDAO.aggiungiAssunzione(new AssunzioneFarmaci(terapia.getIDTerapia(), paziente.getIDUtente(), giorno.atTime(20, 0), "10mg"));
+        assunzioneFarmaciDAO.aggiungiAssunzione(new AssunzioneFarmaci(terapia.getIDTerapia(), paziente.getIDUtente(), giorno.plusDays(1).atTime(0, 0), "10mg"));
+
+        // ACT
+        Map<Integer, Integer> conteggio = assunzioneFarmaciDAO.getConteggioAssunzioniGiornoPerPazienti(List.of(paziente.getIDUtente()), giorno);
+        int righe = assunzioneFarmaciDAO.ricostruisciConteggiGiornalieri();
+        Map<Integer, Integer> ricostruito = assunzioneFarmaciDAO.getConteggioAssunzioniGiornoPerPazienti(List.of(paziente.getIDUtente()), giorno);
+
+        // ASSERT
+        // l'assunzione della mezzanotte successiva appartiene al giorno dopo
+        assertEquals(2, conteggio.get(paziente.getIDUtente()).intValue());
+        assertEquals(2, righe, "una riga per ciascuno dei due giorni");
+        assertEquals(conteggio, ricostruito);
+        assertTrue(assunzioneFarmaciDAO.getConteggioAssunzioniGiornoPerPazienti(List.of(paziente.getIDUtente()), giorno.minusDays(1)).isEmpty());
+    }
+
+    @Test
+    void testGetAderenzaPerPazienti() throws Exception {
+        // ARRANGE
+        // terapia da oggi con 2 dosi al giorno: dopo 3 giorni (oggi compreso) le dosi prescritte sono 6
+        LocalDate traDueGiorni = LocalDate.now().plusDays(2);
+        assunzioneFarmaciDAO.aggiungiAssunzione(new AssunzioneFarmaci(terapia.getIDTerapia(), paziente.getIDUtente(), LocalDateTime.now(), "10mg"));
+        assunzioneFarmaciDAO.aggiungiAssunzione(new AssunzioneFarmaci(terapia.getIDTerapia(), paziente.getIDUtente(), traDueGiorni.atTime(9, 0), "10mg"));
+        assunzioneFarmaciDAO.aggiungiAssunzione(new AssunzioneFarmaci(terapia.getIDTerapia(), paziente.getIDUtente(), traDueGiorni.atTime(21, 0), "10mg"));
+        int idSenzaTerapia = paziente.getIDUtente() + 1000;
+
+        // ACT
+        Map<Integer, AderenzaPaziente> aderenze = assunzioneFarmaciDAO.getAderenzaPerPazienti(List.of(paziente.getIDUtente(), idSenzaTerapia), traDueGiorni);
+
+        // ASSERT
+        assertEquals(1, aderenze.size(), "i pazienti senza terapie non compaiono");
+        AderenzaPaziente aderenza = aderenze.get(paziente.getIDUtente());
+        assertEquals(6, aderenza.getDosiPrescritte());
+        assertEquals(3, aderenza.getDosiAssunte());
+        assertEquals(0.5, aderenza.getAderenza(), 0.0001);
+    }
+
+    @Test
+    void testGetAssunzioniRecentiPerPazienti() throws Exception {
+        // ARRANGE
+        // la terapia del setup inizia oggi quindi non viene considerata
+        LocalDate oggi = LocalDate.now();
+        Terapia vecchia = new Terapia(paziente.getIDUtente(), terapia.getIDMedico(), "FarmacoVecchio", "5mg", 1, "", oggi.minusDays(10), null);
+        terapiaDAO.assignTherapy(vecchia);
+        int idVecchia = terapiaDAO.listTherapiesByPatId(paziente.getIDUtente()).stream()
+                .filter(t -> t.getNomeFarmaco().equals("FarmacoVecchio")).findFirst().orElseThrow().getIDTerapia();
+        // due assunzioni nel periodo e una fuori (3 giorni fa)
+        assunzioneFarmaciDAO.aggiungiAssunzione(new AssunzioneFarmaci(idVecchia, paziente.getIDUtente(), oggi.atTime(8, 0), "5mg"));
+        assunzioneFarmaciDAO.aggiungiAssunzione(new AssunzioneFarmaci(idVecchia, paziente.getIDUtente(), oggi.minusDays(2).atTime(8, 0), "5mg"));
+        assunzioneFarmaciDAO.aggiungiAssunzione(new AssunzioneFarmaci(idVecchia, paziente.getIDUtente(), oggi.minusDays(3).atTime(8, 0), "5mg"));
+
+        // ACT
+        List<AssunzioniRecentiPaziente> risultato = assunzioneFarmaciDAO.getAssunzioniRecentiPerPazienti(oggi, 3);
+
+        // ASSERT
+        assertEquals(1, risultato.size());
+        AssunzioniRecentiPaziente recenti = risultato.get(0);
+        assertEquals(paziente.getIDUtente(), recenti.getIDPaziente());
+        assertEquals(terapia.getIDMedico(), recenti.getIDMedicoRiferimento());
+        assertEquals("Paziente Test", recenti.getNomePaziente());
+        assertEquals(1, recenti.getFrequenzaGiornaliera());
+        assertEquals(2, recenti.getAssunzioni());
+    }
+
+    @Test
+    void testConteggioConMoltiPazienti() throws Exception {
+        // ARRANGE
+        // più id del limite di parametri di sqlite (32766): vengono eseguiti a blocchi con lo stesso statement
+        assunzioneFarmaciDAO.aggiungiAssunzione(new AssunzioneFarmaci(terapia.getIDTerapia(), paziente.getIDUtente(), LocalDate.now().atTime(9, 0), "10mg"));
+        List<Integer> ids = new ArrayList<>(IntStream.range(1_000_000, 1_040_000).boxed().toList());
+        ids.add(paziente.getIDUtente());
+
+        // ACT
+        Map<Integer, Integer> conteggio = assunzioneFarmaciDAO.getConteggioAssunzioniGiornoPerPazienti(ids, LocalDate.now());
+        Map<Integer, AderenzaPaziente> aderenze = assunzioneFarmaciDAO.getAderenzaPerPazienti(ids, LocalDate.now());
+        Map<Integer, Integer> frequenze = terapiaDAO.getFrequenzeGiornalierePerPazienti(ids);
+
+        // ASSERT
+        assertEquals(Map.of(paziente.getIDUtente(), 1), conteggio);
+        assertEquals(1, aderenze.get(paziente.getIDUtente()).getDosiAssunte());
+        assertEquals(Map.of(paziente.getIDUtente(), 2), frequenze);
+    }
+}
@@ -0,0 +1,110 @@
+package org.univr.telemedicina.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.univr.telemedicina.model.LogOperazione;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditLogWriterTest {
+
+    private LogOperazioniDAO logOperazioniDAO;
+
+    @BeforeEach
+    void setUp() {
+        DatabaseManager.setURL("jdbc:sqlite:test.sqlite");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (logOperazioniDAO != null) {
+            logOperazioniDAO.close();
+        }
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM LogOperazioni");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private LogOperazione nuovoLog(int i) {
+        return new LogOperazione(1, 2, "TEST_AUDIT", "operazione " + i, LocalDateTime.now());
+    }
+
+    private int contaLog() throws SQLException {
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM LogOperazioni WHERE TipoOperazione = 'TEST_AUDIT'");
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    void testAsincronoScriveAGruppiDopoFlush() throws Exception {
+        logOperazioniDAO = new LogOperazioniDAO(ModalitaAudit.ASINCRONO, 1024, 64);
+
+        // ACT
+        for (int i = 0; i < 300; i++) {
+            logOperazioniDAO.createLog(nuovoLog(i));
+        }
+        assertTrue(logOperazioniDAO.flush());
+
+        // ASSERT
+        assertEquals(300, contaLog());
+        AuditLogMetrics metrics = logOperazioniDAO.getAuditMetrics();
+        assertEquals(300, metrics.getAccodati());
+        assertEquals(300, metrics.getScritti());
+        assertEquals(0, metrics.getPersi());
+        assertEquals(0, metrics.getInCoda());
+        // gruppi da al massimo 64 log
+        assertTrue(metrics.getFlush() >= 5 && metrics.getFlush() < 300, "flush eseguiti " + metrics.getFlush());
+    }
+
+    @Test
+    void testLetturaVedeILogAppenaAccodati() throws Exception {
+        logOperazioniDAO = new LogOperazioniDAO(ModalitaAudit.ASINCRONO);
+
+        logOperazioniDAO.createLog(nuovoLog(1));
+        List<LogOperazione> logs = logOperazioniDAO.findLogsByMedicoId(1);
+
+        assertTrue(logs.stream().anyMatch(l -> l.getDescrizioneOperazione().equals("operazione 1")));
+    }
+
+    @Test
+    void testCodaPienaScriveDirettamente() throws Exception {
+        logOperazioniDAO = new LogOperazioniDAO(ModalitaAudit.ASINCRONO, 1, 1);
+
+        for (int i = 0; i < 50; i++) {
+            logOperazioniDAO.createLog(nuovoLog(i));
+        }
+        logOperazioniDAO.flush();
+
+        // nessun log perso anche se la coda può contenerne uno solo
+        assertEquals(50, contaLog());
+        AuditLogMetrics metrics = logOperazioniDAO.getAuditMetrics();
+        assertEquals(50, metrics.getAccodati() + metrics.getScrittureDirette());
+    }
+
+    @Test
+    void testShutdownScriveILogInCoda() throws Exception {
+        logOperazioniDAO = new LogOperazioniDAO(ModalitaAudit.ASINCRONO_FLUSH_CHIUSURA);
+
+        for (int i = 0; i < 100; i++) {
+            logOperazioniDAO.createLog(nuovoLog(i));
+        }
+        DatabaseManager.shutdown();
+
+        assertEquals(100, contaLog());
+        assertEquals(100, logOperazioniDAO.getAuditMetrics().getScritti());
+    }
+}
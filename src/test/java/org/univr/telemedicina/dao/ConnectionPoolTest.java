@@ -0,0 +1,81 @@
+package org.univr.telemedicina.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ConnectionPool("jdbc:sqlite:test.sqlite", 2, 200, List.of("PRAGMA busy_timeout=1000"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void testConnessioneRestituitaVieneRiutilizzata() throws SQLException {
+        // ACT: prende e chiude due volte una connessione
+        try (Connection conn = pool.borrow()) {
+            assertFalse(conn.isClosed());
+        }
+        try (Connection conn = pool.borrow()) {
+            assertFalse(conn.isClosed());
+        }
+
+        // ASSERT: una sola connessione fisica è stata aperta e ora è libera
+        PoolMetrics metrics = pool.metrics();
+        assertEquals(2, metrics.getPrestiti());
+        assertEquals(1, metrics.getAperte());
+        assertEquals(1, metrics.getLibere());
+        assertEquals(0, metrics.getAttive());
+    }
+
+    @Test
+    void testConnessioneChiusaNonPuoEssereUsata() throws SQLException {
+        Connection conn = pool.borrow();
+        conn.close();
+        // una seconda chiusura non deve restituire due volte la connessione
+        conn.close();
+
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+        assertEquals(1, pool.metrics().getLibere());
+    }
+
+    @Test
+    void testPoolEsauritoLanciaTimeout() throws SQLException {
+        // ARRANGE: occupa tutte le connessioni del pool
+        try (Connection c1 = pool.borrow(); Connection c2 = pool.borrow()) {
+            // ACT & ASSERT
+            assertThrows(SQLTimeoutException.class, pool::borrow);
+            assertEquals(1, pool.metrics().getTimeout());
+            assertEquals(2, pool.metrics().getAttive());
+        }
+        // dopo la restituzione il pool torna disponibile
+        try (Connection conn = pool.borrow()) {
+            assertNotNull(conn);
+        }
+    }
+
+    @Test
+    void testTransazioneApertaVieneAnnullataAllaRestituzione() throws SQLException {
+        try (Connection conn = pool.borrow()) {
+            conn.setAutoCommit(false);
+        }
+        try (Connection conn = pool.borrow()) {
+            assertTrue(conn.getAutoCommit(), "la connessione restituita deve tornare in autocommit");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.univr.telemedicina.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseManagerTest {
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        DatabaseManager.setURL("jdbc:sqlite:test.sqlite");
+        DatabaseManager.eseguiScrittura(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                return stmt.executeUpdate("CREATE TABLE IF NOT EXISTS ProvaScrittore (ID INTEGER PRIMARY KEY AUTOINCREMENT, Valore INTEGER)");
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS ProvaScrittore");
+        }
+    }
+
+    private int contaRighe() throws SQLException {
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM ProvaScrittore");
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private void inserisci(Connection conn, int valore) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO ProvaScrittore (Valore) VALUES (?)")) {
+            pstmt.setInt(1, valore);
+            pstmt.executeUpdate();
+        }
+    }
+
+    @Test
+    void testConnessioneLetturaNonPuoScrivere() throws SQLException {
+        try (Connection conn = DatabaseManager.getReadConnection()) {
+            assertThrows(SQLException.class, () -> inserisci(conn, 1));
+        }
+        assertEquals(0, contaRighe());
+    }
+
+    @Test
+    void testScrittureConcorrentiVengonoSerializzate() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> risultati = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final int valore = i;
+                risultati.add(executor.submit(() -> DatabaseManager.eseguiScrittura(conn -> {
+                    inserisci(conn, valore);
+                    return null;
+                })));
+            }
+            // nessuna scrittura deve fallire con sqlite_busy
+            for (Future<?> f : risultati) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(200, contaRighe());
+    }
+
+    @Test
+    void testTransazioneFallitaVieneAnnullata() throws SQLException {
+        assertThrows(SQLException.class, () -> DatabaseManager.eseguiScrittura(conn -> {
+            conn.setAutoCommit(false);
+            inserisci(conn, 1);
+            throw new SQLException("errore simulato");
+        }));
+
+        // la riga non è stata salvata e la connessione è tornata in autocommit
+        assertEquals(0, contaRighe());
+        assertTrue(DatabaseManager.eseguiScrittura(Connection::getAutoCommit));
+    }
+
+    @Test
+    void testScritturaAnnidataUsaLaStessaConnessione() throws SQLException {
+        DatabaseManager.eseguiScrittura(conn -> {
+            conn.setAutoCommit(false);
+            inserisci(conn, 1);
+            // la scrittura annidata fa parte della stessa transazione
+            DatabaseManager.eseguiScrittura(interna -> {
+                inserisci(interna, 2);
+                return null;
+            });
+            conn.commit();
+            conn.setAutoCommit(true);
+            return null;
+        });
+        assertEquals(2, contaRighe());
+    }
+
+    @Test
+    void testGetPoolSizeCorrispondeAlPoolDeiLettori() {
+        // la dimensione configurata si legge senza creare il pool e coincide con quella del pool creato
+        assertEquals(DatabaseManager.getPoolSize(), DatabaseManager.getPoolMetrics().getDimensioneMassima());
+    }
+}
@@ -0,0 +1,147 @@
+package org.univr.telemedicina.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitWriterTest {
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        DatabaseManager.setURL("jdbc:sqlite:test.sqlite");
+        DatabaseManager.eseguiScrittura(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                return stmt.executeUpdate("CREATE TABLE IF NOT EXISTS ProvaGroupCommit (ID INTEGER PRIMARY KEY AUTOINCREMENT, Valore INTEGER NOT NULL)");
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS ProvaGroupCommit");
+        }
+    }
+
+    private CompletableFuture<Long> inserisci(Integer valore) {
+        return DatabaseManager.inserisciRaggruppato(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO ProvaGroupCommit (Valore) VALUES (?)")) {
+                if (valore == null) {
+                    pstmt.setNull(1, java.sql.Types.INTEGER);
+                } else {
+                    pstmt.setInt(1, valore);
+                }
+                pstmt.executeUpdate();
+                return DatabaseManager.chiaveGenerata(pstmt);
+            }
+        });
+    }
+
+    private int contaRighe() throws SQLException {
+        try (Connection conn = DatabaseManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM ProvaGroupCommit");
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    void testInserimentiRaggruppatiRestituisconoChiaviDistinte() throws Exception {
+        long transazioniPrima = DatabaseManager.getGroupCommitMetrics().getTransazioni();
+
+        // ACT: molti inserimenti accodati senza attendere
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(inserisci(i));
+        }
+
+        // ASSERT: ogni chiamante riceve la propria chiave
+        Set<Long> chiavi = new HashSet<>();
+        for (CompletableFuture<Long> f : futures) {
+            chiavi.add(f.get());
+        }
+        assertEquals(500, chiavi.size());
+        assertEquals(500, contaRighe());
+
+        // gli inserimenti sono stati confermati con meno commit che righe
+        long transazioni = DatabaseManager.getGroupCommitMetrics().getTransazioni() - transazioniPrima;
+        assertTrue(transazioni < 500, "attese meno transazioni che inserimenti, eseguite " + transazioni);
+    }
+
+    @Test
+    void testInserimentoFallitoNonAnnullaGliAltri() throws Exception {
+        CompletableFuture<Long> primo = inserisci(1);
+        CompletableFuture<Long> errato = inserisci(null); // viola not null
+        CompletableFuture<Long> terzo = inserisci(3);
+
+        assertTrue(primo.get() > 0);
+        assertTrue(terzo.get() > 0);
+        ExecutionException e = assertThrows(ExecutionException.class, errato::get);
+        assertInstanceOf(SQLException.class, e.getCause());
+        assertEquals(2, contaRighe());
+    }
+
+    @Test
+    void testEseguiInserimentoRilanciaSQLException() {
+        assertThrows(SQLException.class, () -> DatabaseManager.eseguiInserimento(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO TabellaInesistente (Valore) VALUES (1)")) {
+                pstmt.executeUpdate();
+                return 0L;
+            }
+        }));
+    }
+
+    @Test
+    void testInserimentiConcorrentiAllaChiusuraVengonoSempreCompletati() throws Exception {
+        ScrittoreDatabase scrittore = new ScrittoreDatabase("jdbc:sqlite:test.sqlite", List.of(), 5000, 16);
+        GroupCommitWriter writer = new GroupCommitWriter(scrittore, 1, 50);
+        List<CompletableFuture<Long>> futures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> produttori = new ArrayList<>();
+        try {
+            // ARRANGE: alcuni thread accodano inserimenti mentre il writer viene chiuso
+            for (int t = 0; t < 4; t++) {
+                Thread produttore = new Thread(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        futures.add(writer.inserisci(conn -> 1L));
+                    }
+                });
+                produttori.add(produttore);
+                produttore.start();
+            }
+
+            // ACT
+            writer.close();
+            for (Thread produttore : produttori) {
+                produttore.join();
+            }
+
+            // ASSERT: ogni future viene completato (con la chiave o con l'errore di chiusura), nessuno resta in attesa
+            for (CompletableFuture<Long> f : futures) {
+                try {
+                    assertEquals(1L, f.get(5, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    assertInstanceOf(SQLException.class, e.getCause());
+                }
+            }
+        } finally {
+            scrittore.close();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.univr.telemedicina.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InsiemeIdTest {
+
+    @Test
+    void testBlocchiSenzaDuplicati() {
+        List<String> blocchi = InsiemeId.blocchi(List.of(3, 1, 3, 2, 5, 4, 1), 2);
+
+        assertEquals(List.of("[3,1]", "[2,5]", "[4]"), blocchi);
+    }
+
+    @Test
+    void testElencoVuotoNessunBlocco() {
+        assertTrue(InsiemeId.blocchi(List.of()).isEmpty());
+        assertEquals(List.of("[7]"), InsiemeId.blocchi(List.of(7)));
+    }
+}
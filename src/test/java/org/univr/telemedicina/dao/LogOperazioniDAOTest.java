@@ -3,7 +3,10 @@ package org.univr.telemedicina.dao;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.univr.telemedicina.model.CursoreLog;
+import org.univr.telemedicina.model.FiltroLog;
 import org.univr.telemedicina.model.LogOperazione;
+import org.univr.telemedicina.model.PaginaLog;
 import org.univr.telemedicina.model.Utente;
 
 import java.sql.Connection;
@@ -11,7 +14,10 @@ import java.sql.Date;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -94,4 +100,62 @@ class LogOperazioniDAOTest {
         assertEquals(1, result.size());
         assertEquals("VISITA", result.get(0).getTipoOperazione());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetPaginaLogScorreTuttaLaCronologia() throws Exception {
+        // ARRANGE: 25 log di cui alcuni con lo stesso timestamp per verificare lo spareggio su idlog
+        LocalDateTime base = LocalDateTime.of(2025, 3, 1, 9, 0, 15);
+        for (int i = 0; i < 25; i++) {
+            LocalDateTime timestamp = base.plusMinutes(i / 3);
+            logOperazioniDAO.createLog(new LogOperazione(medico.getIDUtente(), paziente.getIDUtente(), "PAGINA", "log " + i, timestamp));
+        }
+
+        // ACT: pagine da 10
+        List<LogOperazione> letti = new ArrayList<>();
+        CursoreLog cursore = null;
+        int pagine = 0;
+        do {
+            PaginaLog pagina = logOperazioniDAO.getPaginaLog(FiltroLog.perMedico(medico.getIDUtente()), cursore, 10);
+            letti.addAll(pagina.getLogs());
+            cursore = pagina.getProssimoCursore();
+            pagine++;
+        } while (cursore != null);
+
+        // ASSERT: nessun log perso o ripetuto e ordine dal più recente
+        assertEquals(3, pagine);
+        assertEquals(25, letti.size());
+        Set<Integer> id = new HashSet<>();
+        letti.forEach(l -> id.add(l.getIDLog()));
+        assertEquals(25, id.size());
+        for (int i = 1; i < letti.size(); i++) {
+            LogOperazione precedente = letti.get(i - 1);
+            LogOperazione attuale = letti.get(i);
+            assertFalse(attuale.getTimestamp().isAfter(precedente.getTimestamp()));
+            if (attuale.getTimestamp().equals(precedente.getTimestamp())) {
+                assertTrue(attuale.getIDLog() < precedente.getIDLog());
+            }
+        }
+    }
+
+    @Test
+    void testGetPaginaLogConFiltri() throws Exception {
+        // ARRANGE
+        LocalDateTime base = LocalDateTime.of(2025, 3, 1, 9, 0);
+        logOperazioniDAO.createLog(new LogOperazione(medico.getIDUtente(), paziente.getIDUtente(), "VISITA", "fuori intervallo", base.minusDays(1)));
+        logOperazioniDAO.createLog(new LogOperazione(medico.getIDUtente(), paziente.getIDUtente(), "VISITA", "nell'intervallo", base.plusHours(1)));
+        logOperazioniDAO.createLog(new LogOperazione(medico.getIDUtente(), paziente.getIDUtente(), "TERAPIA", "altro tipo", base.plusHours(2)));
+
+        FiltroLog filtro = FiltroLog.perPaziente(paziente.getIDUtente());
+        filtro.setTipoOperazione("VISITA");
+        filtro.setDa(base);
+        filtro.setA(base.plusDays(1));
+
+        // ACT
+        PaginaLog pagina = logOperazioniDAO.getPaginaLog(filtro, null, 10);
+
+        // ASSERT
+        assertEquals(1, pagina.getLogs().size());
+        assertEquals("nell'intervallo", pagina.getLogs().get(0).getDescrizioneOperazione());
+        assertFalse(pagina.haAltrePagine());
+    }
+}
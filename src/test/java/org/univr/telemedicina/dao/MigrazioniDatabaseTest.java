@@ -0,0 +1,123 @@
+package org.univr.telemedicina.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrazioniDatabaseTest {
+    // database separato da test.sqlite per partire sempre da uno schema vuoto
+    private static final String FILE = "test_migrazioni.sqlite";
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        new File(FILE).delete();
+        conn = DriverManager.getConnection("jdbc:sqlite:" + FILE);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+        new File(FILE).delete();
+    }
+
+    // restituisce il piano di esecuzione di una query come unica stringa
+    private String pianoQuery(String sql) throws SQLException {
+        StringBuilder piano = new StringBuilder();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                piano.append(rs.getString("detail")).append('\n');
+            }
+        }
+        return piano.toString();
+    }
+
+    @Test
+    void testMigrazioniApplicateUnaSolaVolta() throws SQLException {
+        int ultimaVersione = MigrazioniDatabase.MIGRAZIONI.get(MigrazioniDatabase.MIGRAZIONI.size() - 1).getVersione();
+
+        assertEquals(MigrazioniDatabase.MIGRAZIONI.size(), MigrazioniDatabase.applica(conn));
+        assertEquals(ultimaVersione, MigrazioniDatabase.versioneAttuale(conn));
+
+        // una seconda esecuzione non deve fare nulla
+        assertEquals(0, MigrazioniDatabase.applica(conn));
+        assertEquals(ultimaVersione, MigrazioniDatabase.versioneAttuale(conn));
+    }
+
+    @Test
+    void testQueryDeiDaoUsanoGliIndici() throws SQLException {
+        MigrazioniDatabase.applica(conn);
+
+        String pianoNotifiche = pianoQuery("SELECT * FROM Notifiche WHERE IDDestinatario = 1 ORDER BY Letta ASC, Timestamp DESC");
+        assertTrue(pianoNotifiche.contains("idx_notifiche_destinatario"), pianoNotifiche);
+        assertFalse(pianoNotifiche.contains("TEMP B-TREE"), "le notifiche non devono essere ordinate in memoria");
+
+        // lettura incrementale: ricerca per destinatario e id senza ordinamento
+        String pianoNotificheDopo = pianoQuery("SELECT * FROM Notifiche WHERE IDDestinatario = 1 AND IDNotifica > 10 ORDER BY IDNotifica");
+        assertTrue(pianoNotificheDopo.contains("idx_notifiche_destinatario_id (IDDestinatario=? AND IDNotifica>?)"), pianoNotificheDopo);
+        assertFalse(pianoNotificheDopo.contains("TEMP B-TREE"), pianoNotificheDopo);
+
+        // campanello: conteggio delle non lette dall'indice parziale
+        String pianoNonLette = pianoQuery("SELECT COUNT(*), COALESCE(MAX(Priorita), 0) FROM Notifiche WHERE IDDestinatario = 1 AND Letta = 0");
+        assertTrue(pianoNonLette.contains("idx_notifiche_non_lette"), pianoNonLette);
+
+        // pagine dell'elenco: ordinamento letta asc timestamp desc idnotifica desc direttamente dall'indice
+        String pianoPagina = pianoQuery("SELECT * FROM Notifiche WHERE IDDestinatario = 1 AND Letta = 1 AND (Timestamp, IDNotifica) < ('2026-01-01', 5) ORDER BY Letta ASC, Timestamp DESC, IDNotifica DESC LIMIT 21");
+        assertTrue(pianoPagina.contains("idx_notifiche_destinatario"), pianoPagina);
+        assertFalse(pianoPagina.contains("TEMP B-TREE"), pianoPagina);
+
+        String pianoRilevazioni = pianoQuery("SELECT * FROM RilevazioniGlicemia WHERE IDPaziente = 1 ORDER BY Timestamp DESC");
+        assertTrue(pianoRilevazioni.contains("idx_rilevazioni_paziente_timestamp"), pianoRilevazioni);
+        assertFalse(pianoRilevazioni.contains("TEMP B-TREE"));
+
+        String pianoLog = pianoQuery("SELECT * FROM LogOperazioni WHERE IDMedicoOperante = 1 ORDER BY Timestamp DESC");
+        assertTrue(pianoLog.contains("idx_log_medico_timestamp"), pianoLog);
+        assertFalse(pianoLog.contains("TEMP B-TREE"));
+
+        // paginazione con cursore: ricerca nell'indice senza ordinamento anche con lo spareggio su idlog
+        String pianoPaginaLog = pianoQuery("SELECT * FROM LogOperazioni WHERE IDMedicoOperante = 1 " +
+                "AND (Timestamp, IDLog) < ('2025-03-01T09:00', 10) ORDER BY Timestamp DESC, IDLog DESC LIMIT 51");
+        assertTrue(pianoPaginaLog.contains("idx_log_medico_timestamp"), pianoPaginaLog);
+        assertFalse(pianoPaginaLog.contains("TEMP B-TREE"), pianoPaginaLog);
+
+        String pianoAssunzioni = pianoQuery("SELECT COUNT(*) FROM AssunzioniFarmaci WHERE IDPaziente = 1 " +
+                "AND TimestampAssunzione >= '2025-06-11' AND TimestampAssunzione < '2025-06-12'");
+        assertTrue(pianoAssunzioni.contains("COVERING INDEX idx_assunzioni_paziente_timestamp"), pianoAssunzioni);
+
+        // insieme di id passato come array json (insiemeid): ricerca per chiave primaria per ogni id
+        String pianoInsiemeId = pianoQuery("SELECT IDPaziente, SUM(Conteggio) FROM ConteggioAssunzioniGiornaliero " +
+                "WHERE IDPaziente IN (SELECT value FROM json_each('[1,2,3]')) AND Giorno = '2025-06-11' GROUP BY IDPaziente");
+        assertTrue(pianoInsiemeId.contains("SEARCH ConteggioAssunzioniGiornaliero USING PRIMARY KEY"), pianoInsiemeId);
+    }
+
+    @Test
+    void testMigrazioneFallitaVieneAnnullata() throws SQLException {
+        List<MigrazioniDatabase.Migrazione> migrazioni = List.of(
+                new MigrazioniDatabase.Migrazione(1, "tabella di prova", List.of("CREATE TABLE Prova (ID INTEGER)")),
+                new MigrazioniDatabase.Migrazione(2, "migrazione errata", List.of(
+                        "CREATE TABLE ProvaDue (ID INTEGER)",
+                        "QUESTA NON È SQL"))
+        );
+
+        assertThrows(SQLException.class, () -> MigrazioniDatabase.applica(conn, migrazioni));
+
+        // la prima migrazione resta applicata la seconda è stata annullata per intero
+        assertEquals(1, MigrazioniDatabase.versioneAttuale(conn));
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE name = 'ProvaDue'")) {
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+        assertTrue(conn.getAutoCommit());
+    }
+}
@@ -5,13 +5,17 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.univr.telemedicina.exception.DataAccessException;
 import org.univr.telemedicina.model.Notifica;
+import org.univr.telemedicina.model.PaginaNotifiche;
+import org.univr.telemedicina.model.RiepilogoNonLette;
 import org.univr.telemedicina.model.Utente;
 
 import java.sql.Connection;
 import java.sql.Date;
+import java.sql.ResultSet;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -71,8 +75,10 @@ class NotificheDAOTest {
 
         // --- ACT 2: Imposta le notifiche di utente1 come lette ---
         for (Notifica n : notificheUtente1) {
-            notificheDAO.setNotificaLetta(n.getIdNotifica());
+            // restituisce il destinatario per avvisare i suoi ascoltatori
+            assertEquals(utente1.getIDUtente(), notificheDAO.setNotificaLetta(n.getIdNotifica()));
         }
+        assertEquals(0, notificheDAO.setNotificaLetta(-1));
 
         // --- ASSERT 2: Verifica che le notifiche di utente1 siano state segnate come lette ---
         List<Notifica> notificheLetteUtente1 = notificheDAO.leggiNotifichePerId(utente1.getIDUtente());
@@ -86,4 +92,211 @@ class NotificheDAOTest {
         assertEquals(1, notificheUtente2.size(), "Le notifiche di Utente2 non dovevano essere modificate.");
         assertEquals("Benvenuto!", notificheUtente2.get(0).getTitolo());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testInserisciNotificheInBlocco() throws DataAccessException {
+        // ARRANGE: una notifica singola prima del blocco
+        notificheDAO.inserisciNotifica(new Notifica(utente2.getIDUtente(), 1, "Benvenuto!", "Ciao", "INFO", LocalDateTime.now()));
+        List<Notifica> blocco = List.of(
+                new Notifica(utente1.getIDUtente(), 2, "Aderenza", "Paziente uno", "TERAPIA", LocalDateTime.now()),
+                new Notifica(utente1.getIDUtente(), 2, "Aderenza", "Paziente due", "TERAPIA", LocalDateTime.now()),
+                new Notifica(utente2.getIDUtente(), 2, "Aderenza", "Paziente tre", "TERAPIA", LocalDateTime.now()));
+
+        // ACT
+        List<Integer> ids = notificheDAO.inserisciNotifiche(blocco);
+
+        // ASSERT: gli id restituiti sono quelli delle righe nel db nello stesso ordine
+        assertTrue(notificheDAO.inserisciNotifiche(List.of()).isEmpty());
+        assertEquals(3, ids.size());
+        for (int i = 0; i < blocco.size(); i++) {
+            assertEquals(ids.get(i).intValue(), blocco.get(i).getIdNotifica());
+        }
+        List<Notifica> notificheUtente1 = notificheDAO.leggiNotifichePerId(utente1.getIDUtente());
+        assertEquals(2, notificheUtente1.size());
+        for (Notifica letta : notificheUtente1) {
+            int posizione = ids.indexOf(letta.getIdNotifica());
+            assertTrue(posizione >= 0);
+            assertEquals(blocco.get(posizione).getMessaggio(), letta.getMessaggio());
+        }
+        List<Notifica> notificheUtente2 = notificheDAO.leggiNotifichePerId(utente2.getIDUtente());
+        assertEquals(2, notificheUtente2.size());
+        assertTrue(notificheUtente2.stream().anyMatch(n -> n.getIdNotifica() == ids.get(2) && n.getMessaggio().equals("Paziente tre")));
+    }
+
+    @Test
+    void testInserisciPromemoria_RipetizioneAggiornaLaStessaRiga() throws Exception {
+        LocalDate oggi = LocalDate.now();
+        LocalDateTime primoControllo = oggi.atTime(14, 0);
+
+        // ACT: tre controlli orari nel pomeriggio e uno di sera per lo stesso paziente
+        notificheDAO.inserisciPromemoria(List.of(new Notifica(utente1.getIDUtente(), 1, "assunzioni farmaci incompleta", "controllo delle 14", "assunzioni farmaci", primoControllo)), oggi, 1);
+        notificheDAO.inserisciPromemoria(List.of(
+                new Notifica(utente1.getIDUtente(), 1, "assunzioni farmaci incompleta", "controllo delle 15", "assunzioni farmaci", primoControllo.plusHours(1)),
+                new Notifica(utente2.getIDUtente(), 1, "assunzioni farmaci incompleta", "controllo delle 15", "assunzioni farmaci", primoControllo.plusHours(1))), oggi, 1);
+        notificheDAO.inserisciPromemoria(List.of(new Notifica(utente1.getIDUtente(), 1, "assunzioni farmaci incompleta", "controllo delle 16", "assunzioni farmaci", primoControllo.plusHours(2))), oggi, 1);
+        notificheDAO.inserisciPromemoria(List.of(new Notifica(utente1.getIDUtente(), 1, "assunzioni farmaci incompleta", "controllo delle 18", "assunzioni farmaci", primoControllo.plusHours(4))), oggi, 2);
+        // una notifica normale dello stesso tipo non è coinvolta
+        notificheDAO.inserisciNotifica(new Notifica(utente1.getIDUtente(), 1, "assunzioni farmaci incompleta", "notifica normale", "assunzioni farmaci", primoControllo));
+
+        // ASSERT: un promemoria per livello con l'ultimo messaggio
+        List<Notifica> notificheUtente1 = notificheDAO.leggiNotifichePerId(utente1.getIDUtente());
+        assertEquals(3, notificheUtente1.size());
+        assertTrue(notificheUtente1.stream().anyMatch(n -> n.getMessaggio().equals("controllo delle 16") && n.getTimestamp().equals(primoControllo.plusHours(2))));
+        assertTrue(notificheUtente1.stream().anyMatch(n -> n.getMessaggio().equals("controllo delle 18")));
+        assertTrue(notificheUtente1.stream().noneMatch(n -> n.getMessaggio().equals("controllo delle 14")));
+        assertEquals(1, notificheDAO.leggiNotifichePerId(utente2.getIDUtente()).size());
+
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT Ripetizioni FROM Notifiche WHERE IDDestinatario = " + utente1.getIDUtente() + " AND Livello = 1")) {
+            assertTrue(rs.next());
+            assertEquals(3, rs.getInt(1));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    void testInserisciPromemoria_SollecitoDopoLaLetturaTornaNonLetto() throws DataAccessException {
+        LocalDate oggi = LocalDate.now();
+        LocalDateTime controllo = oggi.atTime(14, 0);
+        notificheDAO.inserisciPromemoria(List.of(new Notifica(utente1.getIDUtente(), 1, "assunzioni farmaci incompleta", "controllo delle 14", "assunzioni farmaci", controllo)), oggi, 1);
+        int idPromemoria = notificheDAO.leggiNotifichePerId(utente1.getIDUtente()).get(0).getIdNotifica();
+        notificheDAO.setNotificaLetta(idPromemoria);
+
+        // ACT + ASSERT: la stessa ripetizione resta letta
+        notificheDAO.inserisciPromemoria(List.of(new Notifica(utente1.getIDUtente(), 1, "assunzioni farmaci incompleta", "controllo delle 14", "assunzioni farmaci", controllo)), oggi, 1);
+        assertEquals(0, notificheDAO.getUnreadSummary(utente1.getIDUtente()).getNumero());
+
+        // un sollecito con un nuovo messaggio torna tra le non lette
+        notificheDAO.inserisciPromemoria(List.of(new Notifica(utente1.getIDUtente(), 1, "assunzioni farmaci incompleta", "controllo delle 15", "assunzioni farmaci", controllo.plusHours(1))), oggi, 1);
+        assertEquals(1, notificheDAO.getUnreadSummary(utente1.getIDUtente()).getNumero());
+        notificheDAO.setNotificaLetta(idPromemoria);
+
+        // il sollecito serale di livello 2 compare come non letto
+        notificheDAO.inserisciPromemoria(List.of(new Notifica(utente1.getIDUtente(), 2, "assunzioni farmaci incompleta", "controllo delle 18", "assunzioni farmaci", controllo.plusHours(4))), oggi, 2);
+        RiepilogoNonLette riepilogo = notificheDAO.getUnreadSummary(utente1.getIDUtente());
+        assertEquals(1, riepilogo.getNumero());
+        assertEquals(2, riepilogo.getPrioritaMassima());
+    }
+
+    @Test
+    void testLeggiNotificheDopo_SoloLeNuove() throws DataAccessException {
+        // ARRANGE
+        List<Integer> ids = notificheDAO.inserisciNotifiche(List.of(
+                new Notifica(utente1.getIDUtente(), 1, "Prima", "uno", "INFO", LocalDateTime.now().minusHours(2)),
+                new Notifica(utente2.getIDUtente(), 1, "Altro utente", "due", "INFO", LocalDateTime.now()),
+                new Notifica(utente1.getIDUtente(), 2, "Seconda", "tre", "INFO", LocalDateTime.now().minusHours(1))));
+
+        // ACT + ASSERT: la prima lettura restituisce tutto in ordine di id
+        List<Notifica> tutte = notificheDAO.leggiNotificheDopo(utente1.getIDUtente(), 0, 20);
+        assertEquals(2, tutte.size());
+        assertEquals(ids.get(0).intValue(), tutte.get(0).getIdNotifica());
+        assertEquals(ids.get(2).intValue(), tutte.get(1).getIdNotifica());
+
+        // le letture successive restituiscono solo le notifiche dopo l'ultima vista
+        assertTrue(notificheDAO.leggiNotificheDopo(utente1.getIDUtente(), ids.get(2), 20).isEmpty());
+        notificheDAO.inserisciNotifica(new Notifica(utente1.getIDUtente(), 3, "Terza", "quattro", "INFO", LocalDateTime.now()));
+        List<Notifica> nuove = notificheDAO.leggiNotificheDopo(utente1.getIDUtente(), ids.get(2), 20);
+        assertEquals(1, nuove.size());
+        assertEquals("Terza", nuove.get(0).getTitolo());
+    }
+
+    @Test
+    void testGetUnreadSummaryESegnaLette() throws DataAccessException {
+        // ARRANGE
+        List<Integer> ids = notificheDAO.inserisciNotifiche(List.of(
+                new Notifica(utente1.getIDUtente(), 1, "Bassa", "uno", "INFO", LocalDateTime.now()),
+                new Notifica(utente1.getIDUtente(), 3, "Alta", "due", "INFO", LocalDateTime.now()),
+                new Notifica(utente1.getIDUtente(), 2, "Media", "tre", "INFO", LocalDateTime.now()),
+                new Notifica(utente2.getIDUtente(), 3, "Altro utente", "quattro", "INFO", LocalDateTime.now())));
+        notificheDAO.setNotificaLetta(ids.get(1));
+
+        // ACT + ASSERT: la notifica già letta non conta nel riepilogo
+        RiepilogoNonLette riepilogo = notificheDAO.getUnreadSummary(utente1.getIDUtente());
+        assertEquals(2, riepilogo.getNumero());
+        assertEquals(2, riepilogo.getPrioritaMassima());
+        assertEquals(ids.get(2).intValue(), riepilogo.getUltimoIdNotifica());
+        assertTrue(riepilogo.haNonLette());
+
+        // segnaLette aggiorna solo le non lette mostrate che appartengono al destinatario
+        assertEquals(1, notificheDAO.segnaLette(utente1.getIDUtente(), List.of(ids.get(0), ids.get(1), ids.get(3))));
+        RiepilogoNonLette rimaste = notificheDAO.getUnreadSummary(utente1.getIDUtente());
+        assertEquals(1, rimaste.getNumero());
+        assertEquals(2, rimaste.getPrioritaMassima());
+        assertEquals(1, notificheDAO.getUnreadSummary(utente2.getIDUtente()).getNumero());
+        assertEquals(0, notificheDAO.segnaLette(utente1.getIDUtente(), List.of()));
+
+        assertEquals(1, notificheDAO.segnaLette(utente1.getIDUtente(), List.of(ids.get(2))));
+        RiepilogoNonLette vuoto = notificheDAO.getUnreadSummary(utente1.getIDUtente());
+        assertEquals(0, vuoto.getNumero());
+        assertEquals(0, vuoto.getPrioritaMassima());
+        // l'ultimo id considera anche le notifiche già lette
+        assertEquals(ids.get(2).intValue(), vuoto.getUltimoIdNotifica());
+        assertFalse(vuoto.haNonLette());
+    }
+
+    @Test
+    void testLeggiNotificheDopo_UltimoIdDalRiepilogoConPiuNonLetteDellaPagina() throws DataAccessException {
+        // ARRANGE: 25 non lette vecchie e 3 notifiche più recenti già lette
+        List<Notifica> vecchie = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            vecchie.add(new Notifica(utente1.getIDUtente(), 1, "Vecchia " + i, "msg", "INFO", LocalDateTime.now().minusDays(2).plusMinutes(i)));
+        }
+        notificheDAO.inserisciNotifiche(vecchie);
+        List<Integer> recenti = notificheDAO.inserisciNotifiche(List.of(
+                new Notifica(utente1.getIDUtente(), 1, "Recente 1", "msg", "INFO", LocalDateTime.now().minusMinutes(3)),
+                new Notifica(utente1.getIDUtente(), 1, "Recente 2", "msg", "INFO", LocalDateTime.now().minusMinutes(2)),
+                new Notifica(utente1.getIDUtente(), 1, "Recente 3", "msg", "INFO", LocalDateTime.now().minusMinutes(1))));
+        for (int id : recenti) {
+            notificheDAO.setNotificaLetta(id);
+        }
+
+        // la prima pagina contiene solo non lette, tutte con id inferiori alle lette recenti
+        List<Notifica> primaPagina = notificheDAO.getPaginaNotifiche(utente1.getIDUtente(), null, 20).getNotifiche();
+        assertEquals(20, primaPagina.size());
+        assertTrue(primaPagina.stream().allMatch(n -> n.getLetta() == 0 && n.getIdNotifica() < recenti.get(0)));
+
+        // ACT: l'ultimo id viene dal riepilogo, non dalla pagina
+        int ultimoId = notificheDAO.getUnreadSummary(utente1.getIDUtente()).getUltimoIdNotifica();
+
+        // ASSERT
+        assertEquals(recenti.get(2).intValue(), ultimoId);
+        assertTrue(notificheDAO.leggiNotificheDopo(utente1.getIDUtente(), ultimoId, 20).isEmpty());
+        // la lettura incrementale rispetta il limite
+        assertEquals(20, notificheDAO.leggiNotificheDopo(utente1.getIDUtente(), 0, 20).size());
+    }
+
+    @Test
+    void testGetPaginaNotifiche_NonLettePrimaPoiLette() throws DataAccessException {
+        // ARRANGE: tre non lette e due lette con timestamp diversi
+        LocalDateTime adesso = LocalDateTime.now().withNano(0);
+        List<Integer> ids = notificheDAO.inserisciNotifiche(List.of(
+                new Notifica(utente1.getIDUtente(), 1, "Letta vecchia", "a", "INFO", adesso.minusHours(5)),
+                new Notifica(utente1.getIDUtente(), 1, "Non letta vecchia", "b", "INFO", adesso.minusHours(4)),
+                new Notifica(utente1.getIDUtente(), 1, "Letta recente", "c", "INFO", adesso.minusHours(1)),
+                new Notifica(utente1.getIDUtente(), 1, "Non letta media", "d", "INFO", adesso.minusHours(2)),
+                new Notifica(utente1.getIDUtente(), 1, "Non letta recente", "e", "INFO", adesso),
+                new Notifica(utente2.getIDUtente(), 1, "Altro utente", "f", "INFO", adesso)));
+        notificheDAO.setNotificaLetta(ids.get(0));
+        notificheDAO.setNotificaLetta(ids.get(2));
+
+        // ACT: pagine da due elementi fino alla fine dell'elenco
+        PaginaNotifiche prima = notificheDAO.getPaginaNotifiche(utente1.getIDUtente(), null, 2);
+        PaginaNotifiche seconda = notificheDAO.getPaginaNotifiche(utente1.getIDUtente(), prima.getProssimoCursore(), 2);
+        PaginaNotifiche terza = notificheDAO.getPaginaNotifiche(utente1.getIDUtente(), seconda.getProssimoCursore(), 2);
+
+        // ASSERT: la seconda pagina attraversa il confine tra non lette e lette
+        assertEquals(List.of("Non letta recente", "Non letta media"), prima.getNotifiche().stream().map(Notifica::getTitolo).toList());
+        assertTrue(prima.haAltrePagine());
+        assertEquals(List.of("Non letta vecchia", "Letta recente"), seconda.getNotifiche().stream().map(Notifica::getTitolo).toList());
+        assertTrue(seconda.haAltrePagine());
+        assertEquals(List.of("Letta vecchia"), terza.getNotifiche().stream().map(Notifica::getTitolo).toList());
+        assertFalse(terza.haAltrePagine());
+        assertNull(terza.getProssimoCursore());
+    }
+
+    @Test
+    void testGetPaginaNotifiche_DimensioneNonValida() {
+        assertThrows(IllegalArgumentException.class, () -> notificheDAO.getPaginaNotifiche(utente1.getIDUtente(), null, 0));
+    }
+}
@@ -3,13 +3,16 @@ package org.univr.telemedicina.dao;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.univr.telemedicina.model.ContattoPaziente;
 import org.univr.telemedicina.model.Paziente;
+import org.univr.telemedicina.model.PazienteSummary;
 import org.univr.telemedicina.model.Utente;
 
 import java.sql.Connection;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -87,4 +90,41 @@ class PazientiDAOTest {
         // ASSERT
         assertEquals("Paziente Pazienti", nomeCompleto);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFindSummaryByMedIdEFindPazienteById() throws Exception {
+        // ARRANGE
+        pazientiDAO.create(new Paziente(paziente.getIDUtente(), medico.getIDUtente()));
+
+        // ACT
+        List<PazienteSummary> result = pazientiDAO.findSummaryByMedId(medico.getIDUtente());
+        Optional<Utente> completo = pazientiDAO.findPazienteById(paziente.getIDUtente());
+
+        // ASSERT
+        assertEquals(1, result.size());
+        PazienteSummary summary = result.get(0);
+        assertEquals(paziente.getIDUtente(), summary.getIDPaziente());
+        assertEquals("Paziente", summary.getNome());
+        assertEquals("Pazienti", summary.getCognome());
+        assertEquals(paziente.getDataNascita(), summary.getDataNascita());
+        assertTrue(completo.isPresent());
+        assertEquals("paziente.pazienti@email.com", completo.get().getEmail());
+        // il medico non è un paziente
+        assertTrue(pazientiDAO.findPazienteById(medico.getIDUtente()).isEmpty());
+    }
+
+    @Test
+    void testFindContattiByIds() throws Exception {
+        // ARRANGE
+        pazientiDAO.create(new Paziente(paziente.getIDUtente(), medico.getIDUtente()));
+
+        // ACT: il medico non è un paziente e non compare
+        Map<Integer, ContattoPaziente> contatti = pazientiDAO.findContattiByIds(List.of(paziente.getIDUtente(), medico.getIDUtente()));
+
+        // ASSERT
+        assertEquals(1, contatti.size());
+        ContattoPaziente contatto = contatti.get(paziente.getIDUtente());
+        assertEquals(medico.getIDUtente(), contatto.getIDMedicoRiferimento());
+        assertEquals("Paziente Pazienti", contatto.getNome());
+    }
+}
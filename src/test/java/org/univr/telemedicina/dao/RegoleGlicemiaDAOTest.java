@@ -0,0 +1,62 @@
+package org.univr.telemedicina.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.univr.telemedicina.model.MomentoPasto;
+import org.univr.telemedicina.model.RegolaGlicemia;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegoleGlicemiaDAOTest {
+
+    private RegoleGlicemiaDAO regoleGlicemiaDAO;
+
+    @BeforeEach
+    void setUp() {
+        DatabaseManager.setURL("jdbc:sqlite:test.sqlite");
+        regoleGlicemiaDAO = new RegoleGlicemiaDAO();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // le regole predefinite inserite dalla migrazione restano
+        try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM RegoleGlicemia WHERE IDPaziente IS NOT NULL");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Test
+    void testRegolePredefiniteDellaMigrazione() throws Exception {
+        List<RegolaGlicemia> regole = regoleGlicemiaDAO.leggiRegole();
+
+        assertEquals(MomentoPasto.values().length, regole.size());
+        RegolaGlicemia primaColazione = regole.stream().filter(r -> r.getMomento() == MomentoPasto.PRIMA_COLAZIONE).findFirst().orElseThrow();
+        assertNull(primaColazione.getIDPaziente());
+        assertEquals(80, primaColazione.getMinimo());
+        assertEquals(130, primaColazione.getMassimo());
+    }
+
+    @Test
+    void testImpostaERimuoviRegolaPaziente() throws Exception {
+        // ACT: la seconda regola per lo stesso momento sostituisce la prima
+        regoleGlicemiaDAO.impostaRegolaPaziente(new RegolaGlicemia(42, MomentoPasto.DOPO_CENA, 70, 200, 2));
+        regoleGlicemiaDAO.impostaRegolaPaziente(new RegolaGlicemia(42, MomentoPasto.DOPO_CENA, 70, 160, 2));
+        List<RegolaGlicemia> regole = regoleGlicemiaDAO.leggiRegole();
+
+        // ASSERT: le predefinite vengono lette per prime
+        assertEquals(MomentoPasto.values().length + 1, regole.size());
+        RegolaGlicemia ultima = regole.get(regole.size() - 1);
+        assertEquals(42, ultima.getIDPaziente());
+        assertEquals(160, ultima.getMassimo());
+
+        regoleGlicemiaDAO.rimuoviRegolePaziente(42);
+        assertEquals(MomentoPasto.values().length, regoleGlicemiaDAO.leggiRegole().size());
+    }
+}
@@ -3,7 +3,12 @@ package org.univr.telemedicina.dao;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.univr.telemedicina.model.AggregatoGlicemia;
+import org.univr.telemedicina.model.MomentoPasto;
+import org.univr.telemedicina.model.RegolaGlicemia;
+import org.univr.telemedicina.model.RiepilogoGlicemiaGiornaliero;
 import org.univr.telemedicina.model.RilevazioneGlicemia;
+import org.univr.telemedicina.model.RisoluzioneGlicemia;
 import org.univr.telemedicina.model.Utente;
 
 import java.sql.Connection;
@@ -11,7 +16,11 @@ import java.sql.Date;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -33,6 +42,7 @@ class RilevazioneGlicemiaDAOTest {
     void tearDown() {
         try (Connection conn = DatabaseManager.getConnection(); Statement stmt = conn.createStatement()) {
             stmt.execute("DELETE FROM RilevazioniGlicemia");
+            stmt.execute("DELETE FROM RiepilogoGlicemiaGiornaliero");
             stmt.execute("DELETE FROM Utenti");
         } catch (Exception e) {
             e.printStackTrace();
@@ -66,4 +76,174 @@ class RilevazioneGlicemiaDAOTest {
         // Confronta ignorando i nanosecondi per evitare problemi di precisione del DB
         assertEquals(now.withNano(0), result.get(0).getTimestamp().withNano(0));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCreateBatch() throws Exception {
+        // ARRANGE
+        LocalDateTime inizio = LocalDateTime.now().withNano(0).minusDays(1);
+        List<RilevazioneGlicemia> rilevazioni = new ArrayList<>();
+        for (int i = 0; i < 288; i++) {
+            rilevazioni.add(new RilevazioneGlicemia(paziente.getIDUtente(), 90 + i % 40, inizio.plusMinutes(5L * i), "Sensore"));
+        }
+
+        // ACT
+        int inserite = rilevazioneGlicemiaDAO.createBatch(rilevazioni);
+        List<RilevazioneGlicemia> result = rilevazioneGlicemiaDAO.getRilevazioniByPaziente(paziente.getIDUtente());
+
+        // ASSERT
+        assertEquals(288, inserite);
+        assertEquals(288, result.size());
+        assertEquals(inizio.plusMinutes(5L * 287), result.get(0).getTimestamp());
+    }
+
+    @Test
+    void testStreamRilevazioniRilasciaLaConnessione() throws Exception {
+        // ARRANGE
+        LocalDateTime base = LocalDateTime.of(2025, 5, 1, 8, 0);
+        List<RilevazioneGlicemia> rilevazioni = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            rilevazioni.add(new RilevazioneGlicemia(paziente.getIDUtente(), 90 + i % 50, base.plusMinutes(5L * i), null));
+        }
+        rilevazioneGlicemiaDAO.createBatch(rilevazioni);
+        int attivePrima = DatabaseManager.getPoolMetrics().getAttive();
+
+        // ACT: lettura parziale con chiusura esplicita
+        List<RilevazioneGlicemia> prime;
+        try (Stream<RilevazioneGlicemia> stream = rilevazioneGlicemiaDAO.streamRilevazioniByPaziente(paziente.getIDUtente(), 50)) {
+            assertEquals(attivePrima + 1, DatabaseManager.getPoolMetrics().getAttive());
+            prime = stream.limit(10).collect(Collectors.toList());
+        }
+
+        // ASSERT: le più recenti per prime e connessione restituita al pool
+        assertEquals(10, prime.size());
+        assertEquals(base.plusMinutes(5L * 499), prime.get(0).getTimestamp());
+        assertEquals(attivePrima, DatabaseManager.getPoolMetrics().getAttive());
+
+        // una lettura completa chiude il cursore anche senza try-with-resources
+        long totale = rilevazioneGlicemiaDAO.streamRilevazioniByPaziente(paziente.getIDUtente(), 0).count();
+        assertEquals(500, totale);
+        assertEquals(attivePrima, DatabaseManager.getPoolMetrics().getAttive());
+    }
+
+    @Test
+    void testForEachRilevazioneByPaziente() throws Exception {
+        // ARRANGE
+        LocalDateTime now = LocalDateTime.now();
+        rilevazioneGlicemiaDAO.create(new RilevazioneGlicemia(paziente.getIDUtente(), 100, now, "Prima colazione"));
+        rilevazioneGlicemiaDAO.create(new RilevazioneGlicemia(paziente.getIDUtente(), 200, now.minusHours(1), "Dopo pranzo"));
+        AtomicInteger somma = new AtomicInteger();
+
+        // ACT
+        int lette = rilevazioneGlicemiaDAO.forEachRilevazioneByPaziente(paziente.getIDUtente(), 100, r -> somma.addAndGet(r.getValore()));
+
+        // ASSERT
+        assertEquals(2, lette);
+        assertEquals(300, somma.get());
+    }
+
+    @Test
+    void testRilevazioniInIntervalloEUltime() throws Exception {
+        // ARRANGE: una rilevazione al giorno dal 1 al 10 marzo
+        LocalDateTime base = LocalDateTime.of(2025, 3, 1, 8, 30);
+        List<RilevazioneGlicemia> rilevazioni = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rilevazioni.add(new RilevazioneGlicemia(paziente.getIDUtente(), 100 + i, base.plusDays(i), null));
+        }
+        rilevazioneGlicemiaDAO.createBatch(rilevazioni);
+
+        // ACT
+        List<RilevazioneGlicemia> intervallo = rilevazioneGlicemiaDAO.getRilevazioniByPazienteInIntervallo(paziente.getIDUtente(),
+                LocalDateTime.of(2025, 3, 3, 0, 0), LocalDateTime.of(2025, 3, 6, 0, 0));
+        List<RilevazioneGlicemia> ultime = rilevazioneGlicemiaDAO.getUltimeRilevazioniByPaziente(paziente.getIDUtente(), 3);
+
+        // ASSERT: 3, 4 e 5 marzo dalla più recente
+        assertEquals(3, intervallo.size());
+        assertEquals(104, intervallo.get(0).getValore());
+        assertEquals(102, intervallo.get(2).getValore());
+        assertEquals(3, ultime.size());
+        assertEquals(109, ultime.get(0).getValore());
+        assertEquals(107, ultime.get(2).getValore());
+    }
+
+    @Test
+    void testGetAggregatiByPaziente() throws Exception {
+        // ARRANGE: due giorni con una rilevazione ogni 15 minuti
+        LocalDateTime base = LocalDateTime.of(2025, 4, 1, 0, 0);
+        List<RilevazioneGlicemia> rilevazioni = new ArrayList<>();
+        for (int i = 0; i < 2 * 96; i++) {
+            rilevazioni.add(new RilevazioneGlicemia(paziente.getIDUtente(), 100 + i % 4 * 10, base.plusMinutes(15L * i), null));
+        }
+        rilevazioneGlicemiaDAO.createBatch(rilevazioni);
+
+        // ACT
+        List<AggregatoGlicemia> giorni = rilevazioneGlicemiaDAO.getAggregatiByPaziente(paziente.getIDUtente(), base, base.plusDays(2), RisoluzioneGlicemia.GIORNO);
+        List<AggregatoGlicemia> ore = rilevazioneGlicemiaDAO.getAggregatiByPaziente(paziente.getIDUtente(), base, base.plusDays(1), RisoluzioneGlicemia.ORA);
+
+        // ASSERT
+        assertEquals(2, giorni.size());
+        assertEquals(base, giorni.get(0).getInizio());
+        assertEquals(96, giorni.get(0).getNumeroRilevazioni());
+        assertEquals(100, giorni.get(0).getMinimo());
+        assertEquals(130, giorni.get(0).getMassimo());
+        assertEquals(115.0, giorni.get(0).getMedia(), 0.001);
+
+        assertEquals(24, ore.size());
+        assertEquals(base.plusHours(23), ore.get(23).getInizio());
+        assertEquals(4, ore.get(23).getNumeroRilevazioni());
+    }
+
+    @Test
+    void testRiepilogoGiornalieroAggiornatoEDRicostruito() throws Exception {
+        // ARRANGE
+        LocalDateTime giorno1 = LocalDateTime.of(2025, 6, 10, 7, 30);
+        LocalDateTime giorno2 = LocalDateTime.of(2025, 6, 11, 7, 30);
+        rilevazioneGlicemiaDAO.create(new RilevazioneGlicemia(paziente.getIDUtente(), 140, giorno1, "Prima colazione")); // fuori (prima dei pasti)
+        rilevazioneGlicemiaDAO.create(new RilevazioneGlicemia(paziente.getIDUtente(), 160, giorno1.plusHours(5), "Dopo pranzo"));
+        rilevazioneGlicemiaDAO.createBatch(List.of(
+                new RilevazioneGlicemia(paziente.getIDUtente(), 60, giorno1.plusHours(12), null), // fuori
+                new RilevazioneGlicemia(paziente.getIDUtente(), 100, giorno2, "Prima colazione")
+        ));
+
+        // ACT
+        List<RiepilogoGlicemiaGiornaliero> riepilogo = rilevazioneGlicemiaDAO.getRiepilogoGiornaliero(paziente.getIDUtente(),
+                giorno1.toLocalDate(), giorno2.toLocalDate());
+
+        // ASSERT
+        assertEquals(2, riepilogo.size());
+        RiepilogoGlicemiaGiornaliero primo = riepilogo.get(0);
+        assertEquals(giorno1.toLocalDate(), primo.getGiorno());
+        assertEquals(3, primo.getNumeroRilevazioni());
+        assertEquals(120.0, primo.getMedia(), 0.001);
+        assertEquals(60, primo.getMinimo());
+        assertEquals(160, primo.getMassimo());
+        assertEquals(2, primo.getFuoriIntervallo());
+        assertEquals(0, riepilogo.get(1).getFuoriIntervallo());
+
+        // la ricostruzione produce lo stesso risultato dell'aggiornamento incrementale
+        assertEquals(2, rilevazioneGlicemiaDAO.ricostruisciRiepilogoGiornaliero());
+        List<RiepilogoGlicemiaGiornaliero> ricostruito = rilevazioneGlicemiaDAO.getRiepilogoGiornaliero(paziente.getIDUtente(),
+                giorno1.toLocalDate(), giorno2.toLocalDate());
+        assertEquals(3, ricostruito.get(0).getNumeroRilevazioni());
+        assertEquals(120.0, ricostruito.get(0).getMedia(), 0.001);
+        assertEquals(2, ricostruito.get(0).getFuoriIntervallo());
+    }
+
+    @Test
+    void testRiepilogoGiornalieroUsaLaRegolaDelPaziente() throws Exception {
+        // ARRANGE: il medico restringe l'intervallo dopo pranzo del paziente
+        RegoleGlicemiaDAO regoleGlicemiaDAO = new RegoleGlicemiaDAO();
+        regoleGlicemiaDAO.impostaRegolaPaziente(new RegolaGlicemia(paziente.getIDUtente(), MomentoPasto.DOPO_PRANZO, 80, 150, 2));
+        try {
+            LocalDateTime giorno = LocalDateTime.of(2025, 6, 12, 13, 30);
+            rilevazioneGlicemiaDAO.create(new RilevazioneGlicemia(paziente.getIDUtente(), 160, giorno, "Dopo pranzo")); // fuori per la regola del paziente
+            rilevazioneGlicemiaDAO.create(new RilevazioneGlicemia(paziente.getIDUtente(), 160, giorno.plusHours(7), "Dopo cena")); // nella regola predefinita
+
+            // ACT + ASSERT: lo stesso conteggio degli avvisi del motore delle regole, anche dopo la ricostruzione
+            assertEquals(1, rilevazioneGlicemiaDAO.getRiepilogoGiornaliero(paziente.getIDUtente(), giorno.toLocalDate(), giorno.toLocalDate()).get(0).getFuoriIntervallo());
+            rilevazioneGlicemiaDAO.ricostruisciRiepilogoGiornaliero();
+            assertEquals(1, rilevazioneGlicemiaDAO.getRiepilogoGiornaliero(paziente.getIDUtente(), giorno.toLocalDate(), giorno.toLocalDate()).get(0).getFuoriIntervallo());
+        } finally {
+            regoleGlicemiaDAO.rimuoviRegolePaziente(paziente.getIDUtente());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.univr.telemedicina.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementCacheTest {
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        // una sola connessione così tutte le richieste usano la stessa cache
+        pool = new ConnectionPool("jdbc:sqlite:test.sqlite", 1, 200, List.of("PRAGMA busy_timeout=1000"), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    private int eseguiSelect(Connection conn, String sql, int valore) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, valore);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    @Test
+    void testStessaQueryVieneRiutilizzata() throws SQLException {
+        // ACT: la stessa query eseguita su due prestiti diversi della connessione
+        try (Connection conn = pool.borrow()) {
+            assertEquals(1, eseguiSelect(conn, "SELECT ? + 0", 1));
+        }
+        try (Connection conn = pool.borrow()) {
+            assertEquals(2, eseguiSelect(conn, "SELECT ? + 0", 2));
+        }
+
+        // ASSERT: compilata una volta e riusata una volta
+        PoolMetrics metrics = pool.metrics();
+        assertEquals(1, metrics.getCacheMiss());
+        assertEquals(1, metrics.getCacheHit());
+    }
+
+    @Test
+    void testResultSetNonChiusoVieneChiusoAllaRestituzione() throws SQLException {
+        try (Connection conn = pool.borrow()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT ? + 0");
+            ps.setInt(1, 5);
+            ResultSet rs = ps.executeQuery();
+            ps.close();
+
+            assertTrue(ps.isClosed());
+            assertTrue(rs.isClosed(), "chiudendo lo statement in cache si chiude anche il resultset");
+            assertThrows(SQLException.class, ps::executeQuery);
+
+            // lo statement ripulito è di nuovo utilizzabile
+            assertEquals(7, eseguiSelect(conn, "SELECT ? + 0", 7));
+        }
+    }
+
+    @Test
+    void testQueryGiaInUsoUsaUnoStatementSeparato() throws SQLException {
+        try (Connection conn = pool.borrow();
+             PreparedStatement esterno = conn.prepareStatement("SELECT ? + 0")) {
+            esterno.setInt(1, 1);
+            try (ResultSet rs = esterno.executeQuery()) {
+                // una chiamata annidata con la stessa query non deve toccare lo statement esterno
+                assertEquals(3, eseguiSelect(conn, "SELECT ? + 0", 3));
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void testCachePienaEspelleLoStatementMenoRecente() throws SQLException {
+        try (Connection conn = pool.borrow()) {
+            eseguiSelect(conn, "SELECT ? + 1", 0);
+            eseguiSelect(conn, "SELECT ? + 2", 0);
+            eseguiSelect(conn, "SELECT ? + 3", 0);
+            // la prima query è stata espulsa e va ricompilata
+            assertEquals(1, eseguiSelect(conn, "SELECT ? + 1", 0));
+        }
+
+        PoolMetrics metrics = pool.metrics();
+        assertEquals(4, metrics.getCacheMiss());
+        assertEquals(2, metrics.getCacheEspulsioni());
+    }
+}
@@ -90,6 +90,23 @@ class MonitorServiceIntegrationTest {
         assertTrue(notifiche.isEmpty());
     }
 
+    @Test
+    void testCheckGlicemiaUsaSubitoLaRegolaModificataDalMedico() throws DataAccessException {
+        RegoleGlicemiaDAO regoleGlicemiaDAO = new RegoleGlicemiaDAO();
+        try {
+            // con la regola predefinita 170 dopo cena è nella norma (e le regole finiscono in cache)
+            monitorService.checkGlicemia(new RilevazioneGlicemia(paziente.getIDUtente(), 170, LocalDateTime.now(), "Dopo cena"));
+            assertTrue(notificheDAO.leggiNotifichePerId(medico.getIDUtente()).isEmpty());
+
+            // il medico restringe l'intervallo del paziente: la modifica vale senza attendere la scadenza della cache
+            regoleGlicemiaDAO.impostaRegolaPaziente(new RegolaGlicemia(paziente.getIDUtente(), MomentoPasto.DOPO_CENA, 80, 160, 2));
+            monitorService.checkGlicemia(new RilevazioneGlicemia(paziente.getIDUtente(), 170, LocalDateTime.now(), "Dopo cena"));
+            assertEquals(1, notificheDAO.leggiNotifichePerId(medico.getIDUtente()).size());
+        } finally {
+            regoleGlicemiaDAO.rimuoviRegolePaziente(paziente.getIDUtente());
+        }
+    }
+
     @Test
     void testCheckFarmaci3DailyNotificaMedico() throws DataAccessException {
         // Crea una terapia per il paziente
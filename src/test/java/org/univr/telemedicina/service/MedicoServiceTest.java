@@ -14,6 +14,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -54,6 +55,44 @@ class MedicoServiceTest {
         verify(pazientiDAO, times(1)).findPazientiByMedId(idMedico);
     }
 
+    @Test
+    void getSummaryPazientiAttivi_FiltraPazientiSenzaTerapia() throws DataAccessException, MedicoServiceException {
+        // ARRANGE
+        int idMedico = 1;
+        PazienteSummary attivo = new PazienteSummary(2, "Mario", "Rossi", LocalDate.of(1980, 1, 1));
+        PazienteSummary inattivo = new PazienteSummary(3, "Luca", "Bianchi", LocalDate.of(1985, 2, 2));
+        when(pazientiDAO.findSummaryByMedId(idMedico)).thenReturn(List.of(attivo, inattivo));
+        when(terapiaDAO.getActivePatientIds()).thenReturn(List.of(2, 99));
+
+        // ACT
+        List<PazienteSummary> assegnati = medicoService.getSummaryPazientiAssegnati(idMedico);
+        List<PazienteSummary> attivi = medicoService.getSummaryPazientiAttivi(assegnati);
+
+        // ASSERT
+        assertEquals(2, assegnati.size());
+        assertEquals(1, attivi.size());
+        assertEquals(2, attivi.get(0).getIDPaziente());
+        verify(pazientiDAO, never()).findPazientiByMedId(anyInt());
+    }
+
+    @Test
+    void getRilevazioniPaziente_IntervalloDiDateIncluse() throws DataAccessException, MedicoServiceException {
+        // ARRANGE
+        int idPaziente = 2;
+        LocalDate da = LocalDate.of(2025, 3, 1);
+        LocalDate a = LocalDate.of(2025, 3, 7);
+        when(rilevazioneGlicemiaDAO.getRilevazioniByPazienteInIntervallo(idPaziente, da.atStartOfDay(), LocalDate.of(2025, 3, 8).atStartOfDay()))
+                .thenReturn(List.of(new RilevazioneGlicemia(idPaziente, 110, LocalDateTime.of(2025, 3, 7, 22, 0), "")));
+
+        // ACT
+        List<RilevazioneGlicemia> risultato = medicoService.getRilevazioniPaziente(idPaziente, da, a);
+
+        // ASSERT: l'ultimo giorno è incluso e non viene letta tutta la cronologia
+        assertEquals(1, risultato.size());
+        verify(rilevazioneGlicemiaDAO, never()).getRilevazioniByPaziente(anyInt());
+        assertThrows(MedicoServiceException.class, () -> medicoService.getRilevazioniPaziente(idPaziente, a, da));
+    }
+
     @Test
     void addCondizioniPaziente_Successo() throws MedicoServiceException, DataAccessException {
         // ARRANGE
@@ -128,6 +167,26 @@ class MedicoServiceTest {
     }
 
     // NUOVO TEST: Verifica che la dashboard del paziente venga popolata correttamente
+    @Test
+    void calcolaAderenza_MediaDeiPazientiConTerapia() throws DataAccessException, MedicoServiceException {
+        // ARRANGE
+        List<Integer> idPazienti = List.of(2, 3, 4);
+        // il paziente 4 non ha terapie e non viene restituito dal dao
+        when(assunzioneFarmaciDAO.getAderenzaPerPazienti(eq(idPazienti), any(LocalDate.class))).thenReturn(Map.of(
+                2, new AderenzaPaziente(2, 10, 10),
+                3, new AderenzaPaziente(3, 10, 5)));
+
+        // ACT
+        RiepilogoAderenza riepilogo = medicoService.calcolaAderenza(idPazienti);
+
+        // ASSERT
+        assertEquals(0.75, riepilogo.getAderenzaGlobale(), 0.0001);
+        assertEquals(0.5, riepilogo.getAderenza(3), 0.0001);
+        assertEquals(0.0, riepilogo.getAderenza(4), 0.0001);
+        verifyNoInteractions(terapiaDAO);
+        verify(assunzioneFarmaciDAO, never()).leggiAssunzioniFarmaci(anyInt());
+    }
+
     @Test
     void getDatiPazienteDashboard_Successo() throws MedicoServiceException, DataAccessException {
         // ARRANGE
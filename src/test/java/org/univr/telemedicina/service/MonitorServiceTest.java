@@ -2,13 +2,20 @@ package org.univr.telemedicina.service;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.univr.telemedicina.dao.AssunzioneFarmaciDAO;
 import org.univr.telemedicina.dao.PazientiDAO;
+import org.univr.telemedicina.dao.RegoleGlicemiaDAO;
 import org.univr.telemedicina.dao.TerapiaDAO;
 import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.AssunzioniRecentiPaziente;
+import org.univr.telemedicina.model.MomentoPasto;
+import org.univr.telemedicina.model.Notifica;
+import org.univr.telemedicina.model.RegolaGlicemia;
 import org.univr.telemedicina.model.RilevazioneGlicemia;
 import org.univr.telemedicina.model.Terapia;
 
@@ -16,10 +23,15 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,10 +45,16 @@ class MonitorServiceTest {
     private NotificheService notificheService;
     @Mock
     private PazientiDAO pazientiDAO;
+    @Mock
+    private RegoleGlicemiaDAO regoleGlicemiaDAO;
 
     @InjectMocks
     private MonitorService monitorService;
 
+    // cattura le liste di notifiche passate al servizio (tipizzato senza conversioni non controllate)
+    @Captor
+    private ArgumentCaptor<List<Notifica>> notifiche;
+
     // --- TEST PER checkGlicemia ---
 
     @Test
@@ -53,7 +71,7 @@ class MonitorServiceTest {
 
         // ASSERT
         // Verifica che venga inviata una notifica al medico con priorità 3
-        verify(notificheService, times(1)).send(eq(10), eq(3), contains("glicemia anormale"), contains("dopo i pasti"), eq("glicemia"));
+        verify(notificheService, times(1)).sendAlMedico(eq(10), eq(1), eq("Mario Rossi"), eq(3), contains("glicemia anormale"), contains("dopo i pasti"), eq("glicemia"));
     }
 
     @Test
@@ -69,7 +87,7 @@ class MonitorServiceTest {
         monitorService.checkGlicemia(rilevazione);
 
         // ASSERT
-        verify(notificheService, times(1)).send(eq(10), eq(3), contains("glicemia anormale"), contains("prima dei pasti"), eq("glicemia"));
+        verify(notificheService, times(1)).sendAlMedico(eq(10), eq(1), eq("Mario Rossi"), eq(3), contains("glicemia anormale"), contains("prima dei pasti"), eq("glicemia"));
     }
 
     @Test
@@ -100,6 +118,41 @@ class MonitorServiceTest {
         verifyNoInteractions(notificheService);
     }
 
+    @Test
+    void checkGlicemia_IntervalloPersonalizzato_UsaLaRegolaDelPaziente() throws DataAccessException {
+        // ARRANGE: il paziente 1 ha un massimo di 150 prima di cena con priorità 2, il paziente 2 usa le regole predefinite
+        when(regoleGlicemiaDAO.leggiRegole()).thenReturn(List.of(new RegolaGlicemia(1, MomentoPasto.PRIMA_CENA, 70, 150, 2)));
+        when(pazientiDAO.getMedicoRiferimentoByPazienteId(2)).thenReturn(Optional.of(20));
+        when(pazientiDAO.findNameById(2)).thenReturn("Anna Bianchi");
+
+        // ACT
+        monitorService.checkGlicemia(new RilevazioneGlicemia(1, 140, LocalDateTime.now(), "Prima cena"));
+        monitorService.checkGlicemia(new RilevazioneGlicemia(2, 140, LocalDateTime.now(), "Prima cena"));
+
+        // ASSERT: 140 è nell'intervallo del paziente 1 ma non in quello predefinito (80-130)
+        verify(notificheService, times(1)).sendAlMedico(eq(20), eq(2), eq("Anna Bianchi"), eq(3), eq("glicemia anormale"), contains("prima dei pasti 140"), eq("glicemia"));
+        verify(notificheService, times(1)).sendAlMedico(anyInt(), anyInt(), anyString(), anyInt(), anyString(), anyString(), anyString());
+        verify(regoleGlicemiaDAO, times(1)).leggiRegole();
+    }
+
+    @Test
+    void checkGlicemia_ContattoInCache_NessunaQueryRipetuta() throws DataAccessException {
+        // ARRANGE
+        when(pazientiDAO.getMedicoRiferimentoByPazienteId(1)).thenReturn(Optional.of(10));
+        when(pazientiDAO.findNameById(1)).thenReturn("Mario Rossi");
+
+        // ACT
+        for (int i = 0; i < 5; i++) {
+            monitorService.checkGlicemia(new RilevazioneGlicemia(1, 200 + i, LocalDateTime.now(), "Dopo pranzo"));
+        }
+
+        // ASSERT
+        verify(notificheService, times(5)).sendAlMedico(eq(10), eq(1), eq("Mario Rossi"), eq(3), eq("glicemia anormale"), contains("Mario Rossi"), eq("glicemia"));
+        verify(pazientiDAO, times(1)).getMedicoRiferimentoByPazienteId(1);
+        verify(pazientiDAO, times(1)).findNameById(1);
+        verify(regoleGlicemiaDAO, times(1)).leggiRegole();
+    }
+
     // --- TEST PER checkFarmaciDaily ---
 
     @Test
@@ -120,8 +173,18 @@ class MonitorServiceTest {
         // ACT
         monitorService.checkFarmaciDaily();
 
-        // ASSERT
-        verify(notificheService, times(1)).send(eq(idPaziente), eq(1), contains("assunzioni farmaci incompleta"), contains("dimenticato"), eq("assunzioni farmaci"));
+        // ASSERT: il promemoria passa dalla scrittura idempotente del giorno
+        int livelloAtteso = LocalDateTime.now().getHour() >= 18 ? 2 : 1;
+        verify(notificheService, times(1)).sendPromemoria(notifiche.capture(), eq(LocalDate.now()), eq(livelloAtteso));
+        verify(notificheService, never()).send(anyInt(), anyInt(), anyString(), anyString(), anyString());
+        verify(notificheService, never()).sendAll(anyList());
+        assertEquals(1, notifiche.getValue().size());
+        Notifica promemoria = notifiche.getValue().get(0);
+        assertEquals(idPaziente, promemoria.getIdDestinatario());
+        assertEquals(1, promemoria.getPriorita());
+        assertTrue(promemoria.getTitolo().contains("assunzioni farmaci incompleta"));
+        assertTrue(promemoria.getMessaggio().contains("dimenticato"));
+        assertEquals("assunzioni farmaci", promemoria.getTipo());
     }
 
     @Test
@@ -140,8 +203,13 @@ class MonitorServiceTest {
         // ACT
         monitorService.checkFarmaciDaily();
 
-        // ASSERT
-        verify(notificheService, times(1)).send(eq(idPaziente), eq(1), contains("assunzioni farmaci incompleta"), contains("completare la terapia"), eq("assunzioni farmaci"));
+        // ASSERT: di sera il promemoria ha il livello di sollecito più alto
+        verify(notificheService, times(1)).sendPromemoria(notifiche.capture(), eq(LocalDate.now()), eq(2));
+        assertEquals(1, notifiche.getValue().size());
+        Notifica promemoria = notifiche.getValue().get(0);
+        assertEquals(idPaziente, promemoria.getIdDestinatario());
+        assertTrue(promemoria.getTitolo().contains("assunzioni farmaci incompleta"));
+        assertTrue(promemoria.getMessaggio().contains("completare la terapia"));
     }
 
     @Test
@@ -172,6 +240,60 @@ class MonitorServiceTest {
         verifyNoInteractions(notificheService);
     }
 
+    // --- TEST PER checkGlicemiaBatch ---
+
+    @Test
+    void checkGlicemiaBatch_PiuValoriAnormali_UnaNotificaPerPaziente() throws DataAccessException {
+        // ARRANGE: tre valori anormali e uno normale per il paziente 1, uno anormale per il paziente 2
+        LocalDateTime inizio = LocalDateTime.of(LocalDate.now(), LocalTime.of(8, 0));
+        List<RilevazioneGlicemia> rilevazioni = List.of(
+                new RilevazioneGlicemia(1, 200, inizio, "Sensore"),
+                new RilevazioneGlicemia(1, 210, inizio.plusMinutes(5), "Sensore"),
+                new RilevazioneGlicemia(1, 150, inizio.plusMinutes(10), "Sensore"),
+                new RilevazioneGlicemia(1, 60, inizio.plusMinutes(15), "Sensore"),
+                new RilevazioneGlicemia(2, 70, inizio, "Prima pranzo")
+        );
+        when(pazientiDAO.getMedicoRiferimentoByPazienteId(1)).thenReturn(Optional.of(10));
+        when(pazientiDAO.getMedicoRiferimentoByPazienteId(2)).thenReturn(Optional.of(20));
+        when(pazientiDAO.findNameById(1)).thenReturn("Mario Rossi");
+        when(pazientiDAO.findNameById(2)).thenReturn("Anna Bianchi");
+
+        // ACT
+        int notificheInviate = monitorService.checkGlicemiaBatch(rilevazioni);
+
+        // ASSERT: una notifica riassuntiva per il paziente 1 e quella normale per il paziente 2
+        // scritte insieme con una sola chiamata
+        assertEquals(2, notificheInviate);
+        verify(notificheService, times(1)).sendAll(notifiche.capture());
+        verify(notificheService, never()).send(anyInt(), anyInt(), anyString(), anyString(), anyString());
+        assertEquals(2, notifiche.getValue().size());
+        Notifica riassunto = notifiche.getValue().get(0);
+        assertEquals(10, riassunto.getIdDestinatario());
+        assertEquals(3, riassunto.getPriorita());
+        assertEquals("glicemia anormale", riassunto.getTitolo());
+        assertTrue(riassunto.getMessaggio().contains("3 valori glicemici anormali"));
+        Notifica singola = notifiche.getValue().get(1);
+        assertEquals(20, singola.getIdDestinatario());
+        assertEquals(3, singola.getPriorita());
+        assertTrue(singola.getMessaggio().contains("prima dei pasti 70"));
+        // il paziente di riferimento serve ai riepiloghi per il medico
+        assertEquals(1, riassunto.getIdPaziente());
+        assertEquals("Anna Bianchi", singola.getNomePaziente());
+        assertEquals("glicemia", singola.getTipo());
+    }
+
+    @Test
+    void checkGlicemiaBatch_ValoriNormali_NonInviaNotifiche() throws DataAccessException {
+        LocalDateTime inizio = LocalDateTime.of(LocalDate.now(), LocalTime.of(8, 0));
+        List<RilevazioneGlicemia> rilevazioni = List.of(
+                new RilevazioneGlicemia(1, 100, inizio, null),
+                new RilevazioneGlicemia(1, 120, inizio.plusMinutes(5), "Prima cena")
+        );
+
+        assertEquals(0, monitorService.checkGlicemiaBatch(rilevazioni));
+        verifyNoInteractions(notificheService);
+    }
+
     // --- TEST PER checkFarmaci3Daily ---
 
     @Test
@@ -180,25 +302,93 @@ class MonitorServiceTest {
         int idPaziente = 1;
         int idMedico = 10;
 
-        // Setup dei DAO
-        Terapia terapiaTest = new Terapia(1, idPaziente, idMedico, "FarmacoTest", "1 compressa", 2, "Test", LocalDate.now().minusDays(5), null);
-        when(terapiaDAO.getActivePatientIds()).thenReturn(Collections.singletonList(idPaziente));
-        when(terapiaDAO.listTherapiesByPatId(idPaziente)).thenReturn(Collections.singletonList(terapiaTest));
-        when(pazientiDAO.getMedicoRiferimentoByPazienteId(idPaziente)).thenReturn(Optional.of(idMedico));
-        when(pazientiDAO.findNameById(idPaziente)).thenReturn("Mario Rossi");
+        // il paziente 1 ha una terapia da 2 dosi al giorno e nessuna assunzione negli ultimi 3 giorni
+        // il paziente 2 ha registrato tutte le 3 dosi richieste
+        when(assunzioneFarmaciDAO.getAssunzioniRecentiPerPazienti(any(LocalDate.class), eq(3))).thenReturn(List.of(
+                new AssunzioniRecentiPaziente(idPaziente, idMedico, "Mario Rossi", 2, 0),
+                new AssunzioniRecentiPaziente(2, idMedico, "Anna Bianchi", 1, 3)));
+
+        // ACT
+        monitorService.checkFarmaci3Daily();
 
-        // Simula che il paziente abbia saltato le assunzioni
-        // Il DAO viene chiamato 3 volte nel ciclo, simuliamo 0 assunzioni ogni volta
-        when(assunzioneFarmaciDAO.getConteggioAssunzioniGiornoPerPazienti(anyList(), any(LocalDate.class)))
-                .thenReturn(Collections.emptyMap()); // 0 assunzioni ogni giorno
+        // ASSERT
+        // una sola notifica al MEDICO (ID 10) scritta con un unico inserimento
+        verify(notificheService, times(1)).sendAll(notifiche.capture());
+        assertEquals(1, notifiche.getValue().size());
+        Notifica notifica = notifiche.getValue().get(0);
+        assertEquals(idMedico, notifica.getIdDestinatario());
+        assertEquals(2, notifica.getPriorita());
+        assertEquals("mancata aderenza alla terapia", notifica.getTitolo());
+        assertTrue(notifica.getMessaggio().contains("Mario Rossi"));
+        assertEquals(idPaziente, notifica.getIdPaziente());
+        // nessuna query per singolo paziente
+        verifyNoInteractions(terapiaDAO, pazientiDAO);
+        verify(assunzioneFarmaciDAO, never()).getConteggioAssunzioniGiornoPerPazienti(anyList(), any(LocalDate.class));
+    }
+
+    @Test
+    void checkFarmaci3Daily_PazienteSenzaMedico_NonInterrompeIlControllo() throws DataAccessException {
+        // ARRANGE
+        when(assunzioneFarmaciDAO.getAssunzioniRecentiPerPazienti(any(LocalDate.class), eq(3))).thenReturn(List.of(
+                new AssunzioniRecentiPaziente(1, null, "Mario Rossi", 1, 0),
+                new AssunzioniRecentiPaziente(2, 20, "Anna Bianchi", 1, 1)));
 
         // ACT
         monitorService.checkFarmaci3Daily();
 
         // ASSERT
-        // Verifica che sia stata inviata una notifica al MEDICO (ID 10)
-        verify(notificheService, times(1)).send(eq(idMedico), eq(2), contains("mancata aderenza alla terapia"), anyString(), eq("assunzioni farmaci"));
-        // Verifica che il DAO delle assunzioni sia stato chiamato 3 volte (una per ogni giorno nel ciclo)
+        verify(notificheService).sendAll(notifiche.capture());
+        assertEquals(1, notifiche.getValue().size());
+        assertEquals(20, notifiche.getValue().get(0).getIdDestinatario());
+    }
+
+    @Test
+    void checkFarmaci3DailyParallelo_UnoShardPerIntervalloDiId() throws DataAccessException {
+        // ARRANGE: 6 pazienti attivi divisi in shard da 2
+        when(terapiaDAO.getActivePatientIds()).thenReturn(List.of(6, 5, 4, 3, 2, 1));
+        when(assunzioneFarmaciDAO.getAssunzioniRecentiPerPazienti(any(LocalDate.class), eq(3), anyInt(), anyInt())).thenAnswer(invocation -> {
+            int idDa = invocation.getArgument(2);
+            int idA = invocation.getArgument(3);
+            // i pazienti dispari non hanno registrato assunzioni
+            return IntStream.rangeClosed(idDa, idA)
+                    .mapToObj(id -> new AssunzioniRecentiPaziente(id, 10, "Paziente " + id, 1, id % 2 == 0 ? 3 : 0))
+                    .toList();
+        });
+
+        // ACT
+        RisultatoSweep risultato = monitorService.checkFarmaci3Daily(new SweepParallelo(1, 2));
+
+        // ASSERT
+        assertEquals(3, risultato.getNumeroShard());
+        verify(assunzioneFarmaciDAO).getAssunzioniRecentiPerPazienti(any(LocalDate.class), eq(3), eq(1), eq(2));
+        verify(assunzioneFarmaciDAO).getAssunzioniRecentiPerPazienti(any(LocalDate.class), eq(3), eq(3), eq(4));
+        verify(assunzioneFarmaciDAO).getAssunzioniRecentiPerPazienti(any(LocalDate.class), eq(3), eq(5), eq(6));
+        // le notifiche di tutti gli shard sono scritte insieme
+        verify(notificheService, times(1)).sendAll(notifiche.capture());
+        assertEquals(3, notifiche.getValue().size());
+        verify(notificheService, never()).send(anyInt(), anyInt(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void checkFarmaciDailyParallelo_InterrogaOgniShard() throws DataAccessException {
+        // ARRANGE: 5 pazienti che hanno già registrato tutte le assunzioni
+        when(terapiaDAO.getActivePatientIds()).thenReturn(List.of(1, 2, 3, 4, 5));
+        when(terapiaDAO.getFrequenzeGiornalierePerPazienti(anyList())).thenAnswer(invocation -> {
+            List<Integer> shard = invocation.getArgument(0);
+            return shard.stream().collect(Collectors.toMap(id -> id, id -> 1));
+        });
+        when(assunzioneFarmaciDAO.getConteggioAssunzioniGiornoPerPazienti(anyList(), any(LocalDate.class))).thenAnswer(invocation -> {
+            List<Integer> shard = invocation.getArgument(0);
+            return shard.stream().collect(Collectors.toMap(id -> id, id -> 1));
+        });
+
+        // ACT
+        RisultatoSweep risultato = monitorService.checkFarmaciDaily(new SweepParallelo(1, 2));
+
+        // ASSERT
+        assertEquals(3, risultato.getNumeroShard());
+        assertTrue(risultato.getNotifiche().isEmpty());
+        verify(terapiaDAO, times(3)).getFrequenzeGiornalierePerPazienti(anyList());
         verify(assunzioneFarmaciDAO, times(3)).getConteggioAssunzioniGiornoPerPazienti(anyList(), any(LocalDate.class));
     }
-}
\ No newline at end of file
+}
@@ -1,15 +1,24 @@
 package org.univr.telemedicina.service;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.univr.telemedicina.dao.NotificheDAO;
 import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.CursoreNotifiche;
 import org.univr.telemedicina.model.Notifica;
+import org.univr.telemedicina.model.PaginaNotifiche;
+import org.univr.telemedicina.model.RiepilogoNonLette;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -25,6 +34,17 @@ class NotificheServiceTest {
     @InjectMocks
     private NotificheService notificheService; // Il servizio reale con il DAO finto iniettato
 
+    // cattura le liste di notifiche scritte dal dao (tipizzato senza conversioni non controllate)
+    @Captor
+    private ArgumentCaptor<List<Notifica>> scritte;
+
+    // i riepiloghi in attesa e la finestra sono condivisi dal processo: ogni test riparte senza raggruppamento
+    @AfterEach
+    void tearDown() throws DataAccessException {
+        notificheService.impostaFinestraRiepilogo(Duration.ZERO);
+        notificheService.emettiTuttiIRiepiloghi();
+    }
+
     @Test
     void send_ChiamaCorrettamenteInserisciNotificaDelDao() throws DataAccessException {
         // ACT
@@ -69,6 +89,17 @@ class NotificheServiceTest {
         verify(notificheDAO, times(1)).leggiNotifichePerId(idDestinatario);
     }
 
+    @Test
+    void readDopo_DelegaAllaLetturaIncrementaleDelDao() throws DataAccessException {
+        // ARRANGE
+        Notifica nuova = new Notifica(8, 1, 1, "Nuova", "Messaggio", "TIPO", 0, LocalDateTime.now());
+        when(notificheDAO.leggiNotificheDopo(1, 7, 20)).thenReturn(List.of(nuova));
+
+        // ACT + ASSERT
+        assertEquals(List.of(nuova), notificheService.readDopo(1, 7, 20));
+        verify(notificheDAO, never()).leggiNotifichePerId(anyInt());
+    }
+
     @Test
     void setNotificaLetta_ChiamaCorrettamenteIlDao() throws DataAccessException {
         // ARRANGE
@@ -96,6 +127,205 @@ class NotificheServiceTest {
         });
     }
 
+    @Test
+    void sendAll_RestituisceGliIdGeneratiDalDao() throws DataAccessException {
+        // ARRANGE
+        List<Notifica> notifiche = List.of(
+                new Notifica(1, 1, "Titolo", "Uno", "TIPO", LocalDateTime.now()),
+                new Notifica(2, 1, "Titolo", "Due", "TIPO", LocalDateTime.now()));
+        when(notificheDAO.inserisciNotifiche(notifiche)).thenReturn(List.of(7, 8));
+
+        // ACT
+        List<Integer> ids = notificheService.sendAll(notifiche);
+
+        // ASSERT: una sola scrittura per tutto il gruppo
+        assertEquals(List.of(7, 8), ids);
+        verify(notificheDAO, times(1)).inserisciNotifiche(notifiche);
+        verify(notificheDAO, never()).inserisciNotifica(any(Notifica.class));
+    }
+
+    @Test
+    void sendAll_ListaVuota_NonScriveNulla() throws DataAccessException {
+        assertTrue(notificheService.sendAll(Collections.emptyList()).isEmpty());
+        verifyNoInteractions(notificheDAO);
+    }
+
+    @Test
+    void sendPromemoria_DelegaAllUpsertDelDao() throws DataAccessException {
+        // ARRANGE
+        LocalDate oggi = LocalDate.now();
+        List<Notifica> promemoria = List.of(new Notifica(1, 1, "Titolo", "Promemoria", "TIPO", LocalDateTime.now()));
+        when(notificheDAO.inserisciPromemoria(promemoria, oggi, 2)).thenReturn(1);
+
+        // ACT + ASSERT
+        assertEquals(1, notificheService.sendPromemoria(promemoria, oggi, 2));
+        assertEquals(0, notificheService.sendPromemoria(Collections.emptyList(), oggi, 2));
+        verify(notificheDAO, times(1)).inserisciPromemoria(anyList(), any(LocalDate.class), anyInt());
+    }
+
+    @Test
+    void sendAlMedico_SenzaFinestra_InviaSubito() throws DataAccessException {
+        // ACT
+        notificheService.sendAlMedico(10, 1, "Mario Rossi", 2, "glicemia anormale", "Messaggio", "glicemia");
+
+        // ASSERT
+        ArgumentCaptor<Notifica> notifica = ArgumentCaptor.forClass(Notifica.class);
+        verify(notificheDAO, times(1)).inserisciNotifica(notifica.capture());
+        assertEquals(10, notifica.getValue().getIdDestinatario());
+        assertEquals(1, notifica.getValue().getIdPaziente());
+    }
+
+    @Test
+    void sendAlMedico_ConFinestra_RaggruppaGliAvvisiInUnRiepilogo() throws DataAccessException {
+        // ARRANGE
+        notificheService.impostaFinestraRiepilogo(Duration.ofHours(1));
+
+        // ACT: tre avvisi non urgenti per il medico 10 e uno per il medico 20
+        notificheService.sendAlMedico(10, 1, "Mario Rossi", 2, "glicemia anormale", "uno", "glicemia");
+        notificheService.sendAlMedico(10, 1, "Mario Rossi", 1, "assunzione di farmaci non corretta", "due", "assunzione farmaci");
+        notificheService.sendAlMedico(10, 2, "Anna Bianchi", 2, "glicemia anormale", "tre", "glicemia");
+        notificheService.sendAlMedico(20, 3, "Luca Verdi", 2, "glicemia anormale", "quattro", "glicemia");
+
+        // ASSERT: nulla viene scritto prima della fine della finestra
+        verifyNoInteractions(notificheDAO);
+        assertEquals(0, notificheService.emettiRiepiloghiScaduti());
+
+        // ACT
+        assertEquals(2, notificheService.emettiTuttiIRiepiloghi());
+
+        // ASSERT: un riepilogo per il medico 10 e l'avviso originale per il medico 20
+        verify(notificheDAO, times(1)).inserisciNotifiche(scritte.capture());
+        assertEquals(2, scritte.getValue().size());
+        Notifica riepilogo = scritte.getValue().get(0);
+        assertEquals(10, riepilogo.getIdDestinatario());
+        assertEquals(2, riepilogo.getPriorita());
+        assertEquals("riepilogo", riepilogo.getTipo());
+        assertTrue(riepilogo.getMessaggio().startsWith("3 avvisi da 2 pazienti:"));
+        assertTrue(riepilogo.getMessaggio().contains("Mario Rossi 2 (glicemia anormale 1, assunzione di farmaci non corretta 1)"));
+        assertTrue(riepilogo.getMessaggio().contains("Anna Bianchi 1 (glicemia anormale 1)"));
+        assertEquals("quattro", scritte.getValue().get(1).getMessaggio());
+        assertEquals(0, notificheService.emettiTuttiIRiepiloghi());
+    }
+
+    @Test
+    void sendAll_ConFinestra_GliAvvisiUrgentiEQuelliSenzaPazienteNonVengonoRaggruppati() throws DataAccessException {
+        // ARRANGE
+        notificheService.impostaFinestraRiepilogo(Duration.ofHours(1));
+        Notifica urgente = new Notifica(10, 3, "glicemia anormale", "urgente", "glicemia", LocalDateTime.now());
+        urgente.setPaziente(1, "Mario Rossi");
+        Notifica nonUrgente = new Notifica(10, 2, "mancata aderenza alla terapia", "non urgente", "assunzioni farmaci", LocalDateTime.now());
+        nonUrgente.setPaziente(1, "Mario Rossi");
+        Notifica promemoria = new Notifica(1, 1, "promemoria", "senza paziente", "assunzioni farmaci", LocalDateTime.now());
+        when(notificheDAO.inserisciNotifiche(List.of(urgente, promemoria))).thenReturn(List.of(5, 6));
+
+        // ACT
+        List<Integer> ids = notificheService.sendAll(List.of(urgente, nonUrgente, promemoria));
+
+        // ASSERT
+        assertEquals(List.of(5, 6), ids);
+        verify(notificheDAO, times(1)).inserisciNotifiche(anyList());
+    }
+
+    @Test
+    void emettiRiepiloghiScaduti_DopoLaFinestra_ScriveIlRiepilogo() throws Exception {
+        // ARRANGE
+        notificheService.impostaFinestraRiepilogo(Duration.ofMillis(1));
+        notificheService.sendAlMedico(10, 1, "Mario Rossi", 2, "glicemia anormale", "uno", "glicemia");
+        notificheService.sendAlMedico(10, 1, "Mario Rossi", 2, "glicemia anormale", "due", "glicemia");
+        Thread.sleep(5);
+
+        // ACT: la lettura del medico scrive prima il riepilogo scaduto
+        notificheService.read(10);
+
+        // ASSERT
+        verify(notificheDAO, times(1)).inserisciNotifiche(scritte.capture());
+        assertEquals(1, scritte.getValue().size());
+        assertTrue(scritte.getValue().get(0).getMessaggio().startsWith("2 avvisi da 1 pazienti:"));
+        verify(notificheDAO).leggiNotifichePerId(10);
+    }
+
+    @Test
+    void riepiloghi_CondivisiTraLeIstanzeDelServizio() throws DataAccessException {
+        // ARRANGE: l'avviso viene raccolto dal servizio di una dashboard
+        notificheService.impostaFinestraRiepilogo(Duration.ofHours(1));
+        NotificheDAO altroDAO = mock(NotificheDAO.class);
+        NotificheService altroServizio = new NotificheService(altroDAO);
+        notificheService.sendAlMedico(10, 1, "Mario Rossi", 2, "glicemia anormale", "uno", "glicemia");
+
+        // ACT: un'altra istanza (ad esempio alla chiusura dell'applicazione) scrive i riepiloghi in attesa
+        assertEquals(1, altroServizio.emettiTuttiIRiepiloghi());
+
+        // ASSERT
+        verify(altroDAO, times(1)).inserisciNotifiche(scritte.capture());
+        assertEquals("uno", scritte.getValue().get(0).getMessaggio());
+        verifyNoInteractions(notificheDAO);
+    }
+
+    @Test
+    void ascoltatori_AvvisatiDopoInvioELettura() throws DataAccessException {
+        // ARRANGE
+        List<Integer> avvisi = new ArrayList<>();
+        AscoltatoreNotifiche ascoltatore = avvisi::add;
+        AscoltatoreNotifiche guasto = id -> { throw new IllegalStateException("guasto"); };
+        notificheService.iscrivi(501, guasto);
+        notificheService.iscrivi(501, ascoltatore);
+        notificheService.iscrivi(502, ascoltatore);
+        when(notificheDAO.setNotificaLetta(42)).thenReturn(501);
+        try {
+            // ACT
+            notificheService.send(501, 1, "Titolo", "Messaggio", "TIPO");
+            notificheService.sendAll(List.of(
+                    new Notifica(502, 1, "Titolo", "Uno", "TIPO", LocalDateTime.now()),
+                    new Notifica(502, 1, "Titolo", "Due", "TIPO", LocalDateTime.now()),
+                    new Notifica(503, 1, "Titolo", "Tre", "TIPO", LocalDateTime.now())));
+            notificheService.setNotificaLetta(42);
+            notificheService.annullaIscrizione(502, ascoltatore);
+            notificheService.send(502, 1, "Titolo", "Messaggio", "TIPO");
+
+            // ASSERT: un avviso per destinatario e scrittura, l'ascoltatore guasto non blocca gli altri
+            assertEquals(List.of(501, 502, 501), avvisi);
+        } finally {
+            notificheService.annullaIscrizione(501, guasto);
+            notificheService.annullaIscrizione(501, ascoltatore);
+            notificheService.annullaIscrizione(502, ascoltatore);
+        }
+    }
+
+    @Test
+    void getUnreadSummaryEReadPagina_DeleganoAlDao() throws DataAccessException {
+        // ARRANGE
+        RiepilogoNonLette riepilogo = new RiepilogoNonLette(3, 2, 9);
+        CursoreNotifiche cursore = new CursoreNotifiche(0, LocalDateTime.now(), 7);
+        PaginaNotifiche pagina = new PaginaNotifiche(Collections.emptyList(), null);
+        when(notificheDAO.getUnreadSummary(10)).thenReturn(riepilogo);
+        when(notificheDAO.getPaginaNotifiche(10, cursore, 20)).thenReturn(pagina);
+
+        // ACT + ASSERT
+        assertSame(riepilogo, notificheService.getUnreadSummary(10));
+        assertSame(pagina, notificheService.readPagina(10, cursore, 20));
+    }
+
+    @Test
+    void segnaLette_AvvisaSoloSeQualcosaCambia() throws DataAccessException {
+        // ARRANGE
+        List<Integer> avvisi = new ArrayList<>();
+        AscoltatoreNotifiche ascoltatore = avvisi::add;
+        notificheService.iscrivi(601, ascoltatore);
+        when(notificheDAO.segnaLette(601, List.of(1, 2, 3, 4))).thenReturn(4, 0);
+        try {
+            // ACT
+            int prima = notificheService.segnaLette(601, List.of(1, 2, 3, 4));
+            int seconda = notificheService.segnaLette(601, List.of(1, 2, 3, 4));
+
+            // ASSERT: la seconda chiamata non trova non lette e non avvisa
+            assertEquals(4, prima);
+            assertEquals(0, seconda);
+            assertEquals(List.of(601), avvisi);
+        } finally {
+            notificheService.annullaIscrizione(601, ascoltatore);
+        }
+    }
+
     @Test
     void cicloDiVitaNotifica_SendReadMarkAsRead() throws DataAccessException {
         // 1. ARRANGE (SEND)
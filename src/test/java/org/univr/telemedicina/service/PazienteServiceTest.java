@@ -16,6 +16,8 @@ import org.univr.telemedicina.model.Terapia;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -60,6 +62,27 @@ class PazienteServiceTest {
         verify(monitorService, times(1)).checkGlicemia(any(RilevazioneGlicemia.class));
     }
 
+    @Test
+    void registraRilevazioniGlicemia_Batch_UnSoloInserimentoEControllo() throws DataAccessException {
+        // ARRANGE: 288 rilevazioni (un giorno di sensore continuo ogni 5 minuti)
+        LocalDateTime inizio = LocalDate.now().atStartOfDay();
+        List<RilevazioneGlicemia> rilevazioni = new ArrayList<>();
+        for (int i = 0; i < 288; i++) {
+            rilevazioni.add(new RilevazioneGlicemia(1, 100 + (i % 50), inizio.plusMinutes(5L * i), "Sensore"));
+        }
+        when(rilevazioneDAO.createBatch(rilevazioni)).thenReturn(288);
+
+        // ACT
+        int registrate = pazienteService.registraRilevazioniGlicemia(rilevazioni);
+
+        // ASSERT: un solo inserimento in blocco e un solo controllo sull'intero insieme
+        assertEquals(288, registrate);
+        verify(rilevazioneDAO, times(1)).createBatch(rilevazioni);
+        verify(rilevazioneDAO, never()).create(any(RilevazioneGlicemia.class));
+        verify(monitorService, times(1)).checkGlicemiaBatch(rilevazioni);
+        verify(monitorService, never()).checkGlicemia(any(RilevazioneGlicemia.class));
+    }
+
     @Test
     void registraAssunzioneFarmaci_QuantitaCorretta_Successo() throws WrongAssumptionException, DataAccessException {
         // ARRANGE
@@ -88,8 +111,10 @@ class PazienteServiceTest {
         });
 
         verify(assunzioneFarmaciDAO, times(1)).aggiungiAssunzione(any());
-        verify(notificheService, times(1)).send(
+        verify(notificheService, times(1)).sendAlMedico(
                 eq(terapia.getIDMedico()),
+                eq(terapia.getIDPaziente()),
+                eq("NomePaziente"),
                 eq(2),
                 eq("assunzione di farmaci non corretta"),
                 anyString(),
@@ -0,0 +1,71 @@
+package org.univr.telemedicina.service;
+
+import org.junit.jupiter.api.Test;
+import org.univr.telemedicina.exception.DataAccessException;
+import org.univr.telemedicina.model.Notifica;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SweepParalleloTest {
+
+    @Test
+    void dividi_ShardContiguiEntroLaDimensioneMassima() {
+        SweepParallelo sweep = new SweepParallelo(2, 10);
+        List<Integer> id = IntStream.rangeClosed(1, 95).boxed().toList();
+
+        List<List<Integer>> shard = sweep.dividi(id);
+
+        // 2 lettori * 4 shard per lettore = 8 shard da 12 ma la dimensione massima è 10
+        assertEquals(10, shard.size());
+        assertTrue(shard.stream().allMatch(s -> s.size() <= 10));
+        assertEquals(id, shard.stream().flatMap(List::stream).toList());
+        assertTrue(sweep.dividi(List.of()).isEmpty());
+    }
+
+    @Test
+    void esegui_UnisceLeNotificheERispettaIlParallelismo() throws DataAccessException {
+        SweepParallelo sweep = new SweepParallelo(3, 5);
+        List<Integer> id = IntStream.rangeClosed(1, 100).boxed().toList();
+        AtomicInteger inCorso = new AtomicInteger();
+        AtomicInteger massimo = new AtomicInteger();
+
+        // ACT: una notifica per ogni paziente pari
+        RisultatoSweep risultato = sweep.esegui("test", id, shard -> {
+            massimo.accumulateAndGet(inCorso.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inCorso.decrementAndGet();
+            return shard.stream().filter(i -> i % 2 == 0)
+                    .map(i -> new Notifica(i, 1, "titolo", "messaggio", "tipo", LocalDateTime.now())).toList();
+        });
+
+        // ASSERT
+        assertEquals(50, risultato.getNotifiche().size());
+        assertEquals(20, risultato.getNumeroShard());
+        assertEquals(100, risultato.getPazienti());
+        assertTrue(massimo.get() <= 3, "shard contemporanei " + massimo.get());
+        assertTrue(risultato.getTempoShardMassimoMillis() > 0);
+    }
+
+    @Test
+    void esegui_ErroreInUnoShard_LoRilancia() {
+        SweepParallelo sweep = new SweepParallelo(2, 10);
+        List<Integer> id = IntStream.rangeClosed(1, 50).boxed().toList();
+
+        DataAccessException errore = assertThrows(DataAccessException.class, () -> sweep.esegui("test", id, shard -> {
+            if (shard.contains(25)) {
+                throw new DataAccessException("errore nello shard");
+            }
+            return List.of();
+        }));
+        assertEquals("errore nello shard", errore.getMessage());
+    }
+}